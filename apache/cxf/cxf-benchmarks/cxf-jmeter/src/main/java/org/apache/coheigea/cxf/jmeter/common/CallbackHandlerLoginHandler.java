@@ -18,6 +18,10 @@
  */
 package org.apache.coheigea.cxf.jmeter.common;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+import javax.security.auth.callback.Callback;
 import javax.security.auth.callback.CallbackHandler;
 
 import org.w3c.dom.Document;
@@ -28,19 +32,25 @@ import org.apache.cxf.phase.PhaseInterceptorChain;
 import org.apache.cxf.rs.security.oauth2.common.Client;
 import org.apache.cxf.rs.security.oauth2.common.UserSubject;
 import org.apache.cxf.rs.security.oauth2.grants.owner.ResourceOwnerLoginHandler;
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
 import org.apache.wss4j.dom.engine.WSSConfig;
 import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.wss4j.dom.validate.Credential;
-import org.apache.wss4j.dom.validate.UsernameTokenValidator;
+import org.apache.wss4j.dom.validate.Validator;
 
 /**
- * A simple ResourceOwnerLoginHandler implementation that delegates the username/password to a CallbackHandler
+ * A simple ResourceOwnerLoginHandler implementation that delegates the username/password to a CallbackHandler.
+ * By default the password is obtained from the CallbackHandler via a WSPasswordCallback, and compared to the
+ * supplied password in constant time. If a (WSS4J) Validator is configured instead, then a UsernameToken is
+ * built for the username/password and is dispatched to the Validator.
  */
 public class CallbackHandlerLoginHandler implements ResourceOwnerLoginHandler {
 
     private CallbackHandler callbackHandler;
+    private Validator validator;
     
     static {
         WSSConfig.init();
@@ -48,6 +58,39 @@ public class CallbackHandlerLoginHandler implements ResourceOwnerLoginHandler {
     
     @Override
     public UserSubject createSubject(Client client, String user, String pass) {
+        try {
+            if (validator != null) {
+                validateUsernameToken(user, pass);
+            } else {
+                validatePassword(user, pass);
+            }
+            
+            UserSubject subject = new UserSubject();
+            subject.setLogin(user);
+            return subject;
+        } catch (Exception ex) {
+            throw ExceptionUtils.toInternalServerErrorException(ex, null);
+        }
+    }
+    
+    private void validatePassword(String user, String pass) throws Exception {
+        if (user == null || pass == null) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        
+        WSPasswordCallback pwCb = new WSPasswordCallback(user, null, WSConstants.PASSWORD_TEXT, 
+                                                         WSPasswordCallback.USERNAME_TOKEN);
+        callbackHandler.handle(new Callback[]{pwCb});
+        
+        String password = pwCb.getPassword();
+        if (password == null 
+            || !MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8), 
+                                      pass.getBytes(StandardCharsets.UTF_8))) {
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+    }
+    
+    private void validateUsernameToken(String user, String pass) throws Exception {
         Document doc = DOMUtils.createDocument();
         UsernameToken token = new UsernameToken(false, doc, 
                                                 WSConstants.PASSWORD_TEXT);
@@ -60,17 +103,8 @@ public class CallbackHandlerLoginHandler implements ResourceOwnerLoginHandler {
         RequestData data = new RequestData();
         data.setMsgContext(PhaseInterceptorChain.getCurrentMessage());
         data.setCallbackHandler(callbackHandler);
-        UsernameTokenValidator validator = new UsernameTokenValidator();
         
-        try {
-            credential = validator.validate(credential, data);
-            
-            UserSubject subject = new UserSubject();
-            subject.setLogin(user);
-            return subject;
-        } catch (Exception ex) {
-            throw ExceptionUtils.toInternalServerErrorException(ex, null);
-        }
+        validator.validate(credential, data);
     }
     
     public CallbackHandler getCallbackHandler() {
@@ -81,4 +115,16 @@ public class CallbackHandlerLoginHandler implements ResourceOwnerLoginHandler {
         this.callbackHandler = callbackHandler;
     }
 
+    public Validator getValidator() {
+        return validator;
+    }
+
+    /**
+     * Set a Validator to validate a UsernameToken built for the username/password, instead of comparing the
+     * password with the one obtained from the CallbackHandler
+     */
+    public void setValidator(Validator validator) {
+        this.validator = validator;
+    }
+
 }
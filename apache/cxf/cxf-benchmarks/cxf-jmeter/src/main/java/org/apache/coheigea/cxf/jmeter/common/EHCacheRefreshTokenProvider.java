@@ -18,23 +18,42 @@
  */
 package org.apache.coheigea.cxf.jmeter.common;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.cxf.BusFactory;
 import org.apache.cxf.rs.security.oauth2.common.Client;
 import org.apache.cxf.rs.security.oauth2.common.OAuthPermission;
 import org.apache.cxf.rs.security.oauth2.grants.code.JCacheCodeDataProvider;
-import org.apache.cxf.rs.security.oauth2.provider.OAuthServiceException;
 
 /**
- * Extend the JCacheCodeDataProvider to allow refreshing of tokens
+ * Extend the JCacheCodeDataProvider to allow refreshing of tokens. The requested scopes are mapped to
+ * permissions by a ScopeRegistry.
+ * 
+ * By default all of the clients, code grants and tokens are stored on-heap. Pass TIERED_CONFIG_URL to
+ * the constructor to keep only the most recently used tokens on-heap, and the rest off-heap and in a
+ * persistent disk tier, which survives a restart as long as the provider is closed.
  */
 public class EHCacheRefreshTokenProvider extends JCacheCodeDataProvider {
     
+    /**
+     * The Ehcache 3 configuration of the tiered (on-heap + off-heap + disk) token store
+     */
+    public static final String TIERED_CONFIG_URL = "cxf-oauth2-ehcache3-tiered.xml";
+    
+    private ScopeRegistry scopeRegistry = new ScopeRegistry();
+    
     protected EHCacheRefreshTokenProvider() throws Exception {
 		super();
 	}
+    
+    /**
+     * Create a provider that stores the clients, code grants and tokens according to the given
+     * Ehcache 3 configuration file on the classpath
+     */
+    protected EHCacheRefreshTokenProvider(String configFileURL) throws Exception {
+        super(configFileURL, BusFactory.getThreadDefaultBus(true));
+    }
 
 	@Override
     protected boolean isRefreshTokenSupported(List<String> theScopes) {
@@ -47,43 +66,14 @@ public class EHCacheRefreshTokenProvider extends JCacheCodeDataProvider {
             return Collections.emptyList();
         }
         
-        List<OAuthPermission> permissions = new ArrayList<>();
-        for (String requestedScope : requestedScopes) {
-            if ("read_balance".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("read_balance");
-                permission.setHttpVerbs(Collections.singletonList("GET"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/balance/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else if ("create_balance".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("create_balance");
-                permission.setHttpVerbs(Collections.singletonList("POST"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/balance/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else if ("read_data".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("read_data");
-                permission.setHttpVerbs(Collections.singletonList("GET"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/data/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else {
-                throw new OAuthServiceException("invalid_scope");
-            }
-        }
-        
-        return permissions;
+        return scopeRegistry.getPermissions(requestedScopes);
+    }
+
+    public ScopeRegistry getScopeRegistry() {
+        return scopeRegistry;
+    }
+
+    public void setScopeRegistry(ScopeRegistry scopeRegistry) {
+        this.scopeRegistry = scopeRegistry;
     }
 }
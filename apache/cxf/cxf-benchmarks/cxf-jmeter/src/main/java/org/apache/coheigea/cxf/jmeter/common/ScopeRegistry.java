@@ -0,0 +1,192 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmeter.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.rs.security.oauth2.common.OAuthPermission;
+import org.apache.cxf.rs.security.oauth2.provider.OAuthServiceException;
+
+/**
+ * A registry of the OAuth scopes that a client can request, and the permission that each scope maps to.
+ * The scopes are loaded once from a properties file, where each line maps a scope to a (comma separated)
+ * list of HTTP verbs, followed by a (comma separated) list of URIs, e.g.:
+ *
+ * read_balance = GET /partners/balance/*
+ *
+ * Each scope is mapped to a single shared OAuthPermission, which must not be modified. By default the
+ * "oauth-scopes.properties" file is loaded from the classpath. If a "scopesFile" is configured instead,
+ * then it is checked for changes at most every "reloadInterval" milliseconds, and the scopes are reloaded
+ * if it has changed.
+ */
+public class ScopeRegistry {
+
+    private static org.apache.commons.logging.Log log =
+            org.apache.commons.logging.LogFactory.getLog(ScopeRegistry.class);
+
+    private static final String DEFAULT_SCOPES_RESOURCE = "oauth-scopes.properties";
+
+    private volatile Map<String, OAuthPermission> permissions;
+    private String scopesFile;
+    private long reloadInterval = 10000L;
+    private volatile long lastModified;
+    private final AtomicLong nextCheck = new AtomicLong();
+
+    /**
+     * Return the permissions for the given scopes, in the same order.
+     * @throws OAuthServiceException with "invalid_scope" if a scope is unknown
+     */
+    public List<OAuthPermission> getPermissions(List<String> scopes) {
+        Map<String, OAuthPermission> scopePermissions = getScopePermissions();
+
+        List<OAuthPermission> result = new ArrayList<>(scopes.size());
+        for (String scope : scopes) {
+            OAuthPermission permission = scopePermissions.get(scope);
+            if (permission == null) {
+                throw new OAuthServiceException("invalid_scope");
+            }
+            result.add(permission);
+        }
+        return result;
+    }
+
+    private Map<String, OAuthPermission> getScopePermissions() {
+        Map<String, OAuthPermission> scopePermissions = permissions;
+        if (scopePermissions == null) {
+            synchronized (this) {
+                if (permissions == null) {
+                    permissions = load();
+                }
+                return permissions;
+            }
+        }
+
+        if (scopesFile != null) {
+            long now = System.currentTimeMillis();
+            long check = nextCheck.get();
+            // Only one thread checks the file for changes
+            if (now >= check && nextCheck.compareAndSet(check, now + reloadInterval)) {
+                return reloadIfModified(scopePermissions);
+            }
+        }
+        return scopePermissions;
+    }
+
+    private Map<String, OAuthPermission> reloadIfModified(Map<String, OAuthPermission> scopePermissions) {
+        try {
+            long modified = Files.getLastModifiedTime(Paths.get(scopesFile)).toMillis();
+            if (modified != lastModified) {
+                Map<String, OAuthPermission> reloaded = load();
+                permissions = reloaded;
+                log.info("Reloaded the OAuth scopes from " + scopesFile);
+                return reloaded;
+            }
+        } catch (IOException | RuntimeException ex) {
+            // Keep using the scopes that were loaded before
+            log.warn("Error reloading the OAuth scopes from " + scopesFile + ": " + ex.getMessage());
+        }
+        return scopePermissions;
+    }
+
+    private synchronized Map<String, OAuthPermission> load() {
+        Properties properties = new Properties();
+        try {
+            if (scopesFile != null) {
+                Path path = Paths.get(scopesFile);
+                lastModified = Files.getLastModifiedTime(path).toMillis();
+                try (InputStream inputStream = Files.newInputStream(path)) {
+                    properties.load(inputStream);
+                }
+            } else {
+                try (InputStream inputStream =
+                    ScopeRegistry.class.getClassLoader().getResourceAsStream(DEFAULT_SCOPES_RESOURCE)) {
+                    if (inputStream == null) {
+                        throw new IllegalStateException(DEFAULT_SCOPES_RESOURCE + " is not on the classpath");
+                    }
+                    properties.load(inputStream);
+                }
+            }
+        } catch (IOException ex) {
+            throw new IllegalStateException("Error loading the OAuth scopes: " + ex.getMessage(), ex);
+        }
+
+        Map<String, OAuthPermission> scopePermissions = new HashMap<>();
+        for (String scope : properties.stringPropertyNames()) {
+            scopePermissions.put(scope, createPermission(scope, properties.getProperty(scope)));
+        }
+        return Collections.unmodifiableMap(scopePermissions);
+    }
+
+    private static OAuthPermission createPermission(String scope, String definition) {
+        String[] parts = definition.trim().split("\\s+", 2);
+
+        OAuthPermission permission = new OAuthPermission();
+        permission.setPermission(scope);
+        permission.setHttpVerbs(Collections.unmodifiableList(Arrays.asList(parts[0].split(","))));
+        if (parts.length > 1) {
+            List<String> uris = Arrays.asList(parts[1].trim().split("\\s*,\\s*"));
+            permission.setUris(Collections.unmodifiableList(uris));
+        }
+        return permission;
+    }
+
+    /**
+     * Discard the loaded scopes, so that they are loaded again on the next request
+     */
+    public synchronized void reload() {
+        permissions = null;
+    }
+
+    public String getScopesFile() {
+        return scopesFile;
+    }
+
+    /**
+     * Set the (file system) path of the properties file to load the scopes from, instead of the
+     * "oauth-scopes.properties" file on the classpath. Changes to it are picked up without a restart.
+     */
+    public void setScopesFile(String scopesFile) {
+        this.scopesFile = scopesFile;
+        reload();
+    }
+
+    public long getReloadInterval() {
+        return reloadInterval;
+    }
+
+    /**
+     * Set how often (in milliseconds) the scopes file is checked for changes
+     */
+    public void setReloadInterval(long reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+
+}
@@ -0,0 +1,85 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmeter.oauth;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.coheigea.cxf.jmeter.common.CallbackHandlerLoginHandler;
+import org.apache.coheigea.cxf.jmeter.common.CommonCallbackHandler;
+import org.apache.cxf.rs.security.oauth2.common.Client;
+import org.apache.cxf.rs.security.oauth2.common.UserSubject;
+import org.apache.wss4j.dom.validate.UsernameTokenValidator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of the resource owner password grant login of the CallbackHandlerLoginHandler,
+ * when the password is checked directly against the CallbackHandler, and when a UsernameToken DOM Element
+ * is built for it and is dispatched to the WSS4J UsernameTokenValidator. The rest of the token endpoint is
+ * the same in both cases, and so is not included. Run the main method (from the test classpath).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class LoginHandlerBenchmark {
+
+    private final Client client = new Client("consumer-id", "this-is-a-secret", true);
+    private final CallbackHandlerLoginHandler directLoginHandler = new CallbackHandlerLoginHandler();
+    private final CallbackHandlerLoginHandler domLoginHandler = new CallbackHandlerLoginHandler();
+
+    public LoginHandlerBenchmark() {
+        directLoginHandler.setCallbackHandler(new CommonCallbackHandler());
+        domLoginHandler.setCallbackHandler(new CommonCallbackHandler());
+        domLoginHandler.setValidator(new UsernameTokenValidator());
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    @Threads(4)
+    public UserSubject direct() {
+        return directLoginHandler.createSubject(client, "alice", "security");
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    @Threads(4)
+    public UserSubject usernameTokenDOM() {
+        return domLoginHandler.createSubject(client, "alice", "security");
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(LoginHandlerBenchmark.class.getSimpleName())
+            .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmeter.oauth;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.coheigea.cxf.jmeter.common.EHCacheRefreshTokenProvider;
+import org.apache.coheigea.cxf.jmeter.common.ScopeRegistry;
+import org.apache.cxf.rs.security.oauth2.common.AccessTokenRegistration;
+import org.apache.cxf.rs.security.oauth2.common.Client;
+import org.apache.cxf.rs.security.oauth2.common.OAuthPermission;
+import org.apache.cxf.rs.security.oauth2.common.ServerAccessToken;
+import org.apache.cxf.rs.security.oauth2.common.UserSubject;
+import org.apache.cxf.rs.security.oauth2.provider.OAuthServiceException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares mapping the requested scopes to permissions with the ScopeRegistry and with the previous
+ * if/else chain (which built new OAuthPermission objects for each request), and measures issuing an access
+ * token (with a refresh token) via the EHCacheRefreshTokenProvider. Run the main method (from the test
+ * classpath) to get the throughput for 1, 2, 4, 8, 16 and 32 threads.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@State(Scope.Benchmark)
+public class TokenIssuanceBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+    private static final List<String> SCOPES = Arrays.asList("read_balance", "read_data");
+
+    private final Client client = new Client("consumer-id", "this-is-a-secret", true);
+    private final ScopeRegistry scopeRegistry = new ScopeRegistry();
+    private EHCacheRefreshTokenProvider provider;
+
+    @Setup
+    public void createProvider() throws Exception {
+        provider = new EHCacheRefreshTokenProvider() { };
+    }
+
+    @TearDown
+    public void closeProvider() {
+        provider.close();
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<OAuthPermission> ifElseScopes() {
+        return convertScopeToPermissions(SCOPES);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<OAuthPermission> registryScopes() {
+        return scopeRegistry.getPermissions(SCOPES);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public ServerAccessToken issueToken() {
+        UserSubject subject = new UserSubject("alice");
+
+        AccessTokenRegistration registration = new AccessTokenRegistration();
+        registration.setClient(client);
+        registration.setSubject(subject);
+        registration.setGrantType("password");
+        registration.setRequestedScope(SCOPES);
+        registration.setApprovedScope(SCOPES);
+        return provider.createAccessToken(registration);
+    }
+
+    /**
+     * The previous implementation of EHCacheRefreshTokenProvider.convertScopeToPermissions
+     */
+    private static List<OAuthPermission> convertScopeToPermissions(List<String> requestedScopes) {
+        List<OAuthPermission> permissions = new ArrayList<>();
+        for (String requestedScope : requestedScopes) {
+            if ("read_balance".equals(requestedScope)) {
+                OAuthPermission permission = new OAuthPermission();
+                permission.setPermission("read_balance");
+                permission.setHttpVerbs(Collections.singletonList("GET"));
+                List<String> uris = new ArrayList<>();
+                uris.add("/partners/balance/*");
+                permission.setUris(uris);
+                permissions.add(permission);
+            } else if ("create_balance".equals(requestedScope)) {
+                OAuthPermission permission = new OAuthPermission();
+                permission.setPermission("create_balance");
+                permission.setHttpVerbs(Collections.singletonList("POST"));
+                List<String> uris = new ArrayList<>();
+                uris.add("/partners/balance/*");
+                permission.setUris(uris);
+                permissions.add(permission);
+            } else if ("read_data".equals(requestedScope)) {
+                OAuthPermission permission = new OAuthPermission();
+                permission.setPermission("read_data");
+                permission.setHttpVerbs(Collections.singletonList("GET"));
+                List<String> uris = new ArrayList<>();
+                uris.add("/partners/data/*");
+                permission.setUris(uris);
+                permissions.add(permission);
+            } else {
+                throw new OAuthServiceException("invalid_scope");
+            }
+        }
+        return permissions;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                .include(TokenIssuanceBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            Collection<RunResult> runResults = new Runner(options).run();
+            results.addAll(runResults);
+        }
+
+        // Print the throughput against the number of threads for each benchmark
+        System.out.println();
+        System.out.println("Benchmark, Threads, Score, Error, Units");
+        for (RunResult result : results) {
+            System.out.println(result.getParams().getBenchmark() + ", "
+                + result.getParams().getThreads() + ", "
+                + result.getPrimaryResult().getScore() + ", "
+                + result.getPrimaryResult().getScoreError() + ", "
+                + result.getPrimaryResult().getScoreUnit());
+        }
+    }
+
+}
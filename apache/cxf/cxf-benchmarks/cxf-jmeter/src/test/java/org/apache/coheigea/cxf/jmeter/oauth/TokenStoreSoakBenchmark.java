@@ -0,0 +1,130 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmeter.oauth;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.management.Notification;
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+
+import org.apache.coheigea.cxf.jmeter.common.EHCacheRefreshTokenProvider;
+import org.apache.cxf.rs.security.oauth2.common.AccessTokenRegistration;
+import org.apache.cxf.rs.security.oauth2.common.Client;
+import org.apache.cxf.rs.security.oauth2.common.ServerAccessToken;
+import org.apache.cxf.rs.security.oauth2.common.UserSubject;
+
+/**
+ * A soak test of the EHCacheRefreshTokenProvider, which issues a large number of access tokens (each with a
+ * refresh token) and refreshes every tenth of them, and reports the heap used, the number of garbage
+ * collections and the longest GC pause every 500,000 tokens. Run the main method (from the test classpath)
+ * with the number of tokens (default 5,000,000) and "heap" (the default, all of the tokens are stored
+ * on-heap) or "tiered" (the tiered on-heap + off-heap + disk store). Run it with the same -Xmx for both
+ * modes, and with -XX:MaxDirectMemorySize large enough for the off-heap tier in "tiered" mode.
+ */
+public class TokenStoreSoakBenchmark {
+
+    private static final int REPORT_INTERVAL = 500000;
+    private static final int REFRESH_INTERVAL = 10;
+    private static final List<String> SCOPES = Arrays.asList("read_balance", "read_data");
+
+    public static void main(String[] args) throws Exception {
+        long tokens = args.length > 0 ? Long.parseLong(args[0]) : 5000000L;
+        boolean tiered = args.length > 1 && "tiered".equals(args[1]);
+
+        AtomicLong maxPause = new AtomicLong();
+        NotificationListener pauseListener = new GCPauseListener(maxPause);
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            ((NotificationEmitter) gcBean).addNotificationListener(pauseListener, null, null);
+        }
+
+        EHCacheRefreshTokenProvider provider = tiered
+            ? new EHCacheRefreshTokenProvider(EHCacheRefreshTokenProvider.TIERED_CONFIG_URL) { }
+            : new EHCacheRefreshTokenProvider() { };
+        Client client = new Client("consumer-id", "this-is-a-secret", true);
+        UserSubject subject = new UserSubject("alice");
+
+        System.out.println("Mode, Tokens, Tokens/s, Heap used (MB), GC count, GC time (ms), Max GC pause (ms)");
+        try {
+            long start = System.nanoTime();
+            for (long i = 1; i <= tokens; i++) {
+                AccessTokenRegistration registration = new AccessTokenRegistration();
+                registration.setClient(client);
+                registration.setSubject(subject);
+                registration.setGrantType("password");
+                registration.setRequestedScope(SCOPES);
+                registration.setApprovedScope(SCOPES);
+                ServerAccessToken accessToken = provider.createAccessToken(registration);
+
+                if (i % REFRESH_INTERVAL == 0) {
+                    provider.refreshAccessToken(client, accessToken.getRefreshToken(), SCOPES);
+                }
+
+                if (i % REPORT_INTERVAL == 0 || i == tokens) {
+                    long elapsed = System.nanoTime() - start;
+                    report(tiered ? "tiered" : "heap", i, i * TimeUnit.SECONDS.toNanos(1) / elapsed, maxPause);
+                }
+            }
+        } finally {
+            provider.close();
+        }
+    }
+
+    private static void report(String mode, long tokens, long tokensPerSecond, AtomicLong maxPause) {
+        long gcCount = 0;
+        long gcTime = 0;
+        for (GarbageCollectorMXBean gcBean : ManagementFactory.getGarbageCollectorMXBeans()) {
+            gcCount += Math.max(gcBean.getCollectionCount(), 0);
+            gcTime += Math.max(gcBean.getCollectionTime(), 0);
+        }
+        long heapUsed = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+
+        System.out.println(mode + ", " + tokens + ", " + tokensPerSecond + ", " + (heapUsed >> 20) + ", "
+            + gcCount + ", " + gcTime + ", " + maxPause.get());
+    }
+
+    /**
+     * Records the longest garbage collection, from the notifications of the GarbageCollectorMXBeans
+     */
+    private static class GCPauseListener implements NotificationListener {
+
+        private final AtomicLong maxPause;
+
+        GCPauseListener(AtomicLong maxPause) {
+            this.maxPause = maxPause;
+        }
+
+        @Override
+        public void handleNotification(Notification notification, Object handback) {
+            if (!"com.sun.management.gc.notification".equals(notification.getType())) {
+                return;
+            }
+            CompositeData info = (CompositeData) notification.getUserData();
+            long duration = (Long) ((CompositeData) info.get("gcInfo")).get("duration");
+            maxPause.accumulateAndGet(duration, Math::max);
+        }
+    }
+
+}
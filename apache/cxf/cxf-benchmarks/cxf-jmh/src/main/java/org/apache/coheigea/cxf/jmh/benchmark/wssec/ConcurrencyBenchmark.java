@@ -0,0 +1,233 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.security.PrivateKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.common.crypto.CryptoType;
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecEncrypt;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertNotNull;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * Some benchmarking tests for contention on the Crypto, CallbackHandler and WSSConfig instances
+ * that are shared between all threads. Run the main method to get the throughput for 1, 2, 4, 8, 16
+ * and 32 threads, or pass "-t" on the command line to run a single thread count.
+ */
+public class ConcurrencyBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    private static Crypto clientCrypto;
+    private static Crypto serviceCrypto;
+    private static CallbackHandler callbackHandler = new CommonCallbackHandler();
+    private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
+
+    static {
+        WSSConfig.init();
+        try {
+            clientCrypto = CryptoFactory.getInstance("clientKeystore.properties");
+            serviceCrypto = CryptoFactory.getInstance("serviceKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class DocumentState {
+
+        DocumentPool plaintextDocuments;
+        DocumentPool signedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            List<Document> signed = new ArrayList<>(DocumentPool.DEFAULT_SIZE);
+            for (int i = 0; i < DocumentPool.DEFAULT_SIZE; i++) {
+                WSSecHeader secHeader = new WSSecHeader(plaintextDocuments.next());
+                secHeader.insertSecurityHeader();
+
+                WSSecSignature builder = new WSSecSignature(secHeader);
+                builder.setUserInfo("myclientkey", "ckpass");
+                builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+                signed.add(builder.build(clientCrypto));
+            }
+            signedDocuments = new DocumentPool(signed);
+        }
+    }
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(DocumentState state) {
+            document = state.plaintextDocuments.next();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(DocumentState state) {
+            document = state.signedDocuments.next();
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public WSHandlerResult verification(SignedDocument document) throws Exception {
+        WSSecurityEngine engine = new WSSecurityEngine();
+
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setSigVerCrypto(clientCrypto);
+        data.setSubjectCertConstraints(Collections.singletonList(certConstraint));
+
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(document.document, "");
+        assertNotNull(securityHeader);
+
+        WSHandlerResult results =
+            engine.processSecurityHeader(securityHeader, data);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
+        return results;
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public Document encryption(PlaintextDocument document) throws Exception {
+        WSSecHeader secHeader = new WSSecHeader(document.document);
+        secHeader.insertSecurityHeader();
+
+        WSSecEncrypt builder = new WSSecEncrypt(secHeader);
+        builder.setUserInfo("myservicekey", "skpass");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        return builder.build(serviceCrypto);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public String passwordCallback() throws Exception {
+        WSPasswordCallback callback = new WSPasswordCallback("myservicekey", WSPasswordCallback.DECRYPT);
+        callbackHandler.handle(new Callback[] {callback});
+        return callback.getPassword();
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public X509Certificate[] certificateLookup() throws Exception {
+        CryptoType cryptoType = new CryptoType(CryptoType.TYPE.ALIAS);
+        cryptoType.setAlias("myclientkey");
+        return clientCrypto.getX509Certificates(cryptoType);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public PrivateKey privateKeyLookup() throws Exception {
+        return serviceCrypto.getPrivateKey("myservicekey", "skpass");
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public WSSConfig wssConfigInit() {
+        WSSConfig.init();
+        return WSSConfig.getNewInstance();
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                .include(ConcurrencyBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            Collection<RunResult> runResults = new Runner(options).run();
+            results.addAll(runResults);
+        }
+
+        // Print the throughput against the number of threads for each benchmark
+        System.out.println();
+        System.out.println("Benchmark, Threads, Score, Error, Units");
+        for (RunResult result : results) {
+            System.out.println(result.getParams().getBenchmark() + ", "
+                + result.getParams().getThreads() + ", "
+                + result.getPrimaryResult().getScore() + ", "
+                + result.getPrimaryResult().getScoreError() + ", "
+                + result.getPrimaryResult().getScoreUnit());
+        }
+    }
+
+}
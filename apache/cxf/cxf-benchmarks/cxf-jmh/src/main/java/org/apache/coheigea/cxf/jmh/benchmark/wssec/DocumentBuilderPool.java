@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.nio.ByteBuffer;
+
+import javax.xml.XMLConstants;
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+
+/**
+ * A pool of namespace-aware DocumentBuilders, with secure processing enabled and DOCTYPE declarations
+ * disallowed. Each thread gets its own DocumentBuilder, which is reset after every use, so that neither
+ * a DocumentBuilderFactory nor a DocumentBuilder has to be created per parse.
+ */
+public final class DocumentBuilderPool {
+
+    private static final DocumentBuilderFactory FACTORY = createFactory();
+
+    private static final ThreadLocal<DocumentBuilder> BUILDERS = ThreadLocal.withInitial(() -> {
+        try {
+            return FACTORY.newDocumentBuilder();
+        } catch (ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private DocumentBuilderPool() {
+        // complete
+    }
+
+    /**
+     * Create a new (empty) Document.
+     */
+    public static Document newDocument() {
+        return BUILDERS.get().newDocument();
+    }
+
+    public static Document parse(String xml) throws SAXException, IOException {
+        return parse(new InputSource(new StringReader(xml)));
+    }
+
+    public static Document parse(byte[] xml) throws SAXException, IOException {
+        return parse(new InputSource(new ByteArrayInputStream(xml)));
+    }
+
+    /**
+     * Parse the given InputStream, which is not closed.
+     */
+    public static Document parse(InputStream xml) throws SAXException, IOException {
+        return parse(new InputSource(xml));
+    }
+
+    /**
+     * Parse the remaining bytes of the given ByteBuffer, without changing its position.
+     */
+    public static Document parse(ByteBuffer xml) throws SAXException, IOException {
+        if (xml.hasArray()) {
+            return parse(new InputSource(new ByteArrayInputStream(xml.array(), xml.arrayOffset() + xml.position(),
+                                                                  xml.remaining())));
+        }
+        byte[] bytes = new byte[xml.remaining()];
+        xml.duplicate().get(bytes);
+        return parse(bytes);
+    }
+
+    public static Document parse(InputSource inputSource) throws SAXException, IOException {
+        DocumentBuilder documentBuilder = BUILDERS.get();
+        try {
+            return documentBuilder.parse(inputSource);
+        } finally {
+            documentBuilder.reset();
+        }
+    }
+
+    private static DocumentBuilderFactory createFactory() {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        try {
+            factory.setFeature(XMLConstants.FEATURE_SECURE_PROCESSING, Boolean.TRUE);
+            factory.setFeature("http://apache.org/xml/features/disallow-doctype-decl", true);
+        } catch (ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);
+        }
+        return factory;
+    }
+
+}
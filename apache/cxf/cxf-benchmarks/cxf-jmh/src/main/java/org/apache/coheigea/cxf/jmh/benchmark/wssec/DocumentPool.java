@@ -0,0 +1,71 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.w3c.dom.Document;
+
+/**
+ * A pool of pre-built Documents (plaintext, signed or encrypted) that are created once per trial.
+ * Each call to "next" returns a deep clone of the next Document in the pool, so that the benchmarks
+ * can modify it (e.g. by inserting or processing a security header) without parsing XML each time.
+ *
+ * A pool is not thread-safe, it is intended to be held in a State with Scope.Thread.
+ */
+public class DocumentPool {
+
+    public static final int DEFAULT_SIZE = 16;
+
+    private final List<Document> documents;
+    private int index;
+
+    public DocumentPool(List<Document> documents) {
+        if (documents == null || documents.isEmpty()) {
+            throw new IllegalArgumentException("A DocumentPool requires at least one Document");
+        }
+        this.documents = new ArrayList<>(documents);
+    }
+
+    /**
+     * Create a pool by parsing the given SOAP message.
+     */
+    public static DocumentPool parse(String message, int size) throws Exception {
+        List<Document> documents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            documents.add(SOAPUtil.toSOAPPart(message));
+        }
+        return new DocumentPool(documents);
+    }
+
+    /**
+     * Return a deep clone of the next Document in the pool.
+     */
+    public Document next() {
+        Document document = documents.get(index);
+        index = (index + 1) % documents.size();
+        return (Document)document.cloneNode(true);
+    }
+
+    public int size() {
+        return documents.size();
+    }
+
+}
@@ -18,6 +18,8 @@
  */
 package org.apache.coheigea.cxf.jmh.benchmark.wssec;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.wss4j.common.crypto.Crypto;
@@ -34,8 +36,13 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -46,12 +53,14 @@ import static org.junit.Assert.assertNotNull;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 
 /**
- * Some benchmarking tests for different algorithms with XML Encryption.
+ * Some benchmarking tests for different algorithms with XML Encryption. The outbound (encryption)
+ * and inbound (decryption) phases are measured separately, using Documents that are parsed
+ * (and encrypted) once per trial.
  */
 public class EncryptionAlgorithmBenchmark {
-    
+
     private static Crypto serviceCrypto;
-    
+
     static {
         WSSConfig.init();
         try {
@@ -60,51 +69,110 @@ public class EncryptionAlgorithmBenchmark {
             ex.printStackTrace();
         }
     }
-    
+
+    public enum KeyTransport {
+        RSA_OAEP(WSConstants.KEYTRANSPORT_RSAOAEP),
+        RSA_15(WSConstants.KEYTRANSPORT_RSA15);
+
+        private final String keyTransportAlgorithm;
+
+        KeyTransport(String keyTransportAlgorithm) {
+            this.keyTransportAlgorithm = keyTransportAlgorithm;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncryptionState {
+
+        @Param
+        KeyTransport keyTransport;
+
+        DocumentPool plaintextDocuments;
+        DocumentPool encryptedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            List<Document> encrypted = new ArrayList<>(DocumentPool.DEFAULT_SIZE);
+            for (int i = 0; i < DocumentPool.DEFAULT_SIZE; i++) {
+                encrypted.add(doEncryption(plaintextDocuments.next(), keyTransport));
+            }
+            encryptedDocuments = new DocumentPool(encrypted);
+        }
+    }
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(EncryptionState state) {
+            document = state.plaintextDocuments.next();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncryptedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(EncryptionState state) {
+            document = state.encryptedDocuments.next();
+        }
+    }
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void encryptionRSAOAEP() throws Exception {
-        doEncryption(WSConstants.KEYTRANSPORT_RSAOAEP, serviceCrypto);
+    public Document encryption(EncryptionState state, PlaintextDocument document) throws Exception {
+        return doEncryption(document.document, state.keyTransport);
     }
-    
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void encryptionRSA15() throws Exception {
-        doEncryption(WSConstants.KEYTRANSPORT_RSA15, serviceCrypto);
+    public WSHandlerResult decryption(EncryptionState state, EncryptedDocument document) throws Exception {
+        return doDecryption(document.document, state.keyTransport, serviceCrypto);
     }
-    
-    private void doEncryption(String keyTransportAlgorithm, Crypto verifyingCrypto) throws Exception {
-        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+    private static Document doEncryption(Document doc, KeyTransport keyTransport) throws Exception {
         WSSecHeader secHeader = new WSSecHeader(doc);
         secHeader.insertSecurityHeader();
 
         WSSecEncrypt builder = new WSSecEncrypt(secHeader);
         builder.setUserInfo("myservicekey", "skpass");
         builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
-        builder.setKeyEncAlgo(keyTransportAlgorithm);
-        Document encryptedDoc = builder.build(serviceCrypto);
+        builder.setKeyEncAlgo(keyTransport.keyTransportAlgorithm);
+        return builder.build(serviceCrypto);
+    }
 
+    private static WSHandlerResult doDecryption(Document encryptedDoc, KeyTransport keyTransport,
+                                                Crypto decryptionCrypto) throws Exception {
         WSSecurityEngine engine = new WSSecurityEngine();
-        
+
         RequestData data = new RequestData();
         data.setWssConfig(WSSConfig.getNewInstance());
-        data.setDecCrypto(verifyingCrypto);
+        data.setDecCrypto(decryptionCrypto);
         data.setCallbackHandler(new CommonCallbackHandler());
-        if (WSConstants.KEYTRANSPORT_RSA15.equals(keyTransportAlgorithm)) {
+        if (keyTransport == KeyTransport.RSA_15) {
             data.setAllowRSA15KeyTransportAlgorithm(true);
         }
         Element securityHeader = WSSecurityUtil.getSecurityHeader(encryptedDoc, "");
         assertNotNull(securityHeader);
-        
-        WSHandlerResult results = 
+
+        WSHandlerResult results =
             engine.processSecurityHeader(securityHeader, data);
-        
+
         WSSecurityEngineResult actionResult =
             results.getActionResults().get(WSConstants.ENCR).get(0);
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE));
+        return results;
     }
-    
-}
\ No newline at end of file
+
+}
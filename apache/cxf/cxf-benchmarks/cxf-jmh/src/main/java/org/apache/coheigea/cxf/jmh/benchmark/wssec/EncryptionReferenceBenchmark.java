@@ -18,6 +18,8 @@
  */
 package org.apache.coheigea.cxf.jmh.benchmark.wssec;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.wss4j.common.crypto.Crypto;
@@ -35,8 +37,13 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -48,12 +55,14 @@ import static org.junit.Assert.assertTrue;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 
 /**
- * Some benchmarking tests for different ways of referencing keys in XML Encryption.
+ * Some benchmarking tests for different ways of referencing keys in XML Encryption. The outbound
+ * (encryption) and inbound (decryption) phases are measured separately, using Documents that are
+ * parsed (and encrypted) once per trial.
  */
 public class EncryptionReferenceBenchmark {
-    
+
     private static Crypto serviceCrypto;
-    
+
     static {
         WSSConfig.init();
         try {
@@ -62,65 +71,113 @@ public class EncryptionReferenceBenchmark {
             ex.printStackTrace();
         }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void encryptionIssuerSerial() throws Exception {
-        doEncryption(WSConstants.ISSUER_SERIAL, REFERENCE_TYPE.ISSUER_SERIAL, serviceCrypto);
+
+    public enum KeyReference {
+        ISSUER_SERIAL(WSConstants.ISSUER_SERIAL, REFERENCE_TYPE.ISSUER_SERIAL),
+        BST(WSConstants.BST_DIRECT_REFERENCE, REFERENCE_TYPE.DIRECT_REF),
+        ENCRYPTED_KEY_SHA1(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1),
+        THUMBPRINT_SHA1(WSConstants.THUMBPRINT_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1);
+
+        private final int identifier;
+        private final REFERENCE_TYPE referenceType;
+
+        KeyReference(int identifier, REFERENCE_TYPE referenceType) {
+            this.identifier = identifier;
+            this.referenceType = referenceType;
+        }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void encryptionBST() throws Exception {
-        doEncryption(WSConstants.BST_DIRECT_REFERENCE, REFERENCE_TYPE.DIRECT_REF, serviceCrypto);
+
+    @State(Scope.Thread)
+    public static class EncryptionState {
+
+        @Param
+        KeyReference keyReference;
+
+        DocumentPool plaintextDocuments;
+        DocumentPool encryptedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            List<Document> encrypted = new ArrayList<>(DocumentPool.DEFAULT_SIZE);
+            for (int i = 0; i < DocumentPool.DEFAULT_SIZE; i++) {
+                encrypted.add(doEncryption(plaintextDocuments.next(), keyReference));
+            }
+            encryptedDocuments = new DocumentPool(encrypted);
+        }
     }
-    
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(EncryptionState state) {
+            document = state.plaintextDocuments.next();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncryptedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(EncryptionState state) {
+            document = state.encryptedDocuments.next();
+        }
+    }
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void encryptionEncryptedKeySHA1() throws Exception {
-        doEncryption(WSConstants.ENCRYPTED_KEY_SHA1_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1, serviceCrypto);
+    public Document encryption(EncryptionState state, PlaintextDocument document) throws Exception {
+        return doEncryption(document.document, state.keyReference);
     }
-    
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void encryptionThumbprintSHA1() throws Exception {
-        doEncryption(WSConstants.THUMBPRINT_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1, serviceCrypto);
+    public WSHandlerResult decryption(EncryptionState state, EncryptedDocument document) throws Exception {
+        return doDecryption(document.document, state.keyReference.referenceType, serviceCrypto);
     }
-    
-    private void doEncryption(int identifier, REFERENCE_TYPE referenceType,
-                             Crypto verifyingCrypto) throws Exception {
-        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+    private static Document doEncryption(Document doc, KeyReference keyReference) throws Exception {
         WSSecHeader secHeader = new WSSecHeader(doc);
         secHeader.insertSecurityHeader();
 
         WSSecEncrypt builder = new WSSecEncrypt(secHeader);
         builder.setUserInfo("myservicekey", "skpass");
-        builder.setKeyIdentifierType(identifier);
-        Document encryptedDoc = builder.build(serviceCrypto);
+        builder.setKeyIdentifierType(keyReference.identifier);
+        return builder.build(serviceCrypto);
+    }
 
+    private static WSHandlerResult doDecryption(Document encryptedDoc, REFERENCE_TYPE referenceType,
+                                                Crypto decryptionCrypto) throws Exception {
         WSSecurityEngine engine = new WSSecurityEngine();
-        
+
         RequestData data = new RequestData();
         data.setWssConfig(WSSConfig.getNewInstance());
-        data.setDecCrypto(verifyingCrypto);
+        data.setDecCrypto(decryptionCrypto);
         data.setCallbackHandler(new CommonCallbackHandler());
         Element securityHeader = WSSecurityUtil.getSecurityHeader(encryptedDoc, "");
         assertNotNull(securityHeader);
-        
-        WSHandlerResult results = 
+
+        WSHandlerResult results =
             engine.processSecurityHeader(securityHeader, data);
-        
+
         WSSecurityEngineResult actionResult =
             results.getActionResults().get(WSConstants.ENCR).get(0);
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE));
-        REFERENCE_TYPE refType = 
+        REFERENCE_TYPE refType =
             (REFERENCE_TYPE)actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE);
         assertTrue(refType == referenceType);
+        return results;
     }
-    
-}
\ No newline at end of file
+
+}
@@ -0,0 +1,46 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+/**
+ * A pool of pre-built (signed or encrypted) serialized messages for the streaming benchmarks, which
+ * are created once per trial. Unlike DocumentPool there is no need to clone the messages, as the
+ * streaming engine does not modify its input.
+ *
+ * A pool is not thread-safe, it is intended to be held in a State with Scope.Thread.
+ */
+public class MessagePool {
+
+    private final byte[][] messages;
+    private int index;
+
+    public MessagePool(byte[][] messages) {
+        if (messages == null || messages.length == 0) {
+            throw new IllegalArgumentException("A MessagePool requires at least one message");
+        }
+        this.messages = messages.clone();
+    }
+
+    public byte[] next() {
+        byte[] message = messages[index];
+        index = (index + 1) % messages.length;
+        return message;
+    }
+
+}
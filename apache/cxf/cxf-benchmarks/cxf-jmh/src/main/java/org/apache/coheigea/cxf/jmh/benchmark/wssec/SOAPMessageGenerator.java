@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+/**
+ * Generate SOAP Envelopes of a given (approximate) size, with a given number of elements in the
+ * SOAP Body, each of which is nested to a given depth. The leaf elements are padded with text
+ * content so that the serialized message reaches the requested size.
+ */
+public final class SOAPMessageGenerator {
+
+    private static final String ENVELOPE_START =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<SOAP-ENV:Envelope "
+        +   "xmlns:SOAP-ENV=\"http://schemas.xmlsoap.org/soap/envelope/\" "
+        +   "xmlns:xsd=\"http://www.w3.org/2001/XMLSchema\" "
+        +   "xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\">"
+        +   "<SOAP-ENV:Body>"
+        +       "<add xmlns=\"http://ws.apache.org/counter/counter_port_type\">";
+
+    private static final String ENVELOPE_END =
+        "</add>"
+        + "</SOAP-ENV:Body>"
+        + "</SOAP-ENV:Envelope>";
+
+    private static final String PADDING =
+        "Lorem ipsum dolor sit amet, consectetur adipiscing elit, sed do eiusmod tempor ";
+
+    private SOAPMessageGenerator() {
+    }
+
+    /**
+     * Generate a SOAP Envelope as a String.
+     * @param messageSize the approximate size of the message in bytes
+     * @param elementCount the number of top-level elements in the SOAP Body
+     * @param depth the nesting depth of each top-level element
+     * @throws IllegalArgumentException if the markup for the given number of elements and depth
+     *         does not fit in the requested message size
+     */
+    public static String generateSOAPMessage(int messageSize, int elementCount, int depth) {
+        if (elementCount < 1 || depth < 1) {
+            throw new IllegalArgumentException("The element count and depth must be positive");
+        }
+
+        // Work out how much text each leaf element needs to reach the requested size
+        long markupSize = ENVELOPE_START.length() + ENVELOPE_END.length();
+        for (int i = 0; i < elementCount; i++) {
+            markupSize += getElementMarkupSize(i, depth);
+        }
+        if (markupSize + elementCount > messageSize) {
+            throw new IllegalArgumentException("A message of " + messageSize + " bytes is too small for "
+                + elementCount + " elements of depth " + depth + " (the markup alone is "
+                + markupSize + " bytes)");
+        }
+        int textSize = (int)((messageSize - markupSize) / elementCount);
+        String text = createText(textSize);
+
+        StringBuilder sb = new StringBuilder(messageSize);
+        sb.append(ENVELOPE_START);
+        for (int i = 0; i < elementCount; i++) {
+            for (int j = 0; j < depth; j++) {
+                sb.append("<value").append(j).append(" xmlns=\"\" index=\"").append(i).append("\">");
+            }
+            sb.append(text);
+            for (int j = depth - 1; j >= 0; j--) {
+                sb.append("</value").append(j).append('>');
+            }
+        }
+        sb.append(ENVELOPE_END);
+
+        return sb.toString();
+    }
+
+    private static long getElementMarkupSize(int index, int depth) {
+        // "<valueN xmlns="" index="I">" + "</valueN>" for each level N of the element
+        long size = 0;
+        int indexLength = Integer.toString(index).length();
+        for (int j = 0; j < depth; j++) {
+            int levelLength = Integer.toString(j).length();
+            size += "<value".length() + levelLength + " xmlns=\"\" index=\"".length() + indexLength + 2
+                + "</value".length() + levelLength + 1;
+        }
+        return size;
+    }
+
+    private static String createText(int size) {
+        StringBuilder sb = new StringBuilder(size + PADDING.length());
+        while (sb.length() < size) {
+            sb.append(PADDING);
+        }
+        sb.setLength(size);
+        return sb.toString();
+    }
+
+}
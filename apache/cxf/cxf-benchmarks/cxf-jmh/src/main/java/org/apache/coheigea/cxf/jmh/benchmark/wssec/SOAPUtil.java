@@ -19,14 +19,6 @@
 
 package org.apache.coheigea.cxf.jmh.benchmark.wssec;
 
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-
-import org.w3c.dom.Document;
-
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-
 public class SOAPUtil {
     
     public static final String SAMPLE_SOAP_MSG = 
@@ -42,21 +34,11 @@ public class SOAPUtil {
         +   "</SOAP-ENV:Body>" 
         + "</SOAP-ENV:Envelope>";
     
-    private static DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
-    
-    static {
-        factory.setNamespaceAware(true);
-    }
-    
     /**
      * Convert an SOAP Envelope as a String to a org.w3c.dom.Document.
      */
     public static org.w3c.dom.Document toSOAPPart(String xml) throws Exception {
-        InputStream in = new ByteArrayInputStream(xml.getBytes());
-        DocumentBuilder builder = factory.newDocumentBuilder();
-        Document doc = builder.parse(in);
-        in.close();
-        return doc;
+        return DocumentBuilderPool.parse(xml);
     }
     
 }
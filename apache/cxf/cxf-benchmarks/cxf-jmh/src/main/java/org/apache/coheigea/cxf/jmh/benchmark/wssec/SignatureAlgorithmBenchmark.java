@@ -39,8 +39,13 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -51,13 +56,15 @@ import static org.junit.Assert.assertNotNull;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 
 /**
- * Some benchmarking tests for different algorithms with XML Signatures.
+ * Some benchmarking tests for different algorithms with XML Signatures. The outbound (signature)
+ * and inbound (verification) phases are measured separately, using Documents that are parsed
+ * (and signed) once per trial.
  */
 public class SignatureAlgorithmBenchmark {
-    
+
     private static Crypto clientCrypto;
     private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
-    
+
     static {
         WSSConfig.init();
         try {
@@ -66,89 +73,127 @@ public class SignatureAlgorithmBenchmark {
             ex.printStackTrace();
         }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void signatureExclusiveC14N() throws Exception {
-        doSignature(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, clientCrypto);
+
+    public enum Algorithm {
+        EXCLUSIVE_C14N(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA1, WSConstants.RSA_SHA1),
+        INCLUSIVE_C14N(WSConstants.C14N_OMIT_COMMENTS, true, WSConstants.SHA1, WSConstants.RSA_SHA1),
+        EXCLUSIVE_NO_PREFIXES_C14N(WSConstants.C14N_EXCL_OMIT_COMMENTS, false, WSConstants.SHA1,
+                                   WSConstants.RSA_SHA1),
+        SHA256(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256, WSConstants.RSA_SHA1),
+        RSA_SHA256(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256,
+                   "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256");
+
+        private final String c14nAlgo;
+        private final boolean addInclusivePrefixes;
+        private final String digestAlgo;
+        private final String sigAlgo;
+
+        Algorithm(String c14nAlgo, boolean addInclusivePrefixes, String digestAlgo, String sigAlgo) {
+            this.c14nAlgo = c14nAlgo;
+            this.addInclusivePrefixes = addInclusivePrefixes;
+            this.digestAlgo = digestAlgo;
+            this.sigAlgo = sigAlgo;
+        }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void signatureInclusiveC14N() throws Exception {
-        doSignature(WSConstants.C14N_OMIT_COMMENTS, true, clientCrypto);
+
+    @State(Scope.Thread)
+    public static class SignatureState {
+
+        @Param
+        Algorithm algorithm;
+
+        DocumentPool plaintextDocuments;
+        DocumentPool signedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            List<Document> signed = new ArrayList<>(DocumentPool.DEFAULT_SIZE);
+            for (int i = 0; i < DocumentPool.DEFAULT_SIZE; i++) {
+                signed.add(doSignature(plaintextDocuments.next(), algorithm));
+            }
+            signedDocuments = new DocumentPool(signed);
+        }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void signatureExclusiveNoPrefixesC14N() throws Exception {
-        doSignature(WSConstants.C14N_EXCL_OMIT_COMMENTS, false, clientCrypto);
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(SignatureState state) {
+            document = state.plaintextDocuments.next();
+        }
     }
-    
+
+    @State(Scope.Thread)
+    public static class SignedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(SignatureState state) {
+            document = state.signedDocuments.next();
+        }
+    }
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void signatureSHA256() throws Exception {
-        doSignature(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256, 
-                    WSConstants.RSA_SHA1, clientCrypto);
+    public Document signature(SignatureState state, PlaintextDocument document) throws Exception {
+        return doSignature(document.document, state.algorithm);
     }
-    
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void signatureRSASHA256() throws Exception {
-        doSignature(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256, 
-                    "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256", clientCrypto);
+    public WSHandlerResult verification(SignatureState state, SignedDocument document) throws Exception {
+        return doVerification(document.document, clientCrypto);
     }
-    
-    private void doSignature(String c14nAlgo, boolean addInclusivePrefixes, Crypto verifyingCrypto) throws Exception {
-        doSignature(c14nAlgo, addInclusivePrefixes, WSConstants.SHA1, WSConstants.RSA_SHA1, verifyingCrypto);
-    }
-                             
-    private void doSignature(String c14nAlgo, 
-                             boolean addInclusivePrefixes, 
-                             String digestAlgo, 
-                             String sigAlgo, 
-                             Crypto verifyingCrypto) throws Exception {
-        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+    private static Document doSignature(Document doc, Algorithm algorithm) throws Exception {
         WSSecHeader secHeader = new WSSecHeader(doc);
         secHeader.insertSecurityHeader();
 
         WSSecSignature builder = new WSSecSignature(secHeader);
         builder.setUserInfo("myclientkey", "ckpass");
         builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
-        builder.setSigCanonicalization(c14nAlgo);
-        builder.setDigestAlgo(digestAlgo);
-        builder.setSignatureAlgorithm(sigAlgo);
-        builder.setAddInclusivePrefixes(addInclusivePrefixes);
-        
-        Document signedDoc = builder.build(clientCrypto);
+        builder.setSigCanonicalization(algorithm.c14nAlgo);
+        builder.setDigestAlgo(algorithm.digestAlgo);
+        builder.setSignatureAlgorithm(algorithm.sigAlgo);
+        builder.setAddInclusivePrefixes(algorithm.addInclusivePrefixes);
 
+        return builder.build(clientCrypto);
+    }
+
+    private static WSHandlerResult doVerification(Document signedDoc, Crypto verifyingCrypto) throws Exception {
         WSSecurityEngine engine = new WSSecurityEngine();
-        
+
         RequestData data = new RequestData();
         data.setWssConfig(WSSConfig.getNewInstance());
         data.setSigVerCrypto(verifyingCrypto);
         data.setSubjectCertConstraints(Collections.singletonList(certConstraint));
-        
+
         List<BSPRule> ignoredRules = new ArrayList<BSPRule>();
         ignoredRules.add(BSPRule.R5404);
         ignoredRules.add(BSPRule.R5406);
         data.setIgnoredBSPRules(ignoredRules);
-        
+
         Element securityHeader = WSSecurityUtil.getSecurityHeader(signedDoc, "");
         assertNotNull(securityHeader);
-        
-        WSHandlerResult results = 
+
+        WSHandlerResult results =
             engine.processSecurityHeader(securityHeader, data);
-        
+
         WSSecurityEngineResult actionResult =
             results.getActionResults().get(WSConstants.SIGN).get(0);
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE));
+        return results;
     }
-    
-}
\ No newline at end of file
+
+}
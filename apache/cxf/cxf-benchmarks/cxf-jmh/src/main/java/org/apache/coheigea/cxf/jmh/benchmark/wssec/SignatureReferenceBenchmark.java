@@ -18,7 +18,9 @@
  */
 package org.apache.coheigea.cxf.jmh.benchmark.wssec;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
 
@@ -37,8 +39,13 @@ import org.apache.wss4j.dom.util.WSSecurityUtil;
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
 import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
 import org.openjdk.jmh.annotations.Warmup;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
@@ -50,14 +57,16 @@ import static org.junit.Assert.assertTrue;
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 
 /**
- * Some benchmarking tests for different ways of referencing keys in XML Signatures.
+ * Some benchmarking tests for different ways of referencing keys in XML Signatures. The outbound
+ * (signature) and inbound (verification) phases are measured separately, using Documents that are
+ * parsed (and signed) once per trial.
  */
 public class SignatureReferenceBenchmark {
-    
+
     private static Crypto clientCrypto;
     private static Crypto serviceCrypto;
     private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
-    
+
     static {
         WSSConfig.init();
         try {
@@ -67,65 +76,117 @@ public class SignatureReferenceBenchmark {
             ex.printStackTrace();
         }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void signatureIssuerSerial() throws Exception {
-        doSignature(WSConstants.ISSUER_SERIAL, REFERENCE_TYPE.ISSUER_SERIAL, clientCrypto);
+
+    public enum KeyReference {
+        ISSUER_SERIAL(WSConstants.ISSUER_SERIAL, REFERENCE_TYPE.ISSUER_SERIAL, false),
+        BST(WSConstants.BST_DIRECT_REFERENCE, REFERENCE_TYPE.DIRECT_REF, true),
+        X509_KEY_IDENTIFIER(WSConstants.X509_KEY_IDENTIFIER, REFERENCE_TYPE.KEY_IDENTIFIER, true),
+        THUMBPRINT_SHA1(WSConstants.THUMBPRINT_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1, false);
+
+        private final int identifier;
+        private final REFERENCE_TYPE referenceType;
+        // Whether the certificate is included in the message, and so is verified using the trust store
+        private final boolean certificateIncluded;
+
+        KeyReference(int identifier, REFERENCE_TYPE referenceType, boolean certificateIncluded) {
+            this.identifier = identifier;
+            this.referenceType = referenceType;
+            this.certificateIncluded = certificateIncluded;
+        }
     }
-    
-    @Benchmark
-    @Fork(1)
-    @Warmup(iterations = 5)
-    public void signatureBST() throws Exception {
-        doSignature(WSConstants.BST_DIRECT_REFERENCE, REFERENCE_TYPE.DIRECT_REF, serviceCrypto);
+
+    @State(Scope.Thread)
+    public static class SignatureState {
+
+        @Param
+        KeyReference keyReference;
+
+        DocumentPool plaintextDocuments;
+        DocumentPool signedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            List<Document> signed = new ArrayList<>(DocumentPool.DEFAULT_SIZE);
+            for (int i = 0; i < DocumentPool.DEFAULT_SIZE; i++) {
+                signed.add(doSignature(plaintextDocuments.next(), keyReference));
+            }
+            signedDocuments = new DocumentPool(signed);
+        }
     }
-    
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(SignatureState state) {
+            document = state.plaintextDocuments.next();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(SignatureState state) {
+            document = state.signedDocuments.next();
+        }
+    }
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void signatureX509KeyIdentifier() throws Exception {
-        doSignature(WSConstants.X509_KEY_IDENTIFIER, REFERENCE_TYPE.KEY_IDENTIFIER, serviceCrypto);
+    public Document signature(SignatureState state, PlaintextDocument document) throws Exception {
+        return doSignature(document.document, state.keyReference);
     }
-    
+
     @Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
-    public void signatureThumbprintSHA1() throws Exception {
-        doSignature(WSConstants.THUMBPRINT_IDENTIFIER, REFERENCE_TYPE.THUMBPRINT_SHA1, clientCrypto);
+    public WSHandlerResult verification(SignatureState state, SignedDocument document) throws Exception {
+        Crypto verifyingCrypto = state.keyReference.certificateIncluded ? serviceCrypto : clientCrypto;
+        return doVerification(document.document, state.keyReference.referenceType, verifyingCrypto);
     }
-    
-    private void doSignature(int identifier, REFERENCE_TYPE referenceType,
-                             Crypto verifyingCrypto) throws Exception {
-        Document doc = SOAPUtil.toSOAPPart(SOAPUtil.SAMPLE_SOAP_MSG);
+
+    private static Document doSignature(Document doc, KeyReference keyReference) throws Exception {
         WSSecHeader secHeader = new WSSecHeader(doc);
         secHeader.insertSecurityHeader();
 
         WSSecSignature builder = new WSSecSignature(secHeader);
         builder.setUserInfo("myclientkey", "ckpass");
-        builder.setKeyIdentifierType(identifier);
-        Document signedDoc = builder.build(clientCrypto);
+        builder.setKeyIdentifierType(keyReference.identifier);
+        return builder.build(clientCrypto);
+    }
 
+    private static WSHandlerResult doVerification(Document signedDoc, REFERENCE_TYPE referenceType,
+                                                  Crypto verifyingCrypto) throws Exception {
         WSSecurityEngine engine = new WSSecurityEngine();
-        
+
         RequestData data = new RequestData();
         data.setWssConfig(WSSConfig.getNewInstance());
         data.setSigVerCrypto(verifyingCrypto);
         data.setSubjectCertConstraints(Collections.singletonList(certConstraint));
         Element securityHeader = WSSecurityUtil.getSecurityHeader(signedDoc, "");
         assertNotNull(securityHeader);
-        
-        WSHandlerResult results = 
+
+        WSHandlerResult results =
             engine.processSecurityHeader(securityHeader, data);
-        
+
         WSSecurityEngineResult actionResult =
             results.getActionResults().get(WSConstants.SIGN).get(0);
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
         assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE));
-        REFERENCE_TYPE refType = 
+        REFERENCE_TYPE refType =
             (REFERENCE_TYPE)actionResult.get(WSSecurityEngineResult.TAG_X509_REFERENCE_TYPE);
         assertTrue(refType == referenceType);
+        return results;
     }
-    
-}
\ No newline at end of file
+
+}
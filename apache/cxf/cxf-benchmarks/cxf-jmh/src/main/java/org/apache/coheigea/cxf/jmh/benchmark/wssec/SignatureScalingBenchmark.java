@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertNotNull;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * Some benchmarking tests for how XML Signature creation and verification scale with the size
+ * and structure of the SOAP Body. Run with "-prof gc" (or via the main method) to see the
+ * allocation rate.
+ */
+public class SignatureScalingBenchmark {
+
+    private static Crypto clientCrypto;
+    private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
+
+    static {
+        WSSConfig.init();
+        try {
+            clientCrypto = CryptoFactory.getInstance("clientKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class MessageState {
+
+        @Param({"51200", "1048576", "20971520"})
+        int messageSize;
+
+        // 100 elements of depth 10 is about 37KB of markup, so every combination fits in the
+        // smallest message size (SOAPMessageGenerator rejects combinations that do not)
+        @Param({"10", "100"})
+        int elementCount;
+
+        @Param({"1", "10"})
+        int depth;
+
+        // The Documents can be very large, so only keep a single one of each in the pools
+        DocumentPool plaintextDocuments;
+        DocumentPool signedDocuments;
+
+        @Setup(Level.Trial)
+        public void createDocuments() throws Exception {
+            String message = SOAPMessageGenerator.generateSOAPMessage(messageSize, elementCount, depth);
+            plaintextDocuments = DocumentPool.parse(message, 1);
+            signedDocuments =
+                new DocumentPool(Collections.singletonList(doSignature(plaintextDocuments.next())));
+        }
+    }
+
+    // Each benchmark only clones the Document that it needs before each invocation
+
+    @State(Scope.Thread)
+    public static class PlaintextDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(MessageState state) {
+            document = state.plaintextDocuments.next();
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignedDocument {
+
+        Document document;
+
+        @Setup(Level.Invocation)
+        public void cloneDocument(MessageState state) {
+            document = state.signedDocuments.next();
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public Document signature(PlaintextDocument document) throws Exception {
+        return doSignature(document.document);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public WSHandlerResult verification(SignedDocument document) throws Exception {
+        return doVerification(document.document);
+    }
+
+    private static Document doSignature(Document doc) throws Exception {
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("myclientkey", "ckpass");
+        builder.setKeyIdentifierType(WSConstants.ISSUER_SERIAL);
+        builder.setSigCanonicalization(WSConstants.C14N_EXCL_OMIT_COMMENTS);
+        builder.setDigestAlgo(WSConstants.SHA256);
+        builder.setSignatureAlgorithm("http://www.w3.org/2001/04/xmldsig-more#rsa-sha256");
+
+        return builder.build(clientCrypto);
+    }
+
+    private static WSHandlerResult doVerification(Document signedDoc) throws Exception {
+        WSSecurityEngine engine = new WSSecurityEngine();
+
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setSigVerCrypto(clientCrypto);
+        data.setSubjectCertConstraints(Collections.singletonList(certConstraint));
+
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(signedDoc, "");
+        assertNotNull(securityHeader);
+
+        WSHandlerResult results =
+            engine.processSecurityHeader(securityHeader, data);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
+        return results;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(SignatureScalingBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(options).run();
+    }
+
+}
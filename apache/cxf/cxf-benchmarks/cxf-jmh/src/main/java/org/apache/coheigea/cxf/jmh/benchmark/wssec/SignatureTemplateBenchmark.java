@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.engine.WSSecurityEngine;
+import org.apache.wss4j.dom.engine.WSSecurityEngineResult;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.handler.WSHandlerResult;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.Assert.assertNotNull;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * Some benchmarking tests comparing outbound signing with WSSecSignature against signing with a
+ * precomputed security header template (see TemplateSigner).
+ */
+public class SignatureTemplateBenchmark {
+
+    private static final String SIGNATURE_ALGORITHM = "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256";
+
+    private static Crypto clientCrypto;
+    private static Crypto serviceCrypto;
+    private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
+
+    static {
+        WSSConfig.init();
+        try {
+            clientCrypto = CryptoFactory.getInstance("clientKeystore.properties");
+            serviceCrypto = CryptoFactory.getInstance("serviceKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public enum KeyReference {
+        ISSUER_SERIAL(WSConstants.ISSUER_SERIAL),
+        BST(WSConstants.BST_DIRECT_REFERENCE);
+
+        private final int identifier;
+
+        KeyReference(int identifier) {
+            this.identifier = identifier;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignatureState {
+
+        @Param
+        KeyReference keyReference;
+
+        TemplateSigner templateSigner;
+        DocumentPool plaintextDocuments;
+        Document plaintextDocument;
+
+        @Setup(Level.Trial)
+        public void createTemplate() throws Exception {
+            templateSigner =
+                new TemplateSigner(SOAPUtil.SAMPLE_SOAP_MSG, clientCrypto, "myclientkey", "ckpass",
+                                   keyReference.identifier, WSConstants.SHA256, SIGNATURE_ALGORITHM);
+            plaintextDocuments = DocumentPool.parse(SOAPUtil.SAMPLE_SOAP_MSG, 1);
+
+            // Make sure that both ways of signing produce a valid signature. The service keystore
+            // trusts the client certificate, which is needed when it is included in the message
+            Crypto verifyingCrypto = keyReference == KeyReference.BST ? serviceCrypto : clientCrypto;
+            verify(templateSigner.sign(plaintextDocuments.next()), verifyingCrypto);
+            verify(doSignature(plaintextDocuments.next(), keyReference), verifyingCrypto);
+        }
+
+        @Setup(Level.Invocation)
+        public void cloneDocument() {
+            plaintextDocument = plaintextDocuments.next();
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public Document wssecSignature(SignatureState state) throws Exception {
+        return doSignature(state.plaintextDocument, state.keyReference);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public Document templateSignature(SignatureState state) throws Exception {
+        return state.templateSigner.sign(state.plaintextDocument);
+    }
+
+    private static Document doSignature(Document doc, KeyReference keyReference) throws Exception {
+        WSSecHeader secHeader = new WSSecHeader(doc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo("myclientkey", "ckpass");
+        builder.setKeyIdentifierType(keyReference.identifier);
+        builder.setSigCanonicalization(WSConstants.C14N_EXCL_OMIT_COMMENTS);
+        builder.setDigestAlgo(WSConstants.SHA256);
+        builder.setSignatureAlgorithm(SIGNATURE_ALGORITHM);
+        builder.setAddInclusivePrefixes(false);
+        return builder.build(clientCrypto);
+    }
+
+    private static void verify(Document signedDoc, Crypto verifyingCrypto) throws Exception {
+        WSSecurityEngine engine = new WSSecurityEngine();
+
+        RequestData data = new RequestData();
+        data.setWssConfig(WSSConfig.getNewInstance());
+        data.setSigVerCrypto(verifyingCrypto);
+        data.setSubjectCertConstraints(Collections.singletonList(certConstraint));
+
+        Element securityHeader = WSSecurityUtil.getSecurityHeader(signedDoc, "");
+        assertNotNull(securityHeader);
+
+        WSHandlerResult results =
+            engine.processSecurityHeader(securityHeader, data);
+
+        WSSecurityEngineResult actionResult =
+            results.getActionResults().get(WSConstants.SIGN).get(0);
+        assertNotNull(actionResult.get(WSSecurityEngineResult.TAG_X509_CERTIFICATE));
+    }
+
+}
@@ -0,0 +1,123 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * The streaming (StAX) equivalent of EncryptionAlgorithmBenchmark. The inbound messages are encrypted
+ * once per trial.
+ */
+public class StreamingEncryptionAlgorithmBenchmark {
+
+    private static Crypto serviceCrypto;
+
+    static {
+        try {
+            serviceCrypto = CryptoFactory.getInstance("serviceKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public enum KeyTransport {
+        RSA_OAEP(WSConstants.KEYTRANSPORT_RSAOAEP),
+        RSA_15(WSConstants.KEYTRANSPORT_RSA15);
+
+        private final String keyTransportAlgorithm;
+
+        KeyTransport(String keyTransportAlgorithm) {
+            this.keyTransportAlgorithm = keyTransportAlgorithm;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncryptionState {
+
+        @Param
+        KeyTransport keyTransport;
+
+        MessagePool encryptedMessages;
+
+        @Setup(Level.Trial)
+        public void createMessages() throws Exception {
+            byte[][] encrypted = new byte[DocumentPool.DEFAULT_SIZE][];
+            for (int i = 0; i < encrypted.length; i++) {
+                encrypted[i] = doEncryption(keyTransport);
+            }
+            encryptedMessages = new MessagePool(encrypted);
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public byte[] encryption(EncryptionState state) throws Exception {
+        return doEncryption(state.keyTransport);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<SecurityEvent> decryption(EncryptionState state) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setDecryptionCrypto(serviceCrypto);
+        properties.setCallbackHandler(new CommonCallbackHandler());
+        if (state.keyTransport == KeyTransport.RSA_15) {
+            properties.setAllowRSA15KeyTransportAlgorithm(true);
+        }
+
+        return StreamingUtil.processInbound(state.encryptedMessages.next(), properties);
+    }
+
+    private static byte[] doEncryption(KeyTransport keyTransport) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.addAction(WSSConstants.ENCRYPT);
+        properties.setEncryptionUser("myservicekey");
+        properties.setEncryptionCrypto(serviceCrypto);
+        properties.setEncryptionKeyIdentifier(WSSecurityTokenConstants.KeyIdentifier_IssuerSerial);
+        properties.setEncryptionKeyTransportAlgorithm(keyTransport.keyTransportAlgorithm);
+
+        return StreamingUtil.secureOutbound(SOAPUtil.SAMPLE_SOAP_MSG, properties);
+    }
+
+}
@@ -0,0 +1,122 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * The streaming (StAX) equivalent of EncryptionReferenceBenchmark. The inbound messages are encrypted
+ * once per trial. The streaming engine decrypts straight into the event stream and has no pluggable
+ * Serializer, so the ISSUER_SERIAL case here is also the counterpart of EncryptionSerializerBenchmark.
+ */
+public class StreamingEncryptionReferenceBenchmark {
+
+    private static Crypto serviceCrypto;
+
+    static {
+        try {
+            serviceCrypto = CryptoFactory.getInstance("serviceKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public enum KeyReference {
+        ISSUER_SERIAL(WSSecurityTokenConstants.KeyIdentifier_IssuerSerial),
+        BST(WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE),
+        ENCRYPTED_KEY_SHA1(WSSecurityTokenConstants.KEYIDENTIFIER_ENCRYPTED_KEY_SHA1_IDENTIFIER),
+        THUMBPRINT_SHA1(WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER);
+
+        private final SecurityTokenConstants.KeyIdentifier keyIdentifier;
+
+        KeyReference(SecurityTokenConstants.KeyIdentifier keyIdentifier) {
+            this.keyIdentifier = keyIdentifier;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class EncryptionState {
+
+        @Param
+        KeyReference keyReference;
+
+        MessagePool encryptedMessages;
+
+        @Setup(Level.Trial)
+        public void createMessages() throws Exception {
+            byte[][] encrypted = new byte[DocumentPool.DEFAULT_SIZE][];
+            for (int i = 0; i < encrypted.length; i++) {
+                encrypted[i] = doEncryption(keyReference);
+            }
+            encryptedMessages = new MessagePool(encrypted);
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public byte[] encryption(EncryptionState state) throws Exception {
+        return doEncryption(state.keyReference);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<SecurityEvent> decryption(EncryptionState state) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setDecryptionCrypto(serviceCrypto);
+        properties.setCallbackHandler(new CommonCallbackHandler());
+
+        return StreamingUtil.processInbound(state.encryptedMessages.next(), properties);
+    }
+
+    private static byte[] doEncryption(KeyReference keyReference) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.addAction(WSSConstants.ENCRYPT);
+        properties.setEncryptionUser("myservicekey");
+        properties.setEncryptionCrypto(serviceCrypto);
+        properties.setEncryptionKeyIdentifier(keyReference.keyIdentifier);
+
+        return StreamingUtil.secureOutbound(SOAPUtil.SAMPLE_SOAP_MSG, properties);
+    }
+
+}
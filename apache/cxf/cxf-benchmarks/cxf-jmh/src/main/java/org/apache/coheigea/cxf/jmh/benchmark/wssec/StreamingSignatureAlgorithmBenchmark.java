@@ -0,0 +1,141 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.bsp.BSPRule;
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * The streaming (StAX) equivalent of SignatureAlgorithmBenchmark. The inbound messages are signed
+ * once per trial.
+ */
+public class StreamingSignatureAlgorithmBenchmark {
+
+    private static Crypto clientCrypto;
+    private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
+
+    static {
+        try {
+            clientCrypto = CryptoFactory.getInstance("clientKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public enum Algorithm {
+        EXCLUSIVE_C14N(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA1, WSConstants.RSA_SHA1),
+        INCLUSIVE_C14N(WSConstants.C14N_OMIT_COMMENTS, true, WSConstants.SHA1, WSConstants.RSA_SHA1),
+        EXCLUSIVE_NO_PREFIXES_C14N(WSConstants.C14N_EXCL_OMIT_COMMENTS, false, WSConstants.SHA1,
+                                   WSConstants.RSA_SHA1),
+        SHA256(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256, WSConstants.RSA_SHA1),
+        RSA_SHA256(WSConstants.C14N_EXCL_OMIT_COMMENTS, true, WSConstants.SHA256,
+                   "http://www.w3.org/2001/04/xmldsig-more#rsa-sha256");
+
+        private final String c14nAlgo;
+        private final boolean addInclusivePrefixes;
+        private final String digestAlgo;
+        private final String sigAlgo;
+
+        Algorithm(String c14nAlgo, boolean addInclusivePrefixes, String digestAlgo, String sigAlgo) {
+            this.c14nAlgo = c14nAlgo;
+            this.addInclusivePrefixes = addInclusivePrefixes;
+            this.digestAlgo = digestAlgo;
+            this.sigAlgo = sigAlgo;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignatureState {
+
+        @Param
+        Algorithm algorithm;
+
+        MessagePool signedMessages;
+
+        @Setup(Level.Trial)
+        public void createMessages() throws Exception {
+            byte[][] signed = new byte[DocumentPool.DEFAULT_SIZE][];
+            for (int i = 0; i < signed.length; i++) {
+                signed[i] = doSignature(algorithm);
+            }
+            signedMessages = new MessagePool(signed);
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public byte[] signature(SignatureState state) throws Exception {
+        return doSignature(state.algorithm);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<SecurityEvent> verification(SignatureState state) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setSignatureVerificationCrypto(clientCrypto);
+        properties.setSubjectCertConstraints(Collections.singletonList(certConstraint));
+        properties.addIgnoreBSPRule(BSPRule.R5404);
+        properties.addIgnoreBSPRule(BSPRule.R5406);
+
+        return StreamingUtil.processInbound(state.signedMessages.next(), properties);
+    }
+
+    private static byte[] doSignature(Algorithm algorithm) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.addAction(WSSConstants.SIGNATURE);
+        properties.setSignatureUser("myclientkey");
+        properties.setCallbackHandler(new CommonCallbackHandler());
+        properties.setSignatureCrypto(clientCrypto);
+        properties.setSignatureKeyIdentifier(WSSecurityTokenConstants.KeyIdentifier_IssuerSerial);
+        properties.setSignatureCanonicalizationAlgorithm(algorithm.c14nAlgo);
+        properties.setSignatureDigestAlgorithm(algorithm.digestAlgo);
+        properties.setSignatureAlgorithm(algorithm.sigAlgo);
+        properties.setAddExcC14NInclusivePrefixes(algorithm.addInclusivePrefixes);
+
+        return StreamingUtil.secureOutbound(SOAPUtil.SAMPLE_SOAP_MSG, properties);
+    }
+
+}
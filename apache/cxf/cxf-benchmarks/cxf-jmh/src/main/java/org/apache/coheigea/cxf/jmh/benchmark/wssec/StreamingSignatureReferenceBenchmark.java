@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.common.crypto.CryptoFactory;
+import org.apache.wss4j.stax.ext.WSSConstants;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.securityToken.WSSecurityTokenConstants;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+import org.apache.xml.security.stax.securityToken.SecurityTokenConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * The streaming (StAX) equivalent of SignatureReferenceBenchmark. The inbound messages are signed
+ * once per trial.
+ */
+public class StreamingSignatureReferenceBenchmark {
+
+    private static Crypto clientCrypto;
+    private static Crypto serviceCrypto;
+    private static Pattern certConstraint = Pattern.compile(".*O=Apache.*");
+
+    static {
+        try {
+            clientCrypto = CryptoFactory.getInstance("clientKeystore.properties");
+            serviceCrypto = CryptoFactory.getInstance("serviceKeystore.properties");
+        } catch (Exception ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    public enum KeyReference {
+        ISSUER_SERIAL(WSSecurityTokenConstants.KeyIdentifier_IssuerSerial, false),
+        BST(WSSecurityTokenConstants.KEYIDENTIFIER_SECURITY_TOKEN_DIRECT_REFERENCE, true),
+        X509_KEY_IDENTIFIER(WSSecurityTokenConstants.KeyIdentifier_X509KeyIdentifier, true),
+        THUMBPRINT_SHA1(WSSecurityTokenConstants.KEYIDENTIFIER_THUMBPRINT_IDENTIFIER, false);
+
+        private final SecurityTokenConstants.KeyIdentifier keyIdentifier;
+        // Whether the certificate is included in the message, and so is verified using the trust store
+        private final boolean certificateIncluded;
+
+        KeyReference(SecurityTokenConstants.KeyIdentifier keyIdentifier, boolean certificateIncluded) {
+            this.keyIdentifier = keyIdentifier;
+            this.certificateIncluded = certificateIncluded;
+        }
+    }
+
+    @State(Scope.Thread)
+    public static class SignatureState {
+
+        @Param
+        KeyReference keyReference;
+
+        MessagePool signedMessages;
+
+        @Setup(Level.Trial)
+        public void createMessages() throws Exception {
+            byte[][] signed = new byte[DocumentPool.DEFAULT_SIZE][];
+            for (int i = 0; i < signed.length; i++) {
+                signed[i] = doSignature(keyReference);
+            }
+            signedMessages = new MessagePool(signed);
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public byte[] signature(SignatureState state) throws Exception {
+        return doSignature(state.keyReference);
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public List<SecurityEvent> verification(SignatureState state) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.setSignatureVerificationCrypto(
+            state.keyReference.certificateIncluded ? serviceCrypto : clientCrypto);
+        properties.setSubjectCertConstraints(Collections.singletonList(certConstraint));
+
+        return StreamingUtil.processInbound(state.signedMessages.next(), properties);
+    }
+
+    private static byte[] doSignature(KeyReference keyReference) throws Exception {
+        WSSSecurityProperties properties = new WSSSecurityProperties();
+        properties.addAction(WSSConstants.SIGNATURE);
+        properties.setSignatureUser("myclientkey");
+        properties.setCallbackHandler(new CommonCallbackHandler());
+        properties.setSignatureCrypto(clientCrypto);
+        properties.setSignatureKeyIdentifier(keyReference.keyIdentifier);
+
+        return StreamingUtil.secureOutbound(SOAPUtil.SAMPLE_SOAP_MSG, properties);
+    }
+
+}
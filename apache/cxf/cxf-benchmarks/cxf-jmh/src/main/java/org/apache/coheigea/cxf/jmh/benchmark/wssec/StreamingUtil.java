@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+
+import org.apache.cxf.staxutils.StaxUtils;
+import org.apache.wss4j.stax.ext.WSSSecurityProperties;
+import org.apache.wss4j.stax.setup.InboundWSSec;
+import org.apache.wss4j.stax.setup.OutboundWSSec;
+import org.apache.wss4j.stax.setup.WSSec;
+import org.apache.xml.security.stax.securityEvent.SecurityEvent;
+
+import static org.junit.Assert.assertFalse;
+
+/**
+ * Utility methods to secure and process SOAP messages with the streaming (StAX) WS-Security engine.
+ */
+public final class StreamingUtil {
+
+    private static XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    private StreamingUtil() {
+    }
+
+    /**
+     * Secure the given SOAP message using the given (outbound) properties.
+     */
+    public static byte[] secureOutbound(String message, WSSSecurityProperties properties) throws Exception {
+        OutboundWSSec wsSecOut = WSSec.getOutboundWSSec(properties);
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(message.length() * 4);
+        XMLStreamWriter writer =
+            wsSecOut.processOutMessage(baos, StandardCharsets.UTF_8.name(), new ArrayList<SecurityEvent>());
+        XMLStreamReader reader = xmlInputFactory.createXMLStreamReader(new StringReader(message));
+        StaxUtils.copy(reader, writer);
+        writer.close();
+        reader.close();
+
+        return baos.toByteArray();
+    }
+
+    /**
+     * Process the security header of the given SOAP message using the given (inbound) properties.
+     * The message is read fully, so that all signatures are verified and all encrypted data is decrypted.
+     */
+    public static List<SecurityEvent> processInbound(byte[] message, WSSSecurityProperties properties)
+        throws Exception {
+        InboundWSSec wsSecIn = WSSec.getInboundWSSec(properties);
+
+        List<SecurityEvent> securityEvents = new ArrayList<>();
+        XMLStreamReader reader =
+            wsSecIn.processInMessage(xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(message)),
+                                     null, securityEvents::add);
+        while (reader.hasNext()) {
+            reader.next();
+        }
+        reader.close();
+
+        assertFalse(securityEvents.isEmpty());
+        return securityEvents;
+    }
+
+}
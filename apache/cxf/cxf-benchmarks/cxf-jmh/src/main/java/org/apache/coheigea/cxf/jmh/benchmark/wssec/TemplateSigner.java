@@ -0,0 +1,142 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.jmh.benchmark.wssec;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.Signature;
+import java.util.Base64;
+
+import org.apache.wss4j.common.crypto.Crypto;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.message.WSSecHeader;
+import org.apache.wss4j.dom.message.WSSecSignature;
+import org.apache.wss4j.dom.util.WSSecurityUtil;
+import org.apache.xml.security.algorithms.JCEMapper;
+import org.apache.xml.security.c14n.Canonicalizer;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * An outbound signer for messages that all share the same envelope shape. The security header
+ * (SignedInfo, KeyInfo/SecurityTokenReference and any BinarySecurityToken) is built once from a
+ * template message using WSSecSignature, and the canonical form of the SignedInfo is computed once
+ * with a placeholder for the digest. Signing a message then only requires importing the template
+ * header, digesting the canonicalized SOAP Body, and signing the precomputed SignedInfo bytes.
+ *
+ * The wsu:Id values in the security header are fixed by the template. This class is not thread-safe.
+ */
+public class TemplateSigner {
+
+    private static final String DIGEST_PLACEHOLDER = "DIGEST_VALUE_PLACEHOLDER";
+
+    private final Element securityHeader;
+    private final String bodyId;
+    private final byte[] signedInfoPrefix;
+    private final byte[] signedInfoSuffix;
+    private final Canonicalizer canonicalizer;
+    private final MessageDigest messageDigest;
+    private final Signature signature;
+
+    public TemplateSigner(String templateMessage, Crypto crypto, String user, String password,
+                          int keyIdentifierType, String digestAlgo, String sigAlgo) throws Exception {
+        Document templateDoc = SOAPUtil.toSOAPPart(templateMessage);
+        WSSecHeader secHeader = new WSSecHeader(templateDoc);
+        secHeader.insertSecurityHeader();
+
+        WSSecSignature builder = new WSSecSignature(secHeader);
+        builder.setUserInfo(user, password);
+        builder.setKeyIdentifierType(keyIdentifierType);
+        builder.setSigCanonicalization(WSConstants.C14N_EXCL_OMIT_COMMENTS);
+        builder.setDigestAlgo(digestAlgo);
+        builder.setSignatureAlgorithm(sigAlgo);
+        // An InclusiveNamespaces PrefixList would make the canonical form depend on each message
+        builder.setAddInclusivePrefixes(false);
+        builder.build(crypto);
+
+        securityHeader = WSSecurityUtil.getSecurityHeader(templateDoc, "");
+        bodyId = WSSecurityUtil.findBodyElement(templateDoc).getAttributeNS(WSConstants.WSU_NS, "Id");
+
+        // Canonicalize the SignedInfo with a placeholder, and split it around the digest value
+        canonicalizer = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        Element signedInfo = getSignatureElement(securityHeader, "SignedInfo");
+        Element digestValue = getSignatureElement(signedInfo, "DigestValue");
+        String templateDigest = digestValue.getTextContent();
+        digestValue.setTextContent(DIGEST_PLACEHOLDER);
+        String c14nSignedInfo =
+            new String(canonicalizer.canonicalizeSubtree(signedInfo), StandardCharsets.UTF_8);
+        digestValue.setTextContent(templateDigest);
+
+        int index = c14nSignedInfo.indexOf(DIGEST_PLACEHOLDER);
+        signedInfoPrefix = c14nSignedInfo.substring(0, index).getBytes(StandardCharsets.UTF_8);
+        signedInfoSuffix =
+            c14nSignedInfo.substring(index + DIGEST_PLACEHOLDER.length()).getBytes(StandardCharsets.UTF_8);
+
+        messageDigest = MessageDigest.getInstance(JCEMapper.translateURItoJCEID(digestAlgo));
+        signature = Signature.getInstance(JCEMapper.translateURItoJCEID(sigAlgo));
+        signature.initSign(crypto.getPrivateKey(user, password));
+    }
+
+    /**
+     * Sign the SOAP Body of the given Document, which must use the same SOAP Envelope as the template.
+     */
+    public Document sign(Document doc) throws Exception {
+        Element body = WSSecurityUtil.findBodyElement(doc);
+        body.setAttributeNS(WSConstants.XMLNS_NS, "xmlns:" + WSConstants.WSU_PREFIX, WSConstants.WSU_NS);
+        body.setAttributeNS(WSConstants.WSU_NS, WSConstants.WSU_PREFIX + ":Id", bodyId);
+
+        Element header = getOrCreateHeader(doc.getDocumentElement(), body);
+        Element security = (Element)doc.importNode(securityHeader, true);
+        header.insertBefore(security, header.getFirstChild());
+
+        // Digest the canonicalized Body
+        byte[] digest = messageDigest.digest(canonicalizer.canonicalizeSubtree(body));
+        String digestValue = Base64.getEncoder().encodeToString(digest);
+        getSignatureElement(security, "DigestValue").setTextContent(digestValue);
+
+        // Sign the precomputed canonical SignedInfo
+        signature.update(signedInfoPrefix);
+        signature.update(digestValue.getBytes(StandardCharsets.UTF_8));
+        signature.update(signedInfoSuffix);
+        String signatureValue = Base64.getEncoder().encodeToString(signature.sign());
+        getSignatureElement(security, "SignatureValue").setTextContent(signatureValue);
+
+        return doc;
+    }
+
+    private static Element getOrCreateHeader(Element envelope, Element body) {
+        for (Node child = envelope.getFirstChild(); child != null; child = child.getNextSibling()) {
+            if (child instanceof Element && "Header".equals(child.getLocalName())
+                && envelope.getNamespaceURI().equals(child.getNamespaceURI())) {
+                return (Element)child;
+            }
+        }
+
+        String qualifiedName = envelope.getPrefix() == null ? "Header" : envelope.getPrefix() + ":Header";
+        Element header = envelope.getOwnerDocument().createElementNS(envelope.getNamespaceURI(), qualifiedName);
+        envelope.insertBefore(header, body);
+        return header;
+    }
+
+    private static Element getSignatureElement(Element parent, String localName) {
+        return (Element)parent.getElementsByTagNameNS(WSConstants.SIG_NS, localName).item(0);
+    }
+
+}
@@ -20,14 +20,15 @@
 package org.apache.coheigea.cxf.oauth1.oauthservice;
 
 
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.util.ArrayList;
 import java.util.Base64;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.cxf.rs.security.oauth.data.AccessToken;
 import org.apache.cxf.rs.security.oauth.data.AccessTokenRegistration;
@@ -41,20 +42,28 @@ import org.apache.cxf.rs.security.oauth.provider.OAuthDataProvider;
 import org.apache.cxf.rs.security.oauth.provider.OAuthServiceException;
 
 /**
- * A simple implementation of CXF's OAuthDataProvider interface.
+ * A simple implementation of CXF's OAuthDataProvider interface. It is thread-safe, and the request and
+ * access tokens are removed from memory once they have expired.
  */
 public class OAuthDataProviderImpl implements OAuthDataProvider {
 
     private final OAuthPermission getBalancePermission;
     private final OAuthPermission createBalancePermission;
-    private final SecureRandom random;
+    // Each thread gets its own SecureRandom, as they would otherwise all contend on the same one
+    private final ThreadLocal<SecureRandom> random = ThreadLocal.withInitial(() -> {
+        try {
+            return SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
 
-    private Map<String, Client> clients = new HashMap<String, Client>();
-    private Map<String, RequestToken> requestTokens = new HashMap<String, RequestToken>();
-    private Map<String, AccessToken> accessTokens = new HashMap<String, AccessToken>();
+    private Map<String, Client> clients = new ConcurrentHashMap<String, Client>();
+    private TokenStore<RequestToken> requestTokens = new TokenStore<RequestToken>();
+    private TokenStore<AccessToken> accessTokens = new TokenStore<AccessToken>();
+    private long accessTokenLifetime = 60L * 5L;
 
     public OAuthDataProviderImpl() throws Exception {
-        random = SecureRandom.getInstance("SHA1PRNG");
         List<String> permissions = new ArrayList<String>();
 
         // Only customers can create new users with a given balance
@@ -76,20 +85,22 @@ public class OAuthDataProviderImpl implements OAuthDataProvider {
         Client client = reg.getRequestToken().getClient();
         String token = UUID.randomUUID().toString();
         byte[] secret = new byte[20];
-        random.nextBytes(secret);
+        random.get().nextBytes(secret);
 
         AccessToken accessToken =
-            new AccessToken(client, token, Base64.getEncoder().encodeToString(secret), 60L * 5L,
+            new AccessToken(client, token, Base64.getEncoder().encodeToString(secret), accessTokenLifetime,
                             new Date().getTime() / 1000L);
         accessToken.setScopes(reg.getRequestToken().getScopes());
 
         accessToken.setSubject(reg.getRequestToken().getSubject());
 
-        // Remove request token
-        requestTokens.remove(reg.getRequestToken().getTokenKey());
+        // Remove request token - it can only be exchanged for an access token once
+        if (requestTokens.remove(reg.getRequestToken().getTokenKey()) == null) {
+            throw new OAuthServiceException("The request token is no longer valid");
+        }
 
         // Add access token
-        accessTokens.put(token,  accessToken);
+        accessTokens.put(accessToken);
 
         return accessToken;
     }
@@ -100,7 +111,7 @@ public class OAuthDataProviderImpl implements OAuthDataProvider {
         Client client = reg.getClient();
         String token = UUID.randomUUID().toString();
         byte[] secret = new byte[20];
-        random.nextBytes(secret);
+        random.get().nextBytes(secret);
 
         RequestToken requestToken =
             new RequestToken(client, token, Base64.getEncoder().encodeToString(secret), reg.getLifetime(), reg.getIssuedAt());
@@ -117,7 +128,7 @@ public class OAuthDataProviderImpl implements OAuthDataProvider {
         }
         requestToken.setScopes(permissions);
         requestToken.setCallback(reg.getCallback());
-        requestTokens.put(token, requestToken);
+        requestTokens.put(requestToken);
 
         return requestToken;
     }
@@ -131,37 +142,23 @@ public class OAuthDataProviderImpl implements OAuthDataProvider {
     }
 
     public AccessToken getAccessToken(String tokenId) throws OAuthServiceException {
-        if (accessTokens.containsKey(tokenId)) {
-            return accessTokens.get(tokenId);
-        }
-
-        return null;
+        return accessTokens.get(tokenId);
     }
 
     public Client getClient(String clientId) throws OAuthServiceException {
-        if (clients.containsKey(clientId)) {
-            return clients.get(clientId);
+        if (clientId == null) {
+            return null;
         }
-
-        return null;
+        return clients.get(clientId);
     }
 
     public RequestToken getRequestToken(String tokenId) throws OAuthServiceException {
-        if (requestTokens.containsKey(tokenId)) {
-            return requestTokens.get(tokenId);
-        }
-
-        return null;
+        return requestTokens.get(tokenId);
     }
 
     public void removeToken(Token token) throws OAuthServiceException {
-        if (requestTokens.containsKey(token.getTokenKey())) {
-            requestTokens.remove(token.getTokenKey());
-        }
-
-        if (accessTokens.containsKey(token.getTokenKey())) {
-            accessTokens.remove(token.getTokenKey());
-        }
+        requestTokens.remove(token.getTokenKey());
+        accessTokens.remove(token.getTokenKey());
     }
 
     public Map<String, Client> getClients() {
@@ -169,7 +166,34 @@ public class OAuthDataProviderImpl implements OAuthDataProvider {
     }
 
     public void setClients(Map<String, Client> clients) {
-        this.clients = clients;
+        this.clients = new ConcurrentHashMap<String, Client>(clients);
+    }
+
+    public TokenStore<RequestToken> getRequestTokens() {
+        return requestTokens;
+    }
+
+    public void setRequestTokens(TokenStore<RequestToken> requestTokens) {
+        this.requestTokens = requestTokens;
+    }
+
+    public TokenStore<AccessToken> getAccessTokens() {
+        return accessTokens;
+    }
+
+    public void setAccessTokens(TokenStore<AccessToken> accessTokens) {
+        this.accessTokens = accessTokens;
+    }
+
+    public long getAccessTokenLifetime() {
+        return accessTokenLifetime;
+    }
+
+    /**
+     * Set the lifetime of the access tokens in seconds (5 minutes by default)
+     */
+    public void setAccessTokenLifetime(long accessTokenLifetime) {
+        this.accessTokenLifetime = accessTokenLifetime;
     }
 
 }
@@ -0,0 +1,198 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.coheigea.cxf.oauth1.oauthservice;
+
+import java.time.Clock;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.rs.security.oauth.data.Token;
+
+/**
+ * A thread-safe store of OAuth tokens, keyed on the token key, which removes the tokens once they have
+ * expired. Each token is scheduled on a time wheel (a ring of "wheelSize" slots, each covering "tickMillis"
+ * milliseconds) according to its issue time + lifetime. The wheel is advanced by the threads that use the
+ * store, so there is no background thread, and each advance only visits the slots that have expired since
+ * the last one. Tokens that expire beyond one turn of the wheel are rescheduled when their slot comes round.
+ * Tokens with a lifetime <= 0 never expire. The current time is taken from the given Clock, which defaults to
+ * the system clock.
+ *
+ * An optional TokenStoreBackend can be configured to persist the tokens, which are written through to it
+ * and are loaded from it if they are not in memory.
+ */
+public class TokenStore<T extends Token> {
+
+    private final Map<String, T> tokens = new ConcurrentHashMap<>();
+    private final Set<String>[] wheel;
+    private final long tickMillis;
+    private final AtomicLong currentTick;
+    private final Clock clock;
+    private TokenStoreBackend<T> backend;
+
+    public TokenStore() {
+        this(1000L, 512);
+    }
+
+    public TokenStore(long tickMillis, int wheelSize) {
+        this(tickMillis, wheelSize, Clock.systemUTC());
+    }
+
+    @SuppressWarnings("unchecked")
+    public TokenStore(long tickMillis, int wheelSize, Clock clock) {
+        this.tickMillis = tickMillis;
+        this.clock = clock;
+        wheel = new Set[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            wheel[i] = ConcurrentHashMap.newKeySet();
+        }
+        currentTick = new AtomicLong(clock.millis() / tickMillis);
+    }
+
+    public void put(T token) {
+        expire();
+        tokens.put(token.getTokenKey(), token);
+        schedule(token);
+        if (backend != null) {
+            backend.store(token);
+        }
+    }
+
+    /**
+     * Return the token for the given key, or null if it is unknown or has expired
+     */
+    public T get(String tokenKey) {
+        if (tokenKey == null) {
+            return null;
+        }
+        expire();
+
+        T token = tokens.get(tokenKey);
+        if (token == null && backend != null) {
+            token = backend.load(tokenKey);
+            if (token != null && !isExpired(token, clock.millis())) {
+                tokens.putIfAbsent(tokenKey, token);
+                schedule(token);
+            }
+        }
+        if (token != null && isExpired(token, clock.millis())) {
+            remove(tokenKey);
+            return null;
+        }
+        return token;
+    }
+
+    /**
+     * Remove the token for the given key, and return it, or null if it was not in the store. Only one of
+     * several threads removing the same token gets it back.
+     */
+    public T remove(String tokenKey) {
+        if (tokenKey == null) {
+            return null;
+        }
+        T token = tokens.remove(tokenKey);
+        if (backend != null) {
+            backend.remove(tokenKey);
+        }
+        return token;
+    }
+
+    /**
+     * The number of tokens in memory, including any that have expired but not yet been removed
+     */
+    public int size() {
+        return tokens.size();
+    }
+
+    /**
+     * Remove the tokens that have expired since the wheel was last advanced
+     */
+    public void expire() {
+        long now = clock.millis();
+        long nowTick = now / tickMillis;
+        long tick = currentTick.get();
+        // Only one thread advances the wheel at a time
+        if (nowTick <= tick || !currentTick.compareAndSet(tick, nowTick)) {
+            return;
+        }
+
+        // Visit every slot at most once, even if the wheel has not been advanced for more than one turn
+        long lastTick = Math.min(nowTick, tick + wheel.length);
+        for (long t = tick + 1; t <= lastTick; t++) {
+            // Drain the slot first, as tokens that are rescheduled might go back into the same slot
+            Set<String> slot = wheel[(int)(t % wheel.length)];
+            List<String> tokenKeys = new ArrayList<>();
+            for (String tokenKey : slot) {
+                if (slot.remove(tokenKey)) {
+                    tokenKeys.add(tokenKey);
+                }
+            }
+
+            for (String tokenKey : tokenKeys) {
+                T token = tokens.get(tokenKey);
+                if (token == null) {
+                    continue;
+                }
+                if (isExpired(token, now)) {
+                    tokens.remove(tokenKey, token);
+                    if (backend != null) {
+                        backend.remove(tokenKey);
+                    }
+                } else {
+                    // Not expired yet as it was scheduled more than one turn of the wheel ahead
+                    schedule(token);
+                }
+            }
+        }
+    }
+
+    private void schedule(T token) {
+        if (token.getLifetime() <= 0) {
+            return;
+        }
+        long expiryTick = expiryTime(token) / tickMillis + 1;
+        long tick = currentTick.get();
+        // Make sure the slot is not one that has just been visited
+        long slotTick = Math.max(expiryTick, tick + 1);
+        slotTick = Math.min(slotTick, tick + wheel.length - 1);
+        wheel[(int)(slotTick % wheel.length)].add(token.getTokenKey());
+    }
+
+    private static boolean isExpired(Token token, long now) {
+        return token.getLifetime() > 0 && now >= expiryTime(token);
+    }
+
+    private static long expiryTime(Token token) {
+        return TimeUnit.SECONDS.toMillis(token.getIssuedAt() + token.getLifetime());
+    }
+
+    public TokenStoreBackend<T> getBackend() {
+        return backend;
+    }
+
+    public void setBackend(TokenStoreBackend<T> backend) {
+        this.backend = backend;
+    }
+
+}
@@ -0,0 +1,40 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.coheigea.cxf.oauth1.oauthservice;
+
+import org.apache.cxf.rs.security.oauth.data.Token;
+
+/**
+ * A persistent backend for a TokenStore, e.g. a database table. The TokenStore writes each token through to
+ * it, and loads a token from it if it is not in memory (e.g. after a restart). The implementation must be
+ * thread-safe.
+ */
+public interface TokenStoreBackend<T extends Token> {
+
+    void store(T token);
+
+    /**
+     * Return the token for the given key, or null if it is unknown
+     */
+    T load(String tokenKey);
+
+    void remove(String tokenKey);
+
+}
@@ -0,0 +1,225 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oauth1.oauthservice;
+
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.rs.security.oauth.data.AccessToken;
+import org.apache.cxf.rs.security.oauth.data.AccessTokenRegistration;
+import org.apache.cxf.rs.security.oauth.data.AuthorizationInput;
+import org.apache.cxf.rs.security.oauth.data.Client;
+import org.apache.cxf.rs.security.oauth.data.RequestToken;
+import org.apache.cxf.rs.security.oauth.data.RequestTokenRegistration;
+import org.apache.cxf.rs.security.oauth.provider.OAuthServiceException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Some multi-threaded load tests of the TokenStore, via the OAuthDataProviderImpl
+ */
+public class TokenStoreTest {
+
+    private static final int THREADS = 8;
+    private static final int TOKENS_PER_THREAD = 2000;
+
+    private final Client client = new Client("consumer-id", "this-is-a-secret");
+
+    @org.junit.Test
+    public void testConcurrentTokenIssuance() throws Exception {
+        OAuthDataProviderImpl provider = new OAuthDataProviderImpl();
+        Set<String> keptTokens = ConcurrentHashMap.newKeySet();
+
+        runConcurrently(() -> {
+            for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+                RequestToken requestToken = provider.createRequestToken(createRegistration(300L));
+                assertNotNull(provider.getRequestToken(requestToken.getTokenKey()));
+                provider.finalizeAuthorization(createAuthorization(requestToken));
+
+                AccessToken accessToken = provider.createAccessToken(createAccessRegistration(requestToken));
+                assertNull(provider.getRequestToken(requestToken.getTokenKey()));
+                assertNotNull(provider.getAccessToken(accessToken.getTokenKey()));
+
+                // Keep every other access token
+                if (i % 2 == 0) {
+                    keptTokens.add(accessToken.getTokenKey());
+                } else {
+                    provider.removeToken(accessToken);
+                    assertNull(provider.getAccessToken(accessToken.getTokenKey()));
+                }
+            }
+            return null;
+        });
+
+        // No request token is left over, and no access token is lost
+        assertEquals(0, provider.getRequestTokens().size());
+        assertEquals(THREADS * TOKENS_PER_THREAD / 2, keptTokens.size());
+        assertEquals(keptTokens.size(), provider.getAccessTokens().size());
+        for (String tokenKey : keptTokens) {
+            assertNotNull(provider.getAccessToken(tokenKey));
+        }
+    }
+
+    @org.junit.Test
+    public void testRequestTokenIsOnlyExchangedOnce() throws Exception {
+        OAuthDataProviderImpl provider = new OAuthDataProviderImpl();
+        RequestToken requestToken = provider.createRequestToken(createRegistration(300L));
+        provider.finalizeAuthorization(createAuthorization(requestToken));
+
+        AtomicInteger exchanged = new AtomicInteger();
+        runConcurrently(() -> {
+            try {
+                provider.createAccessToken(createAccessRegistration(requestToken));
+                exchanged.incrementAndGet();
+            } catch (OAuthServiceException ex) {
+                // Expected for all but one of the threads
+            }
+            return null;
+        });
+
+        assertEquals(1, exchanged.get());
+        assertEquals(1, provider.getAccessTokens().size());
+    }
+
+    @org.junit.Test
+    public void testExpiredTokensAreRemoved() throws Exception {
+        // The store and the tokens use a clock that the test advances, so that expiry does not depend on how
+        // long the test takes to run
+        TestClock clock = new TestClock(1_000_000_000L);
+        OAuthDataProviderImpl provider = new OAuthDataProviderImpl();
+        // A wheel of 16 slots of 100ms, so the tokens that expire in 5 seconds are rescheduled
+        provider.setRequestTokens(new TokenStore<RequestToken>(100L, 16, clock));
+
+        runConcurrently(() -> {
+            for (int i = 0; i < TOKENS_PER_THREAD; i++) {
+                provider.createRequestToken(createRegistration(i % 2 == 0 ? 1L : 5L, clock));
+            }
+            return null;
+        });
+        assertEquals(THREADS * TOKENS_PER_THREAD, provider.getRequestTokens().size());
+
+        clock.advance(2200L);
+        provider.getRequestTokens().expire();
+        assertEquals(THREADS * TOKENS_PER_THREAD / 2, provider.getRequestTokens().size());
+
+        clock.advance(3200L);
+        provider.getRequestTokens().expire();
+        assertEquals(0, provider.getRequestTokens().size());
+    }
+
+    private RequestTokenRegistration createRegistration(long lifetime) {
+        return createRegistration(lifetime, Clock.systemUTC());
+    }
+
+    private RequestTokenRegistration createRegistration(long lifetime, Clock clock) {
+        RequestTokenRegistration registration = new RequestTokenRegistration();
+        registration.setClient(client);
+        registration.setScopes(Collections.singletonList("get_balance"));
+        registration.setCallback("http://www.blah.apache.org");
+        registration.setLifetime(lifetime);
+        registration.setIssuedAt(clock.millis() / 1000L);
+        return registration;
+    }
+
+    private static AuthorizationInput createAuthorization(RequestToken requestToken) {
+        AuthorizationInput authorizationInput = new AuthorizationInput();
+        authorizationInput.setToken(requestToken);
+        return authorizationInput;
+    }
+
+    private static AccessTokenRegistration createAccessRegistration(RequestToken requestToken) {
+        AccessTokenRegistration registration = new AccessTokenRegistration();
+        registration.setRequestToken(requestToken);
+        return registration;
+    }
+
+    private static void runConcurrently(Callable<Void> task) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Void>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+            for (Future<Void> result : results) {
+                // Rethrows any assertion failure in the task
+                result.get();
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * A Clock that only moves when it is advanced
+     */
+    private static final class TestClock extends Clock {
+
+        private final AtomicLong millis;
+
+        TestClock(long millis) {
+            this.millis = new AtomicLong(millis);
+        }
+
+        void advance(long delta) {
+            millis.addAndGet(delta);
+        }
+
+        @Override
+        public long millis() {
+            return millis.get();
+        }
+
+        @Override
+        public Instant instant() {
+            return Instant.ofEpochMilli(millis());
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            throw new UnsupportedOperationException();
+        }
+    }
+
+}
@@ -18,20 +18,21 @@
  */
 package org.apache.coheigea.cxf.oauth2.oauthservice;
 
-import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 
 import org.apache.cxf.rs.security.oauth2.common.Client;
 import org.apache.cxf.rs.security.oauth2.common.OAuthPermission;
 import org.apache.cxf.rs.security.oauth2.grants.code.JCacheCodeDataProvider;
-import org.apache.cxf.rs.security.oauth2.provider.OAuthServiceException;
 
 /**
- * Extend the JCacheCodeDataProvider to allow refreshing of tokens
+ * Extend the JCacheCodeDataProvider to allow refreshing of tokens. The requested scopes are mapped to
+ * permissions by a ScopeRegistry.
  */
 public class EHCacheRefreshTokenProvider extends JCacheCodeDataProvider {
     
+    private ScopeRegistry scopeRegistry = new ScopeRegistry();
+    
     protected EHCacheRefreshTokenProvider() throws Exception {
 		super();
 	}
@@ -47,43 +48,14 @@ public class EHCacheRefreshTokenProvider extends JCacheCodeDataProvider {
             return Collections.emptyList();
         }
         
-        List<OAuthPermission> permissions = new ArrayList<>();
-        for (String requestedScope : requestedScopes) {
-            if ("read_balance".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("read_balance");
-                permission.setHttpVerbs(Collections.singletonList("GET"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/balance/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else if ("create_balance".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("create_balance");
-                permission.setHttpVerbs(Collections.singletonList("POST"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/balance/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else if ("read_data".equals(requestedScope)) {
-                OAuthPermission permission = new OAuthPermission();
-                permission.setPermission("read_data");
-                permission.setHttpVerbs(Collections.singletonList("GET"));
-                List<String> uris = new ArrayList<>();
-                String partnerAddress = "/partners/data/*";
-                uris.add(partnerAddress);
-                permission.setUris(uris);
-                
-                permissions.add(permission);
-            } else {
-                throw new OAuthServiceException("invalid_scope");
-            }
-        }
-        
-        return permissions;
+        return scopeRegistry.getPermissions(requestedScopes);
+    }
+
+    public ScopeRegistry getScopeRegistry() {
+        return scopeRegistry;
+    }
+
+    public void setScopeRegistry(ScopeRegistry scopeRegistry) {
+        this.scopeRegistry = scopeRegistry;
     }
 }
@@ -0,0 +1,159 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.common;
+
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.Signature;
+import java.security.SignatureException;
+
+import org.apache.cxf.rs.security.jose.common.JoseException;
+import org.apache.cxf.rs.security.jose.jwa.AlgorithmUtils;
+import org.apache.cxf.rs.security.jose.jwa.SignatureAlgorithm;
+import org.apache.cxf.rs.security.jose.jws.JwsHeaders;
+import org.apache.cxf.rs.security.jose.jws.JwsSignature;
+import org.apache.cxf.rs.security.jose.jws.JwsSignatureProvider;
+
+/**
+ * A JwsSignatureProvider for the private (RSA) key of the IdP, which is loaded once, and where each thread
+ * keeps a Signature that is initialized with the key. This avoids loading the key (store) for each token,
+ * as happens when the signature provider is loaded from the endpoint properties, and the cost of setting up
+ * a new Signature for each token. Set it as the "signatureProvider" of an IdTokenResponseFilter (or of any
+ * other JOSE producer). A JwsSignature must be used by the thread that created it, which is the case for the
+ * CXF JOSE producers.
+ */
+public class ThreadLocalJwsSignatureProvider implements JwsSignatureProvider {
+
+    private final PrivateKey privateKey;
+    private final SignatureAlgorithm algorithm;
+    private final ThreadLocal<ThreadSignature> signature;
+
+    public ThreadLocalJwsSignatureProvider(PrivateKey privateKey, SignatureAlgorithm algorithm) {
+        if (!AlgorithmUtils.isRsaSign(algorithm.getJwaName())) {
+            throw new IllegalArgumentException("Unsupported signature algorithm: " + algorithm);
+        }
+        this.privateKey = privateKey;
+        this.algorithm = algorithm;
+        this.signature = ThreadLocal.withInitial(this::createSignature);
+    }
+
+    /**
+     * Create a signature provider for the private key with the given alias in the given (JKS) keystore,
+     * which is loaded from the classpath.
+     */
+    public static ThreadLocalJwsSignatureProvider fromKeystore(String keystoreResource,
+                                                               String keystorePassword,
+                                                               String alias, String keyPassword,
+                                                               String algorithm) throws Exception {
+        KeyStore keystore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream =
+            ThreadLocalJwsSignatureProvider.class.getClassLoader().getResourceAsStream(keystoreResource)) {
+            if (inputStream == null) {
+                throw new IllegalArgumentException(keystoreResource + " is not on the classpath");
+            }
+            keystore.load(inputStream, keystorePassword.toCharArray());
+        }
+        PrivateKey key = (PrivateKey)keystore.getKey(alias, keyPassword.toCharArray());
+        return new ThreadLocalJwsSignatureProvider(key, SignatureAlgorithm.getAlgorithm(algorithm));
+    }
+
+    private ThreadSignature createSignature() {
+        try {
+            Signature sig = Signature.getInstance(algorithm.getJavaName());
+            sig.initSign(privateKey);
+            return new ThreadSignature(sig);
+        } catch (GeneralSecurityException ex) {
+            throw new JoseException(ex);
+        }
+    }
+
+    @Override
+    public SignatureAlgorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Sign the given content, which JwsCompactProducer has already created from the headers, so that the
+     * headers must not be changed here.
+     */
+    @Override
+    public byte[] sign(JwsHeaders headers, byte[] content) {
+        JwsSignature jwsSignature = createJwsSignature(headers);
+        jwsSignature.update(content, 0, content.length);
+        return jwsSignature.sign();
+    }
+
+    @Override
+    public JwsSignature createJwsSignature(JwsHeaders headers) {
+        if (headers.getSignatureAlgorithm() == null) {
+            headers.setSignatureAlgorithm(algorithm);
+        } else if (headers.getSignatureAlgorithm() != algorithm) {
+            throw new JoseException("Unexpected signature algorithm: " + headers.getSignatureAlgorithm());
+        }
+
+        ThreadSignature threadSignature = signature.get();
+        try {
+            if (threadSignature.dirty) {
+                // A previous JwsSignature of this thread was not completed
+                threadSignature.sig.initSign(privateKey);
+                threadSignature.dirty = false;
+            }
+        } catch (GeneralSecurityException ex) {
+            throw new JoseException(ex);
+        }
+        return threadSignature;
+    }
+
+    /**
+     * The Signature of a thread. Signature.sign() resets the Signature, so that it can be used for the next
+     * token.
+     */
+    private static final class ThreadSignature implements JwsSignature {
+        private final Signature sig;
+        private boolean dirty;
+
+        ThreadSignature(Signature sig) {
+            this.sig = sig;
+        }
+
+        @Override
+        public void update(byte[] src, int off, int len) {
+            dirty = true;
+            try {
+                sig.update(src, off, len);
+            } catch (SignatureException ex) {
+                throw new JoseException(ex);
+            }
+        }
+
+        @Override
+        public byte[] sign() {
+            try {
+                byte[] result = sig.sign();
+                dirty = false;
+                return result;
+            } catch (SignatureException ex) {
+                throw new JoseException(ex);
+            }
+        }
+    }
+
+}
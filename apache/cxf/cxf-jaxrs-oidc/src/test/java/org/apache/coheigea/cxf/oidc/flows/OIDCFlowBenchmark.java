@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.flows;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyStore;
+import java.security.MessageDigest;
+import java.security.PrivateKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+import org.apache.coheigea.cxf.oidc.common.ThreadLocalJwsSignatureProvider;
+import org.apache.coheigea.cxf.oidc.provider.IdTokenProviderImpl;
+import org.apache.cxf.rs.security.jose.jwa.SignatureAlgorithm;
+import org.apache.cxf.rs.security.jose.jws.JwsJwtCompactProducer;
+import org.apache.cxf.rs.security.jose.jws.JwsSignatureProvider;
+import org.apache.cxf.rs.security.jose.jws.JwsUtils;
+import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
+import org.apache.cxf.rs.security.jose.jwt.JwtToken;
+import org.apache.cxf.rs.security.oauth2.common.UserSubject;
+import org.apache.cxf.rs.security.oidc.common.IdToken;
+
+/**
+ * A simple throughput benchmark of the tokens that the OIDC provider creates and signs for a login, for
+ * each of the flows of AuthorizationCodeFlowTest (an IdToken), ImplicitFlowTest (an IdToken with an
+ * "at_hash" and a JWT access token) and HybridFlowTest (an IdToken with an "at_hash" and a "c_hash" and a
+ * JWT access token). It compares creating a new signature provider for each token ("uncached") with the
+ * ThreadLocalJwsSignatureProvider ("cached"). Run the main method from the test classpath, optionally
+ * passing the number of threads and the duration of each run in seconds.
+ */
+public class OIDCFlowBenchmark {
+
+    private static final List<String> SCOPES = Collections.singletonList("openid");
+    private static final String[] USERS = {"alice", "bob", "carol", "dave"};
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        PrivateKey privateKey = loadPrivateKey();
+
+        IdTokenProviderImpl provider = new IdTokenProviderImpl();
+        Supplier<JwsSignatureProvider> uncachedSigner =
+            () -> JwsUtils.getPrivateKeySignatureProvider(privateKey, SignatureAlgorithm.RS256);
+
+        JwsSignatureProvider threadLocalSigner =
+            new ThreadLocalJwsSignatureProvider(privateKey, SignatureAlgorithm.RS256);
+        Supplier<JwsSignatureProvider> cachedSigner = () -> threadLocalSigner;
+
+        System.out.println("Flow, Scenario, Threads, Logins/s");
+        for (String flow : Arrays.asList("code", "implicit", "hybrid")) {
+            run(flow, "uncached", provider, uncachedSigner, threads, seconds);
+            run(flow, "cached", provider, cachedSigner, threads, seconds);
+        }
+    }
+
+    private static void run(String flow, String scenario, IdTokenProviderImpl provider,
+                            Supplier<JwsSignatureProvider> signer,
+                            int threads, int seconds) throws Exception {
+        // Warm up
+        for (int i = 0; i < 1000; i++) {
+            login(flow, provider, signer, USERS[i % USERS.length]);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (running.get()) {
+                    login(flow, provider, signer, USERS[(int)(count % USERS.length)]);
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+
+        System.out.println(flow + ", " + scenario + ", " + threads + ", " + (total / seconds));
+    }
+
+    /**
+     * Create and sign the tokens of a login with the given flow, as the IdTokenResponseFilter (and the data
+     * provider for a JWT access token) would
+     */
+    private static void login(String flow, IdTokenProviderImpl provider,
+                              Supplier<JwsSignatureProvider> signer, String user) throws Exception {
+        IdToken idToken = provider.getIdToken("consumer-id", new UserSubject(user), SCOPES);
+
+        if (!"code".equals(flow)) {
+            JwtClaims accessTokenClaims = new JwtClaims();
+            accessTokenClaims.setSubject(user);
+            accessTokenClaims.setClaim("client_id", "consumer-id");
+            accessTokenClaims.setIssuedAt(idToken.getIssuedAt());
+            accessTokenClaims.setExpiryTime(idToken.getIssuedAt() + 3600L);
+            accessTokenClaims.setClaim("scope", "openid");
+            String accessToken =
+                new JwsJwtCompactProducer(new JwtToken(accessTokenClaims)).signWith(signer.get());
+
+            idToken.setAccessTokenHash(calculateHash(accessToken));
+            if ("hybrid".equals(flow)) {
+                idToken.setAuthorizationCodeHash(calculateHash(user + "-code"));
+            }
+        }
+
+        new JwsJwtCompactProducer(new JwtToken(idToken)).signWith(signer.get());
+    }
+
+    /**
+     * The "at_hash" or "c_hash" (for RS256) of the given value
+     */
+    private static String calculateHash(String value) throws Exception {
+        byte[] digest =
+            MessageDigest.getInstance("SHA-256").digest(value.getBytes(StandardCharsets.US_ASCII));
+        byte[] leftHalf = Arrays.copyOf(digest, digest.length / 2);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(leftHalf);
+    }
+
+    private static PrivateKey loadPrivateKey() throws Exception {
+        KeyStore keystore = KeyStore.getInstance("JKS");
+        try (InputStream inputStream =
+            OIDCFlowBenchmark.class.getClassLoader().getResourceAsStream("servicestore.jks")) {
+            keystore.load(inputStream, "sspass".toCharArray());
+        }
+        return (PrivateKey)keystore.getKey("myservicekey", "skpass".toCharArray());
+    }
+
+}
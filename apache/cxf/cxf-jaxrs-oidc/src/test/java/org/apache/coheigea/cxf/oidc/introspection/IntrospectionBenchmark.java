@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.introspection;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.testutil.common.AbstractBusClientServerTestBase;
+
+/**
+ * A simple load test of the OAuthRequestFilter of the bank service, which compares the requests per second
+ * when the JWT access token is validated remotely (an HTTP call to the AccessTokenValidatorService of the
+ * OIDC provider for each request) and locally (with the JwksCache and IntrospectionCache). Run the main
+ * method from the test classpath, optionally passing the number of threads and the duration of each run in
+ * seconds.
+ */
+public class IntrospectionBenchmark extends AbstractBusClientServerTestBase {
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // Don't measure the logging of each message
+        Logger.getLogger("org.apache.cxf.services").setLevel(Level.WARNING);
+
+        // The ports are allocated by (the static initializer of) LocalIntrospectionTest
+        System.out.println("Bank service on port " + LocalIntrospectionTest.PORT
+            + ", OIDC provider on port " + LocalIntrospectionTest.OIDC_PORT);
+        URL busFile = LocalIntrospectionTest.class.getResource("cxf-client.xml");
+        if (!launchServer(BankServer.class, true) || !launchServer(OIDCProviderServer.class, true)) {
+            throw new IllegalStateException("Server failed to launch");
+        }
+
+        String accessToken = LocalIntrospectionTest.getAccessToken(busFile);
+        WebClient client = LocalIntrospectionTest.createBankClient(busFile, "local", accessToken);
+        client.path("/alice");
+        client.post(40);
+
+        System.out.println("Mode, Threads, Requests/s");
+        for (String mode : new String[] {"remote", "local"}) {
+            run(busFile, mode, accessToken, threads, seconds);
+        }
+        System.exit(0);
+    }
+
+    private static void run(URL busFile, String mode, String accessToken,
+                            int threads, int seconds) throws Exception {
+        // Warm up
+        WebClient warmUpClient = LocalIntrospectionTest.createBankClient(busFile, mode, accessToken);
+        warmUpClient.path("/alice");
+        for (int i = 0; i < 500; i++) {
+            check(warmUpClient.get());
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                // A WebClient is not thread-safe
+                WebClient client = LocalIntrospectionTest.createBankClient(busFile, mode, accessToken);
+                client.path("/alice");
+                long count = 0;
+                while (running.get()) {
+                    check(client.get());
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+
+        System.out.println(mode + ", " + threads + ", " + (total / seconds));
+    }
+
+    private static void check(Response response) {
+        if (response.getStatus() != 200) {
+            throw new IllegalStateException("Unexpected status " + response.getStatus());
+        }
+        response.readEntity(Integer.class);
+    }
+
+}
@@ -0,0 +1,187 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.introspection;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.rs.security.oauth2.common.AccessTokenValidation;
+
+/**
+ * A bounded cache of the results of validating (introspecting) access tokens, keyed on the SHA-256 hash of
+ * the token, so that the tokens themselves are not kept in memory. A successful result is cached until the
+ * token expires (or for "maxTimeToLive" milliseconds if that is sooner), and a failed result (a null
+ * AccessTokenValidation) is cached for "negativeTimeToLive" milliseconds, so that repeated requests with an
+ * invalid token do not each cost a signature verification.
+ */
+public class IntrospectionCache {
+
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    });
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private long maxTimeToLive = 3600000L;
+    private long negativeTimeToLive = 30000L;
+    private int maxSize = 10000;
+
+    /**
+     * Return the cache key (the Base64 encoded SHA-256 hash) of the given token
+     */
+    public String getKey(String token) {
+        byte[] hash = SHA256.get().digest(token.getBytes(StandardCharsets.UTF_8));
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(hash);
+    }
+
+    /**
+     * Return the cached entry for the given key, or null if there is none or it has expired. The
+     * validation of the entry is null if the token was found to be invalid.
+     */
+    public Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiry > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Cache a successful validation, until the given expiry time of the token (in milliseconds)
+     */
+    public void put(String key, AccessTokenValidation validation, long tokenExpiry) {
+        long expiry = Math.min(tokenExpiry, System.currentTimeMillis() + maxTimeToLive);
+        put(key, new Entry(validation, expiry));
+    }
+
+    /**
+     * Cache that the token is invalid
+     */
+    public void putInvalid(String key) {
+        if (negativeTimeToLive > 0) {
+            put(key, new Entry(null, System.currentTimeMillis() + negativeTimeToLive));
+        }
+    }
+
+    private void put(String key, Entry entry) {
+        entries.put(key, entry);
+        if (entries.size() > maxSize) {
+            evict();
+        }
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Remove the expired entries, and then the entries that expire first until the cache is back within
+     * its maximum size.
+     */
+    private synchronized void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiry <= now);
+
+        while (entries.size() > maxSize) {
+            Map.Entry<String, Entry> first = null;
+            for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+                if (first == null || entry.getValue().expiry < first.getValue().expiry) {
+                    first = entry;
+                }
+            }
+            if (first == null) {
+                return;
+            }
+            entries.remove(first.getKey(), first.getValue());
+        }
+    }
+
+    public long getMaxTimeToLive() {
+        return maxTimeToLive;
+    }
+
+    /**
+     * Set the maximum time (in milliseconds) that a successful validation is cached for
+     */
+    public void setMaxTimeToLive(long maxTimeToLive) {
+        this.maxTimeToLive = maxTimeToLive;
+    }
+
+    public long getNegativeTimeToLive() {
+        return negativeTimeToLive;
+    }
+
+    /**
+     * Set how long (in milliseconds) an invalid token is remembered for. Set it to 0 to disable negative
+     * caching.
+     */
+    public void setNegativeTimeToLive(long negativeTimeToLive) {
+        this.negativeTimeToLive = negativeTimeToLive;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public static final class Entry {
+        private final AccessTokenValidation validation;
+        private final long expiry;
+
+        Entry(AccessTokenValidation validation, long expiry) {
+            this.validation = validation;
+            this.expiry = expiry;
+        }
+
+        /**
+         * The validation of the token, or null if the token is invalid
+         */
+        public AccessTokenValidation getValidation() {
+            return validation;
+        }
+    }
+
+}
@@ -0,0 +1,221 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.introspection;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.rs.security.jose.jwk.JsonWebKey;
+import org.apache.cxf.rs.security.jose.jwk.JsonWebKeys;
+
+/**
+ * A cache of the JSON Web Keys that the OIDC provider publishes via its OidcKeysService. The keys are
+ * refreshed in the background once they are older than "refreshInterval" - "refreshAheadTime"
+ * milliseconds, so that requests do not wait for them, and they are only fetched synchronously the
+ * first time, once they are older than "refreshInterval", or if a token is signed with an unknown key
+ * (at most every "minRefreshInterval" milliseconds, so that tokens with made-up key ids cannot flood the
+ * OidcKeysService). If a refresh fails then the previous keys are kept.
+ */
+public class JwksCache {
+
+    private static org.apache.commons.logging.Log log =
+            org.apache.commons.logging.LogFactory.getLog(JwksCache.class);
+
+    private WebClient keysClient;
+    private long refreshInterval = 900000L;
+    private long refreshAheadTime = 180000L;
+    private long minRefreshInterval = 10000L;
+
+    private volatile Keys keys;
+    private volatile long lastFetch;
+    private final AtomicBoolean refreshing = new AtomicBoolean();
+    private volatile ExecutorService executor;
+
+    /**
+     * Return the key with the given key id, or the only key if the key id is null. Return null if there is
+     * no such key.
+     */
+    public JsonWebKey getKey(String keyId) {
+        Keys current = getKeys();
+        JsonWebKey key = current.find(keyId);
+        if (key == null && keyId != null && canFetch()) {
+            // The provider might have rolled over to a new key
+            key = refresh(current).find(keyId);
+        }
+        return key;
+    }
+
+    private Keys getKeys() {
+        Keys current = keys;
+        if (current == null) {
+            return refresh(null);
+        }
+
+        long age = System.currentTimeMillis() - current.fetched;
+        if (age >= refreshInterval && canFetch()) {
+            return refresh(current);
+        }
+        if (age >= refreshInterval - refreshAheadTime && canFetch()
+            && refreshing.compareAndSet(false, true)) {
+            getExecutor().execute(() -> {
+                try {
+                    refresh(current);
+                } catch (RuntimeException ex) {
+                    log.warn("Error refreshing the JSON Web Keys: " + ex.getMessage());
+                } finally {
+                    refreshing.set(false);
+                }
+            });
+        }
+        return current;
+    }
+
+    /**
+     * Don't fetch the keys more often than every "minRefreshInterval", e.g. while the provider is down
+     */
+    private boolean canFetch() {
+        return System.currentTimeMillis() - lastFetch >= minRefreshInterval;
+    }
+
+    /**
+     * Fetch the keys, unless another thread has already done so since "previous" was fetched
+     */
+    private synchronized Keys refresh(Keys previous) {
+        Keys current = keys;
+        if (current != previous) {
+            return current;
+        }
+
+        lastFetch = System.currentTimeMillis();
+        try {
+            JsonWebKeys jsonWebKeys = keysClient.get(JsonWebKeys.class);
+            List<JsonWebKey> keyList = jsonWebKeys == null || jsonWebKeys.getKeys() == null
+                ? Collections.<JsonWebKey>emptyList() : jsonWebKeys.getKeys();
+            current = new Keys(keyList, System.currentTimeMillis());
+        } catch (RuntimeException ex) {
+            if (previous == null) {
+                throw ex;
+            }
+            log.warn("Error fetching the JSON Web Keys, keeping the previous keys: " + ex.getMessage());
+            return previous;
+        }
+        keys = current;
+        return current;
+    }
+
+    private ExecutorService getExecutor() {
+        ExecutorService result = executor;
+        if (result == null) {
+            synchronized (this) {
+                result = executor;
+                if (result == null) {
+                    result = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "jwks-refresh");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    executor = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Stop the background refresh thread
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdownNow();
+            executor = null;
+        }
+    }
+
+    public WebClient getKeysClient() {
+        return keysClient;
+    }
+
+    /**
+     * Set the client of the OidcKeysService, which must have a JsonWebKeysProvider
+     */
+    public void setKeysClient(WebClient keysClient) {
+        this.keysClient = keysClient;
+    }
+
+    public long getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    /**
+     * Set the maximum age (in milliseconds) of the keys
+     */
+    public void setRefreshInterval(long refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public long getRefreshAheadTime() {
+        return refreshAheadTime;
+    }
+
+    /**
+     * Set how long (in milliseconds) before the keys reach their maximum age they are refreshed in the
+     * background
+     */
+    public void setRefreshAheadTime(long refreshAheadTime) {
+        this.refreshAheadTime = refreshAheadTime;
+    }
+
+    public long getMinRefreshInterval() {
+        return minRefreshInterval;
+    }
+
+    /**
+     * Set the minimum time (in milliseconds) between fetching the keys because of an unknown key id
+     */
+    public void setMinRefreshInterval(long minRefreshInterval) {
+        this.minRefreshInterval = minRefreshInterval;
+    }
+
+    private static final class Keys {
+        private final List<JsonWebKey> keys;
+        private final long fetched;
+
+        Keys(List<JsonWebKey> keys, long fetched) {
+            this.keys = keys;
+            this.fetched = fetched;
+        }
+
+        JsonWebKey find(String keyId) {
+            if (keyId == null) {
+                return keys.size() == 1 ? keys.get(0) : null;
+            }
+            for (JsonWebKey key : keys) {
+                if (keyId.equals(key.getKeyId())) {
+                    return key;
+                }
+            }
+            return null;
+        }
+    }
+
+}
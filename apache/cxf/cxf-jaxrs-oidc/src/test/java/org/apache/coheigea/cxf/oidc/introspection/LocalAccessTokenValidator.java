@@ -0,0 +1,269 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.introspection;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import javax.ws.rs.core.MultivaluedMap;
+
+import org.apache.cxf.jaxrs.ext.MessageContext;
+import org.apache.cxf.rs.security.jose.common.JoseException;
+import org.apache.cxf.rs.security.jose.jwa.SignatureAlgorithm;
+import org.apache.cxf.rs.security.jose.jwk.JsonWebKey;
+import org.apache.cxf.rs.security.jose.jws.JwsJwtCompactConsumer;
+import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
+import org.apache.cxf.rs.security.oauth2.common.AccessTokenValidation;
+import org.apache.cxf.rs.security.oauth2.common.OAuthPermission;
+import org.apache.cxf.rs.security.oauth2.common.UserSubject;
+import org.apache.cxf.rs.security.oauth2.provider.AccessTokenValidator;
+import org.apache.cxf.rs.security.oauth2.provider.OAuthServiceException;
+import org.apache.cxf.rs.security.oauth2.utils.OAuthConstants;
+
+/**
+ * An AccessTokenValidator for OAuthRequestFilter, which validates JWT access tokens locally (without a call
+ * to the AccessTokenValidatorService of the OIDC provider). The signature of a token is checked with the
+ * provider's keys, as published by its OidcKeysService and cached by a JwksCache, and the result is cached
+ * by an IntrospectionCache until the token expires, or for a short time if the token is invalid. A token
+ * signed with a key that the JwksCache does not have (yet) is rejected without caching the result. Tokens
+ * which are not JWTs (i.e. if the provider does not issue JWT access tokens) are passed to the "delegate"
+ * validator, e.g. an AccessTokenValidatorClient, if there is one. A null AccessTokenValidation is returned
+ * for an invalid token, which OAuthRequestFilter rejects.
+ *
+ * The scopes of a token are mapped to the "scopePermissions" (e.g. to restrict them to certain HTTP verbs
+ * and URIs), or otherwise to a permission that allows any request.
+ */
+public class LocalAccessTokenValidator implements AccessTokenValidator {
+
+    private static org.apache.commons.logging.Log log =
+            org.apache.commons.logging.LogFactory.getLog(LocalAccessTokenValidator.class);
+
+    private JwksCache jwksCache;
+    private IntrospectionCache introspectionCache = new IntrospectionCache();
+    private AccessTokenValidator delegate;
+    private SignatureAlgorithm signatureAlgorithm = SignatureAlgorithm.RS256;
+    private String issuer;
+    private Map<String, OAuthPermission> scopePermissions = Collections.emptyMap();
+    private final Map<String, OAuthPermission> defaultPermissions = new ConcurrentHashMap<>();
+
+    @Override
+    public List<String> getSupportedAuthorizationSchemes() {
+        return Collections.singletonList(OAuthConstants.BEARER_AUTHORIZATION_SCHEME);
+    }
+
+    @Override
+    public AccessTokenValidation validateAccessToken(MessageContext mc, String authScheme,
+                                                     String authSchemeData,
+                                                     MultivaluedMap<String, String> extraProps)
+        throws OAuthServiceException {
+        if (!isJwt(authSchemeData)) {
+            if (delegate != null) {
+                return delegate.validateAccessToken(mc, authScheme, authSchemeData, extraProps);
+            }
+            return null;
+        }
+
+        String key = introspectionCache.getKey(authSchemeData);
+        IntrospectionCache.Entry entry = introspectionCache.get(key);
+        if (entry != null) {
+            return entry.getValidation();
+        }
+
+        JwtClaims claims;
+        try {
+            JwsJwtCompactConsumer consumer = new JwsJwtCompactConsumer(authSchemeData);
+            JsonWebKey jwk = getKey(consumer);
+            if (jwk == null) {
+                // Not cached, as the key might just not have been fetched yet after a key rollover
+                log.debug("No key is available to verify the access token");
+                return null;
+            }
+            claims = verify(consumer, jwk);
+        } catch (JoseException | IllegalArgumentException ex) {
+            log.debug("Invalid access token: " + ex.getMessage());
+            claims = null;
+        }
+
+        if (claims == null) {
+            introspectionCache.putInvalid(key);
+            return null;
+        }
+
+        AccessTokenValidation validation = createValidation(authSchemeData, claims);
+        introspectionCache.put(key, validation, TimeUnit.SECONDS.toMillis(claims.getExpiryTime()));
+        return validation;
+    }
+
+    /**
+     * Get the key to verify the token with, or null if the JwksCache does not have it (yet). A token with
+     * an unsupported signature algorithm is rejected here, as no key would be accepted for it.
+     */
+    private JsonWebKey getKey(JwsJwtCompactConsumer consumer) {
+        if (consumer.getJwsHeaders().getSignatureAlgorithm() != signatureAlgorithm) {
+            throw new IllegalArgumentException("Unsupported signature algorithm");
+        }
+        // A failure to get the keys is not cached either, as the token might be valid
+        return jwksCache.getKey(consumer.getJwsHeaders().getKeyId());
+    }
+
+    /**
+     * Check the signature, issuer and expiry of the token, and return its claims, or null if it is invalid
+     */
+    private JwtClaims verify(JwsJwtCompactConsumer consumer, JsonWebKey jwk) {
+        if (!consumer.verifySignatureWith(jwk, signatureAlgorithm)) {
+            return null;
+        }
+
+        JwtClaims claims = consumer.getJwtClaims();
+        if (claims.getExpiryTime() == null
+            || TimeUnit.SECONDS.toMillis(claims.getExpiryTime()) <= System.currentTimeMillis()) {
+            return null;
+        }
+        if (issuer != null && !issuer.equals(claims.getIssuer())) {
+            return null;
+        }
+        return claims;
+    }
+
+    private AccessTokenValidation createValidation(String token, JwtClaims claims) {
+        AccessTokenValidation validation = new AccessTokenValidation();
+        validation.setInitialValidationSuccessful(true);
+        validation.setTokenKey(token);
+        validation.setTokenType(OAuthConstants.BEARER_TOKEN_TYPE);
+        validation.setTokenIssuer(claims.getIssuer());
+        validation.setClientId(claims.getStringProperty(OAuthConstants.CLIENT_ID));
+        validation.setTokenGrantType(claims.getStringProperty(OAuthConstants.GRANT_TYPE));
+
+        long issuedAt = claims.getIssuedAt() != null
+            ? claims.getIssuedAt() : TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis());
+        validation.setTokenIssuedAt(issuedAt);
+        validation.setTokenLifetime(claims.getExpiryTime() - issuedAt);
+
+        if (claims.getSubject() != null) {
+            // The login is the "username" claim if there is one, as the subject might be an id
+            String login = claims.getStringProperty("username");
+            UserSubject subject = new UserSubject(login != null ? login : claims.getSubject());
+            subject.setId(claims.getSubject());
+            validation.setTokenSubject(subject);
+        }
+        if (claims.getAudiences() != null) {
+            validation.setAudiences(claims.getAudiences());
+        }
+        validation.setTokenScopes(getPermissions(claims.getClaim(OAuthConstants.SCOPE)));
+        return validation;
+    }
+
+    private List<OAuthPermission> getPermissions(Object scopeClaim) {
+        Collection<?> scopes;
+        if (scopeClaim instanceof String) {
+            scopes = Arrays.asList(((String)scopeClaim).trim().split("\\s+"));
+        } else if (scopeClaim instanceof Collection) {
+            scopes = (Collection<?>)scopeClaim;
+        } else {
+            return Collections.emptyList();
+        }
+
+        List<OAuthPermission> permissions = new ArrayList<>(scopes.size());
+        for (Object scope : scopes) {
+            String scopeName = scope.toString();
+            if (scopeName.isEmpty()) {
+                continue;
+            }
+            OAuthPermission permission = scopePermissions.get(scopeName);
+            if (permission == null) {
+                // Shared, as the permissions are not modified
+                permission = defaultPermissions.computeIfAbsent(scopeName, OAuthPermission::new);
+            }
+            permissions.add(permission);
+        }
+        return permissions;
+    }
+
+    private static boolean isJwt(String token) {
+        if (token == null) {
+            return false;
+        }
+        int firstDot = token.indexOf('.');
+        return firstDot > 0 && token.indexOf('.', firstDot + 1) > firstDot;
+    }
+
+    public JwksCache getJwksCache() {
+        return jwksCache;
+    }
+
+    public void setJwksCache(JwksCache jwksCache) {
+        this.jwksCache = jwksCache;
+    }
+
+    public IntrospectionCache getIntrospectionCache() {
+        return introspectionCache;
+    }
+
+    public void setIntrospectionCache(IntrospectionCache introspectionCache) {
+        this.introspectionCache = introspectionCache;
+    }
+
+    public AccessTokenValidator getDelegate() {
+        return delegate;
+    }
+
+    /**
+     * Set the validator of the access tokens that are not JWTs
+     */
+    public void setDelegate(AccessTokenValidator delegate) {
+        this.delegate = delegate;
+    }
+
+    public SignatureAlgorithm getSignatureAlgorithm() {
+        return signatureAlgorithm;
+    }
+
+    /**
+     * Set the (only) signature algorithm that is accepted, RS256 by default
+     */
+    public void setSignatureAlgorithm(SignatureAlgorithm signatureAlgorithm) {
+        this.signatureAlgorithm = signatureAlgorithm;
+    }
+
+    public String getIssuer() {
+        return issuer;
+    }
+
+    /**
+     * Set the issuer that the tokens must have. If it is not set then the issuer is not checked.
+     */
+    public void setIssuer(String issuer) {
+        this.issuer = issuer;
+    }
+
+    public Map<String, OAuthPermission> getScopePermissions() {
+        return scopePermissions;
+    }
+
+    public void setScopePermissions(Map<String, OAuthPermission> scopePermissions) {
+        this.scopePermissions = scopePermissions;
+    }
+
+}
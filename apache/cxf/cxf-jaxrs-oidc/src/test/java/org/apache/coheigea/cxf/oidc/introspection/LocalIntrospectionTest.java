@@ -0,0 +1,203 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.oidc.introspection;
+
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import javax.ws.rs.core.Form;
+import javax.ws.rs.core.Response;
+
+import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.jaxrs.provider.json.JSONProvider;
+import org.apache.cxf.rs.security.oauth2.common.ClientAccessToken;
+import org.apache.cxf.rs.security.oauth2.common.OAuthAuthorizationData;
+import org.apache.cxf.rs.security.oauth2.provider.OAuthJSONProvider;
+import org.apache.cxf.testutil.common.AbstractBusClientServerTestBase;
+import org.junit.BeforeClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Test validating JWT access tokens locally at the resource server (with the keys of the OidcKeysService)
+ * as well as remotely (via the AccessTokenValidatorService of the OIDC provider).
+ */
+public class LocalIntrospectionTest extends AbstractBusClientServerTestBase {
+
+    static final String PORT = allocatePort(BankServer.class);
+    static final String OIDC_PORT = allocatePort(OIDCProviderServer.class);
+
+    @BeforeClass
+    public static void startServers() throws Exception {
+        assertTrue(
+                "Server failed to launch",
+                // run the server in the same process
+                // set this to false to fork
+                launchServer(BankServer.class, true)
+        );
+        assertTrue(
+                "Server failed to launch",
+                // run the server in the same process
+                // set this to false to fork
+                launchServer(OIDCProviderServer.class, true)
+        );
+    }
+
+    @org.junit.Test
+    public void testLocalAndRemoteValidation() throws Exception {
+        URL busFile = LocalIntrospectionTest.class.getResource("cxf-client.xml");
+
+        String accessToken = getAccessToken(busFile);
+        // A JWT access token
+        assertEquals(3, accessToken.split("\\.").length);
+
+        // Create an initial account at the bank, validating the token locally
+        WebClient client = createBankClient(busFile, "local", accessToken);
+        client.path("/alice");
+        Response response = client.post(40);
+        assertEquals(204, response.getStatus());
+
+        // Now get the balance, validating the token locally (from the cache) and remotely
+        for (String mode : new String[] {"local", "local", "remote"}) {
+            client = createBankClient(busFile, mode, accessToken);
+            client.path("/alice");
+            response = client.get();
+            assertEquals(200, response.getStatus());
+            assertEquals(40, response.readEntity(Integer.class).intValue());
+        }
+    }
+
+    @org.junit.Test
+    public void testInvalidToken() throws Exception {
+        URL busFile = LocalIntrospectionTest.class.getResource("cxf-client.xml");
+
+        String accessToken = getAccessToken(busFile);
+
+        // Tamper with the signature
+        int signatureIndex = accessToken.lastIndexOf('.') + 1;
+        char signatureChar = accessToken.charAt(signatureIndex) == 'A' ? 'B' : 'A';
+        String tamperedToken = accessToken.substring(0, signatureIndex) + signatureChar
+            + accessToken.substring(signatureIndex + 1);
+
+        // Twice, where the second time the token is known to be invalid from the cache
+        for (int i = 0; i < 2; i++) {
+            WebClient client = createBankClient(busFile, "local", tamperedToken);
+            client.path("/alice");
+            assertEquals(401, client.get().getStatus());
+        }
+    }
+
+    static WebClient createBankClient(URL busFile, String mode, String accessToken) {
+        String address = "https://localhost:" + PORT + "/bankservice/" + mode + "/balance";
+        WebClient client = WebClient.create(address, busFile.toString());
+        client.type("text/plain").accept("text/plain");
+        client.header("Authorization", "Bearer " + accessToken);
+        return client;
+    }
+
+    static String getAccessToken(URL busFile) {
+        String address = "https://localhost:" + OIDC_PORT + "/services/";
+        WebClient client = WebClient.create(address, setupProviders(), "alice", "security", busFile.toString());
+        // Save the Cookie for the second request...
+        WebClient.getConfig(client).getRequestContext().put(
+            org.apache.cxf.message.Message.MAINTAIN_SESSION, Boolean.TRUE);
+
+        // Get Authorization Code
+        String code = getAuthorizationCode(client, "openid");
+        assertNotNull(code);
+
+        // Now get the access token
+        client = WebClient.create(address, setupProviders(), "consumer-id", "this-is-a-secret", busFile.toString());
+        // Save the Cookie for the second request...
+        WebClient.getConfig(client).getRequestContext().put(
+            org.apache.cxf.message.Message.MAINTAIN_SESSION, Boolean.TRUE);
+
+        ClientAccessToken accessToken = getAccessTokenWithAuthorizationCode(client, code);
+        assertNotNull(accessToken.getTokenKey());
+        return accessToken.getTokenKey();
+    }
+
+    private static String getAuthorizationCode(WebClient client, String scope) {
+        // Make initial authorization request
+        client.type("application/json").accept("application/json");
+        client.query("client_id", "consumer-id");
+        client.query("redirect_uri", "http://www.blah.apache.org");
+        client.query("response_type", "code");
+        client.query("scope", scope);
+        client.path("authorize/");
+        Response response = client.get();
+
+        OAuthAuthorizationData authzData = response.readEntity(OAuthAuthorizationData.class);
+
+        // Now call "decision" to get the authorization code grant
+        client.path("decision");
+        client.type("application/x-www-form-urlencoded");
+
+        Form form = new Form();
+        form.param("session_authenticity_token", authzData.getAuthenticityToken());
+        form.param("client_id", authzData.getClientId());
+        form.param("redirect_uri", authzData.getRedirectUri());
+        if (authzData.getProposedScope() != null) {
+            form.param("scope", authzData.getProposedScope());
+        }
+        form.param("oauthDecision", "allow");
+
+        response = client.post(form);
+        String location = response.getHeaderString("Location");
+        return getSubstring(location, "code");
+    }
+
+    private static ClientAccessToken getAccessTokenWithAuthorizationCode(WebClient client, String code) {
+        client.type("application/x-www-form-urlencoded").accept("application/json");
+        client.path("token");
+
+        Form form = new Form();
+        form.param("grant_type", "authorization_code");
+        form.param("code", code);
+        form.param("client_id", "consumer-id");
+        Response response = client.post(form);
+
+        return response.readEntity(ClientAccessToken.class);
+    }
+
+    private static String getSubstring(String parentString, String substringName) {
+        String foundString =
+            parentString.substring(parentString.indexOf(substringName + "=") + (substringName + "=").length());
+        int ampersandIndex = foundString.indexOf('&');
+        if (ampersandIndex < 1) {
+            ampersandIndex = foundString.length();
+        }
+        return foundString.substring(0, ampersandIndex);
+    }
+
+    private static List<Object> setupProviders() {
+        List<Object> providers = new ArrayList<Object>();
+        JSONProvider<OAuthAuthorizationData> jsonP = new JSONProvider<OAuthAuthorizationData>();
+        jsonP.setNamespaceMap(Collections.singletonMap("http://org.apache.cxf.rs.security.oauth",
+                                                       "ns2"));
+        providers.add(jsonP);
+        providers.add(new OAuthJSONProvider());
+
+        return providers;
+    }
+}
@@ -32,8 +32,6 @@ import javax.ws.rs.Path;
 import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.UriBuilder;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
 
 import org.apache.cxf.common.util.Base64Utility;
 import org.apache.cxf.jaxrs.ext.MessageContext;
@@ -63,15 +61,9 @@ import org.w3c.dom.Element;
 @Path("/samlsso")
 public class SamlSso {
     private List<ServiceProvider> serviceProviders;
-    private final DocumentBuilderFactory docBuilderFactory;
     private String issuer;
     private MessageContext messageContext;
     
-    public SamlSso() {
-        docBuilderFactory = DocumentBuilderFactory.newInstance();
-        docBuilderFactory.setNamespaceAware(true);
-    }
-    
     @GET
     public javax.ws.rs.core.Response login(@QueryParam("SAMLRequest") String samlRequest,
             @QueryParam("RelayState") String relayState) throws Exception {
@@ -129,8 +121,7 @@ public class SamlSso {
     }
     
     private Element createResponse(String requestID, String racs, String requestIssuer) throws Exception {
-        DocumentBuilder docBuilder = docBuilderFactory.newDocumentBuilder();
-        Document doc = docBuilder.newDocument();
+        Document doc = DocumentBuilderPool.newDocument();
         
         Status status = 
             SAML2PResponseComponentBuilder.createStatus(
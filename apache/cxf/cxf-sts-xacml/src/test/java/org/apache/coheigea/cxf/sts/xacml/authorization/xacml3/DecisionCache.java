@@ -0,0 +1,237 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts.xacml.authorization.xacml3;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.cxf.rt.security.saml.xacml.XACMLConstants;
+import org.apache.openaz.xacml.api.Attribute;
+import org.apache.openaz.xacml.api.AttributeValue;
+import org.apache.openaz.xacml.api.Decision;
+import org.apache.openaz.xacml.api.Request;
+import org.apache.openaz.xacml.api.RequestAttributes;
+import org.apache.openaz.xacml.api.Response;
+import org.apache.openaz.xacml.api.Result;
+
+/**
+ * A bounded cache of the PDP Responses to XACML Requests, where each entry expires after "timeToLive"
+ * milliseconds (a "timeToLive" of 0, the default, disables the cache). The key of a Request is built from
+ * all of its attributes (the subject-id, roles, resource-id, action etc.), where the order of the values
+ * of an attribute (such as the roles) does not matter, and except for the "ignoredAttributes". By default
+ * the current date/time/dateTime attributes are ignored, as otherwise no two Requests would share a key -
+ * this is only correct if the policies do not use them. A Response with an Indeterminate result is not
+ * cached.
+ *
+ * When the cache grows beyond its maximum size, the expired entries and then the entries that expire first
+ * are evicted in a single pass, down to 90% of the maximum size, so that the cost of the eviction scan is
+ * shared by many puts.
+ */
+public class DecisionCache {
+
+    private static final String CURRENT_TIME = "urn:oasis:names:tc:xacml:1.0:environment:current-time";
+    private static final String CURRENT_DATE = "urn:oasis:names:tc:xacml:1.0:environment:current-date";
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private long timeToLive;
+    private int maxSize = 10000;
+    private Set<String> ignoredAttributes =
+        new HashSet<>(Arrays.asList(XACMLConstants.CURRENT_DATETIME, CURRENT_TIME, CURRENT_DATE));
+
+    public boolean isEnabled() {
+        return timeToLive > 0;
+    }
+
+    /**
+     * Get the cached Response for the given key, or null if there is none or it has expired.
+     */
+    public Response get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiry > System.currentTimeMillis()) {
+            hits.incrementAndGet();
+            return entry.response;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    public void put(String key, Response response) {
+        if (!isEnabled() || !isCacheable(response)) {
+            return;
+        }
+        entries.put(key, new Entry(response, System.currentTimeMillis() + timeToLive));
+        evictIfNeeded();
+    }
+
+    /**
+     * Return the cache key for the given Request.
+     */
+    public String getKey(Request request) {
+        List<String> categories = new ArrayList<>();
+        for (RequestAttributes requestAttributes : request.getRequestAttributes()) {
+            List<String> attributes = new ArrayList<>();
+            for (Attribute attribute : requestAttributes.getAttributes()) {
+                String attributeId = attribute.getAttributeId().stringValue();
+                if (ignoredAttributes.contains(attributeId)) {
+                    continue;
+                }
+
+                List<String> values = new ArrayList<>();
+                for (AttributeValue<?> value : attribute.getValues()) {
+                    values.add(value.getDataTypeId().stringValue() + '=' + value.getValue());
+                }
+                Collections.sort(values);
+                attributes.add(attributeId + '|' + attribute.getIssuer() + '|' + String.join("|", values));
+            }
+            if (!attributes.isEmpty()) {
+                Collections.sort(attributes);
+                String category = requestAttributes.getCategory().stringValue();
+                categories.add(category + '\n' + String.join("\n", attributes));
+            }
+        }
+        Collections.sort(categories);
+        return String.join("\n\n", categories);
+    }
+
+    private static boolean isCacheable(Response response) {
+        Collection<Result> results = response.getResults();
+        if (results == null || results.isEmpty()) {
+            return false;
+        }
+        for (Result result : results) {
+            Decision decision = result.getDecision();
+            if (decision == null || decision.name().startsWith(Decision.INDETERMINATE.name())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Evict entries if the cache is over its maximum size. Only one thread evicts at a time, the others
+     * carry on without waiting for it.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove the expired entries, and then the entries that expire first until the cache is back down to
+     * 90% of its maximum size.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiry <= now);
+
+        int excess = entries.size() - Math.max(0, maxSize - Math.max(1, maxSize / 10));
+        if (excess <= 0) {
+            return;
+        }
+
+        // Keep the "excess" entries that expire first, with the one that expires last at the head
+        PriorityQueue<Map.Entry<String, Entry>> soonest = new PriorityQueue<>(excess + 1,
+            Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().expiry).reversed());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            soonest.offer(entry);
+            if (soonest.size() > excess) {
+                soonest.poll();
+            }
+        }
+        for (Map.Entry<String, Entry> entry : soonest) {
+            entries.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public long getTimeToLive() {
+        return timeToLive;
+    }
+
+    /**
+     * Set how long (in milliseconds) a Response is cached for. Set it to 0 to disable the cache.
+     */
+    public void setTimeToLive(long timeToLive) {
+        this.timeToLive = timeToLive;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Set<String> getIgnoredAttributes() {
+        return ignoredAttributes;
+    }
+
+    /**
+     * Set the ids of the attributes that are left out of the cache key, as the policies do not use them
+     */
+    public void setIgnoredAttributes(Set<String> ignoredAttributes) {
+        this.ignoredAttributes = ignoredAttributes;
+    }
+
+    private static final class Entry {
+        private final Response response;
+        private final long expiry;
+
+        Entry(Response response, long expiry) {
+            this.response = response;
+            this.expiry = expiry;
+        }
+    }
+
+}
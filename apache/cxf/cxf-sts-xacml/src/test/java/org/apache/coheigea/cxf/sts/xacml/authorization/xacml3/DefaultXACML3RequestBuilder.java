@@ -20,7 +20,10 @@
 package org.apache.coheigea.cxf.sts.xacml.authorization.xacml3;
 
 import java.security.Principal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.namespace.QName;
 
@@ -51,12 +54,18 @@ import org.joda.time.DateTime;
  * For a REST service the request URL is the resource. You can also configure the ability to 
  * send the truncated request URI instead for a SOAP or REST service. The current DateTime is 
  * also sent in an Environment, however this can be disabled via configuration.
+ * 
+ * The resource and action attributes only depend on the operation that is invoked, and so they are
+ * built once per resource / action and are then shared (read-only) by the Requests.
  */
 public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
 
     private boolean sendDateTime = true;
     private String action = "execute";
     private boolean sendFullRequestURL = true;
+    private int maxTemplates = 1000;
+    private final Map<String, RequestAttributes> resourceTemplates = new ConcurrentHashMap<>();
+    private final Map<String, RequestAttributes> actionTemplates = new ConcurrentHashMap<>();
 
     /**
      * Create an XACML Request given a Principal, list of roles and Message.
@@ -82,13 +91,37 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
         return request;
     }
 
-    private RequestAttributes createResource(CXFMessageParser messageParser) {
-        StdMutableRequestAttributes resourceAttributes = new StdMutableRequestAttributes();
-        resourceAttributes.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
+    /**
+     * Create one XACML Request per resource-id / action pair, for a batch evaluation as per the XACML 3.0
+     * Multiple Decision Profile (see PolicyDecisionPoint.evaluate(List)). The subject and environment
+     * attributes are built once and are shared by the Requests.
+     */
+    public List<Request> createRequests(Principal principal, List<String> roles, String issuer,
+                                        List<Map.Entry<String, String>> resourceActions) {
+        RequestAttributes subject = createSubject(principal, roles, issuer);
+        RequestAttributes environment = createEnvironment();
         
+        List<Request> requests = new ArrayList<>(resourceActions.size());
+        for (Map.Entry<String, String> resourceAction : resourceActions) {
+            StdMutableRequest request = new StdMutableRequest();
+            request.add(subject);
+            request.add(getResource(resourceAction.getKey(), false, null, null, null));
+            request.add(createAction(resourceAction.getValue()));
+            if (environment != null) {
+                request.add(environment);
+            }
+            requests.add(request);
+        }
+        return requests;
+    }
+
+    private RequestAttributes createResource(CXFMessageParser messageParser) {
         // Resource-id
         String resourceId = null;
         boolean isSoapService = messageParser.isSOAPService();
+        QName wsdlService = null;
+        QName wsdlOperation = null;
+        String endpointURI = null;
         if (isSoapService) {
             QName serviceName = messageParser.getWSDLService();
             QName operationName = messageParser.getWSDLOperation();
@@ -104,10 +137,35 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
             } else {
                 resourceId = operationName.toString();
             }
+            
+            wsdlService = serviceName;
+            wsdlOperation = operationName;
+            endpointURI = messageParser.getResourceURI(sendFullRequestURL);
         } else {
             resourceId = messageParser.getResourceURI(sendFullRequestURL);
         }
         
+        return getResource(resourceId, isSoapService, wsdlService, wsdlOperation, endpointURI);
+    }
+
+    private RequestAttributes getResource(String resourceId, boolean isSoapService, QName wsdlService,
+                                          QName wsdlOperation, String endpointURI) {
+        String key = resourceId + "\n" + wsdlService + "\n" + wsdlOperation + "\n" + endpointURI;
+        RequestAttributes resourceAttributes = resourceTemplates.get(key);
+        if (resourceAttributes == null) {
+            resourceAttributes = createResource(resourceId, isSoapService, wsdlService, wsdlOperation, endpointURI);
+            if (resourceTemplates.size() < maxTemplates) {
+                resourceTemplates.put(key, resourceAttributes);
+            }
+        }
+        return resourceAttributes;
+    }
+
+    private RequestAttributes createResource(String resourceId, boolean isSoapService, QName wsdlService,
+                                             QName wsdlOperation, String endpointURI) {
+        StdMutableRequestAttributes resourceAttributes = new StdMutableRequestAttributes();
+        resourceAttributes.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
+        
         StdMutableAttribute resourceAttribute = new StdMutableAttribute();
         resourceAttribute.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
         resourceAttribute.setAttributeId(new IdentifierImpl(XACMLConstants.RESOURCE_ID));
@@ -119,7 +177,6 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
         
         if (isSoapService) {
             // WSDL Service
-            QName wsdlService = messageParser.getWSDLService();
             if (wsdlService != null) {
                 StdMutableAttribute wsdlServiceAttribute = new StdMutableAttribute();
                 wsdlServiceAttribute.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
@@ -132,7 +189,6 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
             }
             
             // WSDL Operation
-            QName wsdlOperation = messageParser.getWSDLOperation();
             StdMutableAttribute wsdlOperationAttribute = new StdMutableAttribute();
             wsdlOperationAttribute.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
             wsdlOperationAttribute.setAttributeId(new IdentifierImpl(XACMLConstants.RESOURCE_WSDL_OPERATION_ID));
@@ -143,7 +199,6 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
             resourceAttributes.add(wsdlOperationAttribute);
             
             // WSDL Endpoint
-            String endpointURI = messageParser.getResourceURI(sendFullRequestURL);
             StdMutableAttribute wsdlEndpointAttribute = new StdMutableAttribute();
             wsdlEndpointAttribute.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:resource"));
             wsdlEndpointAttribute.setAttributeId(new IdentifierImpl(XACMLConstants.RESOURCE_WSDL_ENDPOINT));
@@ -208,6 +263,17 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
     }
     
     private RequestAttributes createAction(String actionToUse) {
+        RequestAttributes actionAttributes = actionTemplates.get(actionToUse);
+        if (actionAttributes == null) {
+            actionAttributes = createActionAttributes(actionToUse);
+            if (actionTemplates.size() < maxTemplates) {
+                actionTemplates.put(actionToUse, actionAttributes);
+            }
+        }
+        return actionAttributes;
+    }
+    
+    private RequestAttributes createActionAttributes(String actionToUse) {
         StdMutableRequestAttributes actionAttributes = new StdMutableRequestAttributes();
         actionAttributes.setCategory(new IdentifierImpl("urn:oasis:names:tc:xacml:3.0:attribute-category:action"));
         
@@ -244,4 +310,12 @@ public class DefaultXACML3RequestBuilder implements XACML3RequestBuilder {
         this.sendFullRequestURL = sendFullRequestURL;
     }
 
+    /**
+     * Set the maximum number of resources (and of actions) for which the attributes are kept, so
+     * that a REST service with an unbounded number of request URLs does not use unbounded memory.
+     */
+    public void setMaxTemplates(int maxTemplates) {
+        this.maxTemplates = maxTemplates;
+    }
+
 }
@@ -18,6 +18,16 @@
  */
 package org.apache.coheigea.cxf.sts.xacml.authorization.xacml3;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import org.apache.openaz.xacml.api.Request;
+import org.apache.openaz.xacml.api.Response;
+import org.apache.openaz.xacml.std.json.JSONRequest;
+import org.apache.openaz.xacml.std.json.JSONResponse;
+
 /**
  * An interface that describes a PolicyDecisionPoint (PDP) that supports XACML 3.0 using OpenAZ
  */
@@ -30,4 +40,48 @@ public interface PolicyDecisionPoint {
      */
     String evaluate(String request);
     
+    /**
+     * Evaluate an XACML Request object and return a Response object. By default the Request is
+     * serialized to JSON and is evaluated via evaluate(String). An in-process PDP should override this
+     * to evaluate the Request object directly.
+     * @param request an OpenAZ Request object
+     * @return the OpenAZ Response object
+     * @throws Exception
+     */
+    default Response evaluate(Request request) throws Exception {
+        return JSONResponse.load(evaluate(JSONRequest.toString(request)));
+    }
+    
+    /**
+     * Evaluate a batch of XACML Request objects in one call, for example one per resource/action pair
+     * as per the XACML 3.0 Multiple Decision Profile (see DefaultXACML3RequestBuilder.createRequests).
+     * By default the Requests are evaluated one after the other.
+     * @param requests a list of OpenAZ Request objects
+     * @return a list of OpenAZ Response objects, one per Request and in the same order
+     * @throws Exception
+     */
+    default List<Response> evaluate(List<Request> requests) throws Exception {
+        List<Response> responses = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            responses.add(evaluate(request));
+        }
+        return responses;
+    }
+    
+    /**
+     * Evaluate a batch of XACML Request objects asynchronously. By default the batch is evaluated via
+     * evaluate(List) on the common ForkJoinPool.
+     * @param requests a list of OpenAZ Request objects
+     * @return a future of a list of OpenAZ Response objects, one per Request and in the same order
+     */
+    default CompletableFuture<List<Response>> evaluateAsync(List<Request> requests) {
+        return CompletableFuture.supplyAsync(() -> {
+            try {
+                return evaluate(requests);
+            } catch (Exception ex) {
+                throw new CompletionException(ex);
+            }
+        });
+    }
+    
 }
\ No newline at end of file
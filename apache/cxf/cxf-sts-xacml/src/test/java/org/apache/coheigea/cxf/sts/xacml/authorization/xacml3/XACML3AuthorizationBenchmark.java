@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts.xacml.authorization.xacml3;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import javax.security.auth.Subject;
+import javax.xml.namespace.QName;
+
+import org.apache.coheigea.cxf.sts.xacml.pdp.xacml3.OpenAZPolicyDecisionPoint;
+import org.apache.cxf.common.security.SimpleGroup;
+import org.apache.cxf.interceptor.security.AccessDeniedException;
+import org.apache.cxf.interceptor.security.DefaultSecurityContext;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.security.SecurityContext;
+
+/**
+ * A simple throughput benchmark of the XACML3AuthorizingInterceptor against the OpenAZPolicyDecisionPoint,
+ * with the boss_role / boss_permission policies. Each request is for the DoubleIt operation, by "alice"
+ * (role "boss", permitted) or by "bob" (role "employee", denied). It compares sending the Request as JSON
+ * (as before), evaluating the Request object in-process, and evaluating it in-process with the decision
+ * cache. Run the main method from the cxf-sts-xacml directory (as the PDP loads the policies from
+ * src/test/resources), optionally passing the number of threads and the duration of each run in seconds.
+ */
+public class XACML3AuthorizationBenchmark {
+
+    private static final QName SERVICE = new QName("http://www.example.org/contract/DoubleIt", "DoubleItService");
+    private static final QName OPERATION = new QName("http://www.example.org/contract/DoubleIt", "DoubleIt");
+    private static final String ADDRESS = "https://localhost:8080/doubleit/services/doubleittransportxacml3";
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+
+        // Don't measure the logging of each request by the PDP
+        Logger.getLogger(OpenAZPolicyDecisionPoint.class.getName()).setLevel(Level.WARNING);
+
+        OpenAZPolicyDecisionPoint openAZPDP = new OpenAZPolicyDecisionPoint();
+        // Only implements evaluate(String), and so the Request is sent as JSON
+        PolicyDecisionPoint jsonPDP = openAZPDP::evaluate;
+
+        System.out.println("Scenario, Threads, Requests/s");
+        run("json", new XACML3AuthorizingInterceptor(jsonPDP), threads, seconds);
+        run("object", new XACML3AuthorizingInterceptor(openAZPDP), threads, seconds);
+
+        XACML3AuthorizingInterceptor cachingInterceptor = new XACML3AuthorizingInterceptor(openAZPDP);
+        cachingInterceptor.setDecisionCacheTimeToLive(60000L);
+        run("object + cache", cachingInterceptor, threads, seconds);
+    }
+
+    private static void run(String scenario, XACML3AuthorizingInterceptor interceptor,
+                            int threads, int seconds) throws Exception {
+        // Warm up
+        for (int i = 0; i < 1000; i++) {
+            authorize(interceptor, i % 2 == 0);
+        }
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (running.get()) {
+                    authorize(interceptor, count % 2 == 0);
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+
+        System.out.println(scenario + ", " + threads + ", " + (total / seconds));
+    }
+
+    private static void authorize(XACML3AuthorizingInterceptor interceptor, boolean boss) {
+        String user = boss ? "alice" : "bob";
+        Principal principal = () -> user;
+        Subject subject = new Subject();
+        subject.getPrincipals().add(principal);
+        subject.getPrincipals().add(new SimpleGroup(boss ? "boss" : "employee", user));
+
+        Message message = new MessageImpl();
+        message.put(SecurityContext.class, new DefaultSecurityContext(principal, subject));
+        message.put(Message.WSDL_SERVICE, SERVICE);
+        message.put(Message.WSDL_OPERATION, OPERATION);
+        message.put(Message.REQUEST_URL, ADDRESS);
+
+        try {
+            interceptor.handleMessage(message);
+            if (!boss) {
+                throw new IllegalStateException("bob should not be authorized");
+            }
+        } catch (AccessDeniedException ex) {
+            if (boss) {
+                throw new IllegalStateException("alice should be authorized", ex);
+            }
+        }
+    }
+
+}
@@ -40,10 +40,11 @@ import org.apache.openaz.xacml.api.Response;
 import org.apache.openaz.xacml.api.Result;
 import org.apache.openaz.xacml.api.Status;
 import org.apache.openaz.xacml.std.json.JSONRequest;
-import org.apache.openaz.xacml.std.json.JSONResponse;
 
 /**
  * A PEP implementation using XACML 3.0 based on OpenAZ. It sends a JSON request instead of DOM and expects a JSON response!
+ * An in-process PDP can evaluate the Request object directly instead (see PolicyDecisionPoint). The PDP decisions can be
+ * cached by configuring a "decisionCacheTimeToLive" (see DecisionCache).
  */
 public class XACML3AuthorizingInterceptor extends AbstractPhaseInterceptor<Message> {
     
@@ -51,6 +52,7 @@ public class XACML3AuthorizingInterceptor extends AbstractPhaseInterceptor<Messa
 
     private XACML3RequestBuilder requestBuilder = new DefaultXACML3RequestBuilder();
     private PolicyDecisionPoint pdp;
+    private DecisionCache decisionCache = new DecisionCache();
 
     public XACML3AuthorizingInterceptor(PolicyDecisionPoint pdp) {
         super(Phase.PRE_INVOKE);
@@ -96,16 +98,20 @@ public class XACML3AuthorizingInterceptor extends AbstractPhaseInterceptor<Messa
 
     protected boolean authorize(Principal principal, List<String> roles, Message message) throws Exception {
         Request request = requestBuilder.createRequest(principal, roles, message);
-        String jsonRequest = JSONRequest.toString(request);
         if (LOG.isLoggable(Level.FINE)) {
-            LOG.fine("XACML Request: " + jsonRequest);
+            LOG.fine("XACML Request: " + JSONRequest.toString(request));
+        }
+        
+        // Evaluate the request, unless the decision is cached
+        String cacheKey = decisionCache.isEnabled() ? decisionCache.getKey(request) : null;
+        Response response = cacheKey != null ? decisionCache.get(cacheKey) : null;
+        if (response == null) {
+            response = this.pdp.evaluate(request);
+            if (cacheKey != null) {
+                decisionCache.put(cacheKey, response);
+            }
         }
         
-        // Evaluate the request
-        String responseString = this.pdp.evaluate(jsonRequest);
-
-        // Parse the Response into an OpenAZ Response Object
-        Response response = JSONResponse.load(responseString);
         Collection<Result> results = response.getResults();
 
         if (results == null) {
@@ -151,5 +157,20 @@ public class XACML3AuthorizingInterceptor extends AbstractPhaseInterceptor<Messa
         this.requestBuilder = requestBuilder;
     }
 
+    public DecisionCache getDecisionCache() {
+        return decisionCache;
+    }
+
+    public void setDecisionCache(DecisionCache decisionCache) {
+        this.decisionCache = decisionCache;
+    }
+
+    /**
+     * Set how long (in milliseconds) the PDP decisions are cached for. The default of 0 disables the cache.
+     */
+    public void setDecisionCacheTimeToLive(long timeToLive) {
+        decisionCache.setTimeToLive(timeToLive);
+    }
+
 
 }
@@ -0,0 +1,140 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts.xacml.authorization.xacml3;
+
+import java.security.Principal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.apache.coheigea.cxf.sts.xacml.pdp.xacml3.OpenAZPolicyDecisionPoint;
+import org.apache.openaz.xacml.api.Decision;
+import org.apache.openaz.xacml.api.Request;
+import org.apache.openaz.xacml.api.Response;
+
+/**
+ * A simple load test of the batch evaluation of the OpenAZPolicyDecisionPoint, which reports the decisions
+ * per second at increasing batch sizes. Each batch holds one Request per resource/action pair for "alice"
+ * (role "boss"), where half of the resources are the DoubleIt operation (permitted) and half are other
+ * resources (not applicable). It compares evaluating the batch one Request after the other, in parallel, and
+ * asynchronously with several batches in flight at once. Run the main method from the cxf-sts-xacml
+ * directory (as the PDP loads the policies from src/test/resources), optionally passing the duration of each
+ * run in seconds and the number of PDP threads.
+ */
+public class XACML3BatchBenchmark {
+
+    private static final int[] BATCH_SIZES = {1, 10, 50, 100, 500};
+    private static final int BATCHES_IN_FLIGHT = 4;
+    private static final String DOUBLEIT = "{http://www.example.org/contract/DoubleIt}DoubleItService#DoubleIt";
+
+    public static void main(String[] args) throws Exception {
+        int seconds = args.length > 0 ? Integer.parseInt(args[0]) : 5;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+        // Don't measure the logging of each request by the PDP
+        Logger.getLogger(OpenAZPolicyDecisionPoint.class.getName()).setLevel(Level.WARNING);
+
+        OpenAZPolicyDecisionPoint openAZPDP = new OpenAZPolicyDecisionPoint();
+        openAZPDP.setThreads(threads);
+        // Only uses the default (sequential) batch evaluation of the PolicyDecisionPoint interface
+        PolicyDecisionPoint sequentialPDP = new PolicyDecisionPoint() {
+            @Override
+            public String evaluate(String request) {
+                return openAZPDP.evaluate(request);
+            }
+
+            @Override
+            public Response evaluate(Request request) {
+                return openAZPDP.evaluate(request);
+            }
+        };
+
+        DefaultXACML3RequestBuilder requestBuilder = new DefaultXACML3RequestBuilder();
+        requestBuilder.setSendDateTime(false);
+        Principal principal = () -> "alice";
+
+        System.out.println("Scenario, Batch size, Decisions/s");
+        try {
+            for (int batchSize : BATCH_SIZES) {
+                List<Map.Entry<String, String>> resourceActions = new ArrayList<>(batchSize);
+                for (int i = 0; i < batchSize; i++) {
+                    String resource = i % 2 == 0 ? DOUBLEIT : "https://localhost/resources/" + i;
+                    resourceActions.add(new AbstractMap.SimpleImmutableEntry<>(resource, "execute"));
+                }
+                List<Request> requests = requestBuilder.createRequests(
+                    principal, Collections.singletonList("boss"), null, resourceActions);
+
+                run("sequential", batchSize, seconds, () -> check(sequentialPDP.evaluate(requests)));
+                run("parallel", batchSize, seconds, () -> check(openAZPDP.evaluate(requests)));
+                run("async", batchSize * BATCHES_IN_FLIGHT, seconds, () -> {
+                    List<CompletableFuture<List<Response>>> futures = new ArrayList<>(BATCHES_IN_FLIGHT);
+                    for (int i = 0; i < BATCHES_IN_FLIGHT; i++) {
+                        futures.add(openAZPDP.evaluateAsync(requests));
+                    }
+                    for (CompletableFuture<List<Response>> future : futures) {
+                        check(future.join());
+                    }
+                });
+            }
+        } finally {
+            openAZPDP.close();
+        }
+    }
+
+    private static void run(String scenario, int decisionsPerRun, int seconds, Batch batch) throws Exception {
+        // Warm up
+        long end = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (System.nanoTime() < end) {
+            batch.evaluate();
+        }
+
+        long count = 0;
+        long start = System.nanoTime();
+        end = start + TimeUnit.SECONDS.toNanos(seconds);
+        while (System.nanoTime() < end) {
+            batch.evaluate();
+            count += decisionsPerRun;
+        }
+        long elapsed = System.nanoTime() - start;
+
+        int batchSize = "async".equals(scenario) ? decisionsPerRun / BATCHES_IN_FLIGHT : decisionsPerRun;
+        System.out.println(scenario + ", " + batchSize + ", " + (count * TimeUnit.SECONDS.toNanos(1) / elapsed));
+    }
+
+    private static void check(List<Response> responses) {
+        for (int i = 0; i < responses.size(); i++) {
+            Decision expected = i % 2 == 0 ? Decision.PERMIT : Decision.NOTAPPLICABLE;
+            Decision decision = responses.get(i).getResults().iterator().next().getDecision();
+            if (decision != expected) {
+                throw new IllegalStateException("Unexpected decision " + decision + " for request " + i);
+            }
+        }
+    }
+
+    private interface Batch {
+        void evaluate() throws Exception;
+    }
+
+}
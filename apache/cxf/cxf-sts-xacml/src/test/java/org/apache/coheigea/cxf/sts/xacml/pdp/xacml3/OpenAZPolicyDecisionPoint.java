@@ -18,7 +18,13 @@
  */
 package org.apache.coheigea.cxf.sts.xacml.pdp.xacml3;
 
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import org.apache.coheigea.cxf.sts.xacml.authorization.xacml3.PolicyDecisionPoint;
@@ -34,13 +40,19 @@ import org.apache.openaz.xacml.std.json.JSONRequest;
 import org.apache.openaz.xacml.std.json.JSONResponse;
 
 /**
- * A PDP implementation based on the OpenAZ PDP engine. It accepts a JSON XACML Request.
+ * A PDP implementation based on the OpenAZ PDP engine. It accepts a JSON XACML Request, or (in-process) an
+ * OpenAZ Request object, which avoids serializing and parsing the Request and Response. A batch of Requests
+ * is evaluated in parallel over the PDPEngine, on a pool of "threads" threads (unless it is smaller than
+ * "parallelThreshold").
  */
 public class OpenAZPolicyDecisionPoint implements PolicyDecisionPoint {
     
     private static final Logger LOG = LogUtils.getL7dLogger(OpenAZPolicyDecisionPoint.class);
     
     private final PDPEngine pdpEngine;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int parallelThreshold = 4;
+    private volatile ExecutorService executor;
     
     public OpenAZPolicyDecisionPoint() throws Exception {
         // Load policies + PDP
@@ -80,5 +92,101 @@ public class OpenAZPolicyDecisionPoint implements PolicyDecisionPoint {
             }
         }
     }
+    
+    @Override
+    public Response evaluate(Request request) {
+        try {
+            if (LOG.isLoggable(Level.FINE)) {
+                LOG.fine("XACML request: " + JSONRequest.toString(request));
+            }
+            
+            return pdpEngine.decide(request);
+        } catch (Exception ex) {
+            LOG.log(Level.FINE, ex.getMessage(), ex);
+            
+            // Indeterminate rather than NotApplicable, so that the error is not cached by the PEP
+            StdMutableResponse response = new StdMutableResponse();
+            StdMutableResult result = new StdMutableResult();
+            result.setDecision(Decision.INDETERMINATE);
+            response.add(result);
+            return response;
+        }
+    }
+    
+    @Override
+    public List<Response> evaluate(List<Request> requests) {
+        if (requests.size() < parallelThreshold) {
+            List<Response> responses = new ArrayList<>(requests.size());
+            for (Request request : requests) {
+                responses.add(evaluate(request));
+            }
+            return responses;
+        }
+        return evaluateAsync(requests).join();
+    }
+    
+    @Override
+    public CompletableFuture<List<Response>> evaluateAsync(List<Request> requests) {
+        ExecutorService pool = getExecutor();
+        List<CompletableFuture<Response>> futures = new ArrayList<>(requests.size());
+        for (Request request : requests) {
+            futures.add(CompletableFuture.supplyAsync(() -> evaluate(request), pool));
+        }
+        
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Response> responses = new ArrayList<>(futures.size());
+            for (CompletableFuture<Response> future : futures) {
+                responses.add(future.join());
+            }
+            return responses;
+        });
+    }
+    
+    private ExecutorService getExecutor() {
+        if (executor == null) {
+            synchronized (this) {
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(threads, r -> {
+                        Thread thread = new Thread(r, "openaz-pdp");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+            }
+        }
+        return executor;
+    }
+    
+    /**
+     * Stop the threads that evaluate the batches of Requests
+     */
+    public synchronized void close() {
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads that evaluate the batches of Requests (the number of processors by default)
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public int getParallelThreshold() {
+        return parallelThreshold;
+    }
+
+    /**
+     * Set the size from which a batch of Requests is evaluated in parallel
+     */
+    public void setParallelThreshold(int parallelThreshold) {
+        this.parallelThreshold = parallelThreshold;
+    }
 
 }
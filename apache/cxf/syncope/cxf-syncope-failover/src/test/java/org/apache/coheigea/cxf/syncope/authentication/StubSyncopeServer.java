@@ -0,0 +1,112 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authentication;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stub of the Syncope REST API "users/self" endpoint, where the user "alice" has the password
+ * "security". The latency of each request can be changed, and the stub can be made to fail each
+ * request with a 503 response, to simulate a slow or unavailable Syncope instance.
+ */
+public class StubSyncopeServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final AtomicLong requests = new AtomicLong();
+    private volatile long latencyMillis;
+    private volatile boolean failing;
+
+    public StubSyncopeServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/syncope/rest/users/self", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getAddress() {
+        return "http://localhost:" + server.getAddress().getPort() + "/syncope/rest/";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+    }
+
+    public void setLatency(long latencyMillis) {
+        this.latencyMillis = latencyMillis;
+    }
+
+    public void setFailing(boolean failing) {
+        this.failing = failing;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (failing) {
+            exchange.sendResponseHeaders(503, -1);
+            exchange.close();
+            return;
+        }
+
+        String authorizationHeader = exchange.getRequestHeaders().getFirst("Authorization");
+        String expectedHeader = "Basic "
+            + Base64.getEncoder().encodeToString("alice:security".getBytes(StandardCharsets.UTF_8));
+        if (!expectedHeader.equals(authorizationHeader)) {
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = "{\"username\":\"alice\"}".getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+}
@@ -0,0 +1,267 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authentication;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Selects the Syncope instance to send a request to. It tracks an exponentially weighted moving
+ * average (EWMA) of the latency and of the error rate of each address. An address is taken out of
+ * rotation (its circuit is opened) after "failureThreshold" consecutive failures, or when its error
+ * rate exceeds "maxErrorRate" once at least "minimumRequests" requests have been recorded for it. A
+ * burst of failures is left to "failureThreshold", as a couple of failures move the EWMA a long way.
+ * The healthy addresses are returned fastest first, where the latency of an address is weighted by its
+ * error rate. Addresses with an open circuit are probed in the background every "probeInterval"
+ * milliseconds, and are put back into rotation once a probe succeeds. An address without any recorded
+ * latency is tried first, so that it is measured. If no address is healthy, all of the addresses are
+ * returned, so that a request is still attempted.
+ */
+public class SyncopeEndpointSelector {
+
+    private static org.apache.commons.logging.Log log =
+            org.apache.commons.logging.LogFactory.getLog(SyncopeEndpointSelector.class);
+
+    private final Map<String, EndpointStatistics> endpoints = new LinkedHashMap<>();
+    private final Predicate<String> probe;
+    private double weight = 0.3;
+    private int failureThreshold = 3;
+    private double maxErrorRate = 0.5;
+    private int minimumRequests = 10;
+    private long probeInterval = 5000L;
+
+    private ScheduledExecutorService prober;
+
+    public SyncopeEndpointSelector(List<String> addresses, Predicate<String> probe) {
+        for (String address : addresses) {
+            endpoints.put(address, new EndpointStatistics(address));
+        }
+        this.probe = probe;
+    }
+
+    /**
+     * Return the addresses to try, in order.
+     */
+    public List<String> getAddresses() {
+        // Take a snapshot of the scores before sorting, as other threads keep updating them
+        List<Map.Entry<String, Double>> healthy = new ArrayList<>();
+        for (EndpointStatistics endpoint : endpoints.values()) {
+            if (!endpoint.isOpen()) {
+                healthy.add(new AbstractMap.SimpleImmutableEntry<>(endpoint.address, endpoint.getScore()));
+            }
+        }
+        if (healthy.isEmpty()) {
+            for (EndpointStatistics endpoint : endpoints.values()) {
+                healthy.add(new AbstractMap.SimpleImmutableEntry<>(endpoint.address, endpoint.getScore()));
+            }
+        }
+        healthy.sort(Map.Entry.comparingByValue());
+
+        List<String> addresses = new ArrayList<>(healthy.size());
+        for (Map.Entry<String, Double> endpoint : healthy) {
+            addresses.add(endpoint.getKey());
+        }
+        return addresses;
+    }
+
+    /**
+     * Record that a request to the given address succeeded after the given time (in nanoseconds).
+     */
+    public void success(String address, long latency) {
+        endpoints.get(address).record(latency, false);
+    }
+
+    /**
+     * Record that a request to the given address failed after the given time (in nanoseconds).
+     */
+    public void failure(String address, long latency) {
+        EndpointStatistics endpoint = endpoints.get(address);
+        if (endpoint.record(latency, true)) {
+            log.warn("Syncope instance " + address + " is unhealthy and has been taken out of rotation");
+            startProber();
+        }
+    }
+
+    public boolean isHealthy(String address) {
+        return !endpoints.get(address).isOpen();
+    }
+
+    public double getLatency(String address) {
+        return endpoints.get(address).getLatency();
+    }
+
+    public double getErrorRate(String address) {
+        return endpoints.get(address).getErrorRate();
+    }
+
+    /**
+     * Probe the addresses with an open circuit, and put the ones that respond back into rotation.
+     */
+    public void probe() {
+        for (EndpointStatistics endpoint : endpoints.values()) {
+            if (endpoint.isOpen()) {
+                boolean recovered = false;
+                try {
+                    recovered = probe.test(endpoint.address);
+                } catch (RuntimeException ex) {
+                    if (log.isDebugEnabled()) {
+                        log.debug(ex.getMessage(), ex);
+                    }
+                }
+                if (recovered) {
+                    endpoint.close();
+                    log.info("Syncope instance " + endpoint.address + " has recovered");
+                }
+            }
+        }
+    }
+
+    private synchronized void startProber() {
+        if (prober == null) {
+            prober = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "syncope-prober");
+                thread.setDaemon(true);
+                return thread;
+            });
+            prober.scheduleWithFixedDelay(this::probe, probeInterval, probeInterval, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Stop probing the unhealthy addresses.
+     */
+    public synchronized void close() {
+        if (prober != null) {
+            prober.shutdownNow();
+            prober = null;
+        }
+    }
+
+    public double getWeight() {
+        return weight;
+    }
+
+    /**
+     * Set the weight (between 0 and 1) that is given to the latest request in the moving averages
+     */
+    public void setWeight(double weight) {
+        this.weight = weight;
+    }
+
+    public int getFailureThreshold() {
+        return failureThreshold;
+    }
+
+    public void setFailureThreshold(int failureThreshold) {
+        this.failureThreshold = failureThreshold;
+    }
+
+    public double getMaxErrorRate() {
+        return maxErrorRate;
+    }
+
+    public void setMaxErrorRate(double maxErrorRate) {
+        this.maxErrorRate = maxErrorRate;
+    }
+
+    public int getMinimumRequests() {
+        return minimumRequests;
+    }
+
+    /**
+     * Set how many requests must be recorded for an address before "maxErrorRate" is applied to it
+     */
+    public void setMinimumRequests(int minimumRequests) {
+        this.minimumRequests = minimumRequests;
+    }
+
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * Set how often (in milliseconds) the unhealthy addresses are probed
+     */
+    public void setProbeInterval(long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
+
+    private final class EndpointStatistics {
+        private final String address;
+        private double latency;
+        private double errorRate;
+        private int consecutiveFailures;
+        private int requests;
+        private boolean open;
+
+        EndpointStatistics(String address) {
+            this.address = address;
+        }
+
+        /**
+         * Record the result of a request, and return true if this opened the circuit.
+         */
+        synchronized boolean record(long requestLatency, boolean failed) {
+            latency = latency == 0 ? requestLatency : weight * requestLatency + (1 - weight) * latency;
+            errorRate = weight * (failed ? 1 : 0) + (1 - weight) * errorRate;
+            consecutiveFailures = failed ? consecutiveFailures + 1 : 0;
+            requests++;
+
+            if (failed && !open && (consecutiveFailures >= failureThreshold
+                || requests >= minimumRequests && errorRate > maxErrorRate)) {
+                open = true;
+                return true;
+            }
+            return false;
+        }
+
+        synchronized void close() {
+            // Forget the latency of the failed requests, so that the address is measured again
+            open = false;
+            consecutiveFailures = 0;
+            requests = 0;
+            errorRate = 0;
+            latency = 0;
+        }
+
+        synchronized boolean isOpen() {
+            return open;
+        }
+
+        synchronized double getScore() {
+            return latency / Math.max(1 - errorRate, 0.01);
+        }
+
+        synchronized double getLatency() {
+            return latency;
+        }
+
+        synchronized double getErrorRate() {
+            return errorRate;
+        }
+    }
+
+}
@@ -19,13 +19,21 @@
 
 package org.apache.coheigea.cxf.syncope.authentication;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javax.ws.rs.ProcessingException;
+import javax.ws.rs.core.Response;
 
-import org.apache.cxf.clustering.FailoverFeature;
-import org.apache.cxf.clustering.SequentialStrategy;
 import org.apache.cxf.common.util.Base64Utility;
 import org.apache.cxf.jaxrs.client.WebClient;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.apache.syncope.common.to.UserTO;
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
@@ -37,9 +45,11 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
 
 /**
  * This is a custom Validator that authenticates to a Syncope IDM and checks to see whether the
- * supplied username and password are in the system. It takes in a list of addresses and uses the
- * CXF failover feature so that it can failover to other instances, if the first instance is down,
- * etc.
+ * supplied username and password are in the system. It takes in a list of addresses and fails over to
+ * other instances if an instance is down, etc. A single SyncopeEndpointSelector (shared by all requests)
+ * tracks the latency and error rate of each instance, and routes each request to the fastest healthy
+ * instance. An instance that fails (a connection error, a timeout or a 5xx response) is tried again
+ * only once a background probe finds that it has recovered.
  */
 public class SyncopeUTValidator implements Validator {
     
@@ -48,6 +58,12 @@ public class SyncopeUTValidator implements Validator {
     
     private String primaryAddress;
     private List<String> alternativeAddresses;
+    private long connectionTimeout = 5000L;
+    private long receiveTimeout = 10000L;
+    private long probeInterval = 5000L;
+    
+    private final Map<String, WebClient> clients = new ConcurrentHashMap<>();
+    private volatile SyncopeEndpointSelector endpointSelector;
     
     public Credential validate(Credential credential, RequestData data) throws WSSecurityException {
         if (credential == null || credential.getUsernametoken() == null) {
@@ -63,7 +79,7 @@ public class SyncopeUTValidator implements Validator {
         }
         if (!WSConstants.PASSWORD_TEXT.equals(pwType)) {
             if (log.isDebugEnabled()) {
-                log.debug("Auaddressesthentication failed - digest passwords are not accepted");
+                log.debug("Authentication failed - digest passwords are not accepted");
             }
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
@@ -74,44 +90,119 @@ public class SyncopeUTValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         
-        // Set up failover feature
-        FailoverFeature failoverFeature = new FailoverFeature();
-        
-        SequentialStrategy strategy = new SequentialStrategy();
-        strategy.setAlternateAddresses(alternativeAddresses);
-        failoverFeature.setStrategy(strategy);
-         
         // Send it off to Syncope for validation
-        WebClient client = 
-            WebClient.create(primaryAddress, Collections.singletonList(new JacksonJsonProvider()),
-                             Collections.singletonList(failoverFeature), null);
-        
         String authorizationHeader = 
             "Basic " + Base64Utility.encode(
-                (usernameToken.getName() + ":" + usernameToken.getPassword()).getBytes()
+                (usernameToken.getName() + ":" + usernameToken.getPassword()).getBytes(StandardCharsets.UTF_8)
             );
-
-        client.header("Authorization", authorizationHeader);
         if (log.isDebugEnabled()) {
             log.debug("Authenticating user " + usernameToken.getName() + " to Syncope server");
         }
         
-        client = client.path("users/self");
-        try {
-            UserTO user = client.get(UserTO.class);
-            if (user == null) {
-                throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
-            }
-        } catch (RuntimeException ex) {
-            if (log.isDebugEnabled()) {
-                log.debug(ex.getMessage(), ex);
+        SyncopeEndpointSelector selector = getEndpointSelector();
+        for (String address : selector.getAddresses()) {
+            long start = System.nanoTime();
+            Response response = null;
+            try {
+                WebClient client = getClient(address);
+                client.reset();
+                client.header("Authorization", authorizationHeader);
+                response = client.path("users/self").get();
+                if (response.getStatus() >= 500) {
+                    selector.failure(address, System.nanoTime() - start);
+                    if (log.isDebugEnabled()) {
+                        log.debug("Syncope server " + address + " returned " + response.getStatus());
+                    }
+                    continue;
+                }
+                
+                UserTO user = null;
+                if (response.getStatus() == 200) {
+                    user = response.readEntity(UserTO.class);
+                }
+                selector.success(address, System.nanoTime() - start);
+                if (user == null) {
+                    throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+                }
+                return credential;
+            } catch (ProcessingException ex) {
+                selector.failure(address, System.nanoTime() - start);
+                if (log.isDebugEnabled()) {
+                    log.debug(ex.getMessage(), ex);
+                }
+            } finally {
+                if (response != null) {
+                    response.close();
+                }
             }
-            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
         
-        return credential;
+        // None of the Syncope instances could be reached
+        throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
     }
-
+    
+    public SyncopeEndpointSelector getEndpointSelector() {
+        SyncopeEndpointSelector selector = endpointSelector;
+        if (selector == null) {
+            synchronized (this) {
+                selector = endpointSelector;
+                if (selector == null) {
+                    List<String> addresses = new ArrayList<>();
+                    addresses.add(primaryAddress);
+                    if (alternativeAddresses != null) {
+                        addresses.addAll(alternativeAddresses);
+                    }
+                    selector = new SyncopeEndpointSelector(addresses, this::probe);
+                    selector.setProbeInterval(probeInterval);
+                    endpointSelector = selector;
+                }
+            }
+        }
+        return selector;
+    }
+    
+    private WebClient getClient(String address) {
+        return clients.computeIfAbsent(address, a -> {
+            WebClient client = 
+                WebClient.create(a, Collections.singletonList(new JacksonJsonProvider()), true);
+            HTTPClientPolicy clientPolicy = new HTTPClientPolicy();
+            clientPolicy.setConnection(ConnectionType.KEEP_ALIVE);
+            clientPolicy.setConnectionTimeout(connectionTimeout);
+            clientPolicy.setReceiveTimeout(receiveTimeout);
+            HTTPConduit conduit = WebClient.getConfig(client).getHttpConduit();
+            conduit.setClient(clientPolicy);
+            return client;
+        });
+    }
+    
+    /**
+     * An instance has recovered if it answers an (unauthenticated) request without a server error.
+     */
+    private boolean probe(String address) {
+        WebClient client = getClient(address);
+        client.reset();
+        Response response = client.path("users/self").get();
+        try {
+            return response.getStatus() < 500;
+        } finally {
+            response.close();
+        }
+    }
+    
+    /**
+     * Stop probing the unhealthy Syncope instances, and close the clients.
+     */
+    public synchronized void close() {
+        if (endpointSelector != null) {
+            endpointSelector.close();
+            endpointSelector = null;
+        }
+        for (WebClient client : clients.values()) {
+            client.close();
+        }
+        clients.clear();
+    }
+    
     public String getPrimaryAddress() {
         return primaryAddress;
     }
@@ -127,6 +218,32 @@ public class SyncopeUTValidator implements Validator {
     public void setAlternativeAddresses(List<String> alternativeAddresses) {
         this.alternativeAddresses = alternativeAddresses;
     }
-    
+
+    public long getConnectionTimeout() {
+        return connectionTimeout;
+    }
+
+    public void setConnectionTimeout(long connectionTimeout) {
+        this.connectionTimeout = connectionTimeout;
+    }
+
+    public long getReceiveTimeout() {
+        return receiveTimeout;
+    }
+
+    public void setReceiveTimeout(long receiveTimeout) {
+        this.receiveTimeout = receiveTimeout;
+    }
+
+    public long getProbeInterval() {
+        return probeInterval;
+    }
+
+    /**
+     * Set how often (in milliseconds) the unhealthy Syncope instances are probed
+     */
+    public void setProbeInterval(long probeInterval) {
+        this.probeInterval = probeInterval;
+    }
     
 }
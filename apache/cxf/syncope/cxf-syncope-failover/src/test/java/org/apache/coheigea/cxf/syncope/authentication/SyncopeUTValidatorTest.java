@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authentication;
+
+import java.util.Collections;
+
+import org.apache.cxf.helpers.DOMUtils;
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.engine.WSSConfig;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.apache.wss4j.dom.validate.Credential;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Tests the failover of the SyncopeUTValidator between two local stubs of the Syncope REST API, which
+ * inject latency and failures.
+ */
+public class SyncopeUTValidatorTest {
+
+    private StubSyncopeServer primary;
+    private StubSyncopeServer secondary;
+    private SyncopeUTValidator validator;
+
+    @BeforeClass
+    public static void init() {
+        WSSConfig.init();
+    }
+
+    @Before
+    public void startServers() throws Exception {
+        primary = new StubSyncopeServer();
+        primary.start();
+        secondary = new StubSyncopeServer();
+        secondary.start();
+
+        validator = new SyncopeUTValidator();
+        validator.setPrimaryAddress(primary.getAddress());
+        validator.setAlternativeAddresses(Collections.singletonList(secondary.getAddress()));
+        validator.setReceiveTimeout(500L);
+        validator.setProbeInterval(100L);
+    }
+
+    @After
+    public void stopServers() {
+        validator.close();
+        primary.stop();
+        secondary.stop();
+    }
+
+    @org.junit.Test
+    public void testFastestInstanceIsPreferred() throws Exception {
+        primary.setLatency(100L);
+
+        for (int i = 0; i < 10; i++) {
+            validate("alice", "security");
+        }
+
+        // The primary is only tried once, to measure it
+        assertEquals(1, primary.getRequests());
+        assertEquals(9, secondary.getRequests());
+        assertTrue(validator.getEndpointSelector().isHealthy(primary.getAddress()));
+    }
+
+    @org.junit.Test
+    public void testFailingInstanceIsRestored() throws Exception {
+        validator.getEndpointSelector().setFailureThreshold(1);
+        primary.setFailing(true);
+
+        // All of the requests fail over to the secondary
+        for (int i = 0; i < 10; i++) {
+            validate("alice", "security");
+        }
+        assertFalse(validator.getEndpointSelector().isHealthy(primary.getAddress()));
+        assertEquals(10, secondary.getRequests());
+
+        // The background probe puts the primary back into rotation once it recovers
+        primary.setFailing(false);
+        for (int i = 0; i < 50 && !validator.getEndpointSelector().isHealthy(primary.getAddress()); i++) {
+            Thread.sleep(100L);
+        }
+        assertTrue(validator.getEndpointSelector().isHealthy(primary.getAddress()));
+
+        secondary.resetCounters();
+        validate("alice", "security");
+        assertEquals(0, secondary.getRequests());
+    }
+
+    @org.junit.Test
+    public void testCircuitThresholds() throws Exception {
+        SyncopeEndpointSelector selector = validator.getEndpointSelector();
+        String address = secondary.getAddress();
+
+        // Two failures in a row are not enough to open the circuit, even though they push the error
+        // rate above the maximum, as the error rate only counts after the minimum number of requests
+        selector.failure(address, 1000L);
+        selector.failure(address, 1000L);
+        assertTrue(selector.getErrorRate(address) > selector.getMaxErrorRate());
+        assertTrue(selector.isHealthy(address));
+        selector.success(address, 1000L);
+
+        // Every other request failing opens the circuit once the minimum number of requests is reached
+        for (int i = 0; i < 3; i++) {
+            selector.failure(address, 1000L);
+            selector.success(address, 1000L);
+        }
+        assertTrue(selector.isHealthy(address));
+        selector.failure(address, 1000L);
+        assertFalse(selector.isHealthy(address));
+    }
+
+    @org.junit.Test
+    public void testSlowInstanceTimesOut() throws Exception {
+        primary.setLatency(2000L);
+
+        validate("alice", "security");
+        validate("alice", "security");
+
+        assertEquals(2, secondary.getRequests());
+        assertTrue(validator.getEndpointSelector().getErrorRate(primary.getAddress()) > 0);
+    }
+
+    @org.junit.Test
+    public void testAuthenticationFailureDoesNotFailover() throws Exception {
+        try {
+            validate("alice", "wrong-password");
+            fail("Failure expected on a wrong password");
+        } catch (WSSecurityException ex) {
+            // expected
+        }
+
+        assertEquals(1, primary.getRequests() + secondary.getRequests());
+        assertTrue(validator.getEndpointSelector().isHealthy(primary.getAddress()));
+        assertTrue(validator.getEndpointSelector().isHealthy(secondary.getAddress()));
+    }
+
+    private void validate(String user, String password) throws WSSecurityException {
+        UsernameToken usernameToken = 
+            new UsernameToken(false, DOMUtils.createDocument(), WSConstants.PASSWORD_TEXT);
+        usernameToken.setName(user);
+        usernameToken.setPassword(password);
+
+        Credential credential = new Credential();
+        credential.setUsernametoken(usernameToken);
+        validator.validate(credential, new RequestData());
+    }
+
+}
@@ -0,0 +1,172 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authorization;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * A bounded cache of the roles of each user, where each entry expires after "timeToLive" milliseconds.
+ * The roles are loaded asynchronously on the given Executor. Concurrent lookups of the same (missing)
+ * user share one load, and a failed load is not cached. Once an entry is older than "refreshAhead"
+ * milliseconds, the next lookup returns the cached roles and reloads them in the background, so that
+ * the roles of active users are refreshed before they expire.
+ *
+ * When the cache grows beyond its maximum size, the expired entries and then the oldest entries are evicted
+ * in a single pass, down to 90% of the maximum size, so that the cost of the eviction scan is shared by
+ * many loads.
+ */
+public class RolesCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final Executor executor;
+    private final long timeToLive;
+    private final long refreshAhead;
+    private final int maxSize;
+    private final int evictedSize;
+
+    public RolesCache(Executor executor, long timeToLive, long refreshAhead, int maxSize) {
+        this.executor = executor;
+        this.timeToLive = timeToLive;
+        this.refreshAhead = refreshAhead;
+        this.maxSize = maxSize;
+        this.evictedSize = Math.max(0, maxSize - Math.max(1, maxSize / 10));
+    }
+
+    /**
+     * Get the roles for the given key, loading them with the given loader if they are not cached or
+     * have expired.
+     */
+    public CompletableFuture<List<String>> get(String key, Supplier<List<String>> loader) {
+        if (timeToLive <= 0) {
+            return CompletableFuture.supplyAsync(loader, executor);
+        }
+
+        long now = System.currentTimeMillis();
+        Entry entry = entries.compute(key, (k, existing) ->
+            existing != null && !existing.isExpired(now) ? existing : new Entry());
+
+        if (entry.loading.compareAndSet(false, true)) {
+            load(key, entry, loader);
+        } else if (entry.isDue(now) && entry.refreshing.compareAndSet(false, true)) {
+            // Refresh ahead of the expiry, and keep serving the cached roles in the meantime
+            Entry refreshed = new Entry();
+            refreshed.loading.set(true);
+            CompletableFuture.supplyAsync(loader, executor).whenComplete((roles, ex) -> {
+                if (ex == null) {
+                    refreshed.loaded = System.currentTimeMillis();
+                    refreshed.roles.complete(roles);
+                    entries.replace(key, entry, refreshed);
+                } else {
+                    entries.remove(key, entry);
+                }
+            });
+        }
+        return entry.roles;
+    }
+
+    private void load(String key, Entry entry, Supplier<List<String>> loader) {
+        CompletableFuture.supplyAsync(loader, executor).whenComplete((roles, ex) -> {
+            if (ex == null) {
+                entry.loaded = System.currentTimeMillis();
+                entry.roles.complete(roles);
+                evictIfNeeded();
+            } else {
+                entries.remove(key, entry);
+                entry.roles.completeExceptionally(ex);
+            }
+        });
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evict entries if the cache is over its maximum size. Only one thread evicts at a time, the others
+     * carry on without waiting for it.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove the expired entries, and then the oldest entries until the cache is back down to 90% of its
+     * maximum size. Entries that are still loading are never evicted.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+
+        int excess = entries.size() - evictedSize;
+        if (excess <= 0) {
+            return;
+        }
+
+        // Keep the "excess" oldest entries, with the newest of them at the head
+        PriorityQueue<Map.Entry<String, Entry>> oldest = new PriorityQueue<>(excess + 1,
+            Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().loaded).reversed());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            if (entry.getValue().roles.isDone()) {
+                oldest.offer(entry);
+                if (oldest.size() > excess) {
+                    oldest.poll();
+                }
+            }
+        }
+        for (Map.Entry<String, Entry> entry : oldest) {
+            entries.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private final class Entry {
+        private final CompletableFuture<List<String>> roles = new CompletableFuture<>();
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private final AtomicBoolean refreshing = new AtomicBoolean();
+        private volatile long loaded = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return roles.isDone() && loaded + timeToLive < now;
+        }
+
+        boolean isDue(long now) {
+            return roles.isDone() && !roles.isCompletedExceptionally() && loaded + refreshAhead < now;
+        }
+    }
+
+}
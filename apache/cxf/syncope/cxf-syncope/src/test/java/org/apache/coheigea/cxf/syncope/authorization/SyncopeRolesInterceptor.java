@@ -18,10 +18,22 @@
  */
 package org.apache.coheigea.cxf.syncope.authorization;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Principal;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
 import javax.security.auth.Subject;
 
 import org.apache.cxf.common.security.SecurityToken;
@@ -35,7 +47,11 @@ import org.apache.cxf.jaxrs.client.WebClient;
 import org.apache.cxf.message.Message;
 import org.apache.cxf.phase.AbstractPhaseInterceptor;
 import org.apache.cxf.phase.Phase;
+import org.apache.cxf.phase.PhaseInterceptor;
 import org.apache.cxf.security.SecurityContext;
+import org.apache.cxf.transport.http.HTTPConduit;
+import org.apache.cxf.transports.http.configuration.ConnectionType;
+import org.apache.cxf.transports.http.configuration.HTTPClientPolicy;
 import org.apache.syncope.common.to.MembershipTO;
 import org.apache.syncope.common.to.UserTO;
 import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
@@ -44,68 +60,195 @@ import com.fasterxml.jackson.jaxrs.json.JacksonJsonProvider;
  * Take the received usernametoken and authenticate the username/password credential. Then read the
  * user from Syncope and get the roles. Store these in a new Subject that can be authorized by a 
  * downstream authorizing interceptor.
+ * 
+ * The user is read via a single thread-safe WebClient (with keep-alive connections) which is shared by
+ * all requests. The lookup is started asynchronously in the POST_PROTOCOL phase, so that it overlaps
+ * with the unmarshalling of the request, and is completed in the PRE_INVOKE phase. The roles are cached
+ * per username and password for "cacheTimeToLive" seconds, and are refreshed in the background once they
+ * are older than "refreshAhead" seconds. Set "cacheTimeToLive" to 0 to disable the cache. The cache key
+ * holds an HMAC of the password, with a random key that is generated for each interceptor.
  */
 public class SyncopeRolesInterceptor extends AbstractPhaseInterceptor<Message> {
     
     private static org.apache.commons.logging.Log log = 
             org.apache.commons.logging.LogFactory.getLog(SyncopeRolesInterceptor.class);
     
+    private static final String ROLES_LOOKUP = SyncopeRolesInterceptor.class.getName() + ".ROLES_LOOKUP";
+    private static final String CACHE_KEY_ALGORITHM = "HmacSHA256";
+    
+    private final Collection<PhaseInterceptor<? extends Message>> additionalInterceptors;
+    private final SecretKeySpec cacheKeySecret;
     private String address;
+    private int threads = 10;
+    private long receiveTimeout = 30000L;
+    private long cacheTimeToLive = 60L;
+    private long refreshAhead = 45L;
+    private int cacheMaxSize = 10000;
+    
+    private volatile WebClient client;
+    private volatile ExecutorService executor;
+    private volatile RolesCache rolesCache;
 
     public SyncopeRolesInterceptor() {
         super(Phase.PRE_INVOKE);
         super.addBefore(SimpleAuthorizingInterceptor.class.getName());
+        additionalInterceptors = 
+            Collections.<PhaseInterceptor<? extends Message>>singletonList(new RolesLookupInterceptor());
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        cacheKeySecret = new SecretKeySpec(secret, CACHE_KEY_ALGORITHM);
     }
     
     public void handleMessage(Message message) throws Fault {
+        UsernameToken usernameToken = getUsernameToken(message);
+        if (usernameToken == null) {
+            return;
+        }
+        
+        @SuppressWarnings("unchecked")
+        CompletableFuture<List<String>> lookup = (CompletableFuture<List<String>>)message.get(ROLES_LOOKUP);
+        if (lookup == null) {
+            lookup = lookupRoles(usernameToken);
+        }
+        
+        List<String> roles = null;
+        try {
+            roles = lookup.join();
+        } catch (CompletionException ex) {
+            if (log.isDebugEnabled()) {
+                log.debug(ex.getCause().getMessage(), ex.getCause());
+            }
+            throw ex.getCause() instanceof Fault ? (Fault)ex.getCause() : new Fault(ex.getCause());
+        }
+        
+        // Now store the roles
+        Principal principal = message.get(SecurityContext.class).getUserPrincipal();
+        Subject subject = new Subject();
+        subject.getPrincipals().add(principal);
+        for (String roleName : roles) {
+            subject.getPrincipals().add(new SimpleGroup(roleName, usernameToken.getName()));
+        }
+        subject.setReadOnly();
+
+        message.put(SecurityContext.class, new DefaultSecurityContext(principal, subject));
+    }
+    
+    @Override
+    public Collection<PhaseInterceptor<? extends Message>> getAdditionalInterceptors() {
+        return additionalInterceptors;
+    }
+    
+    private static UsernameToken getUsernameToken(Message message) {
         SecurityContext context = message.get(SecurityContext.class);
         if (context == null) {
-            return;
+            return null;
         }
         Principal principal = context.getUserPrincipal();
         UsernameToken usernameToken = (UsernameToken)message.get(SecurityToken.class);
         if (principal == null || usernameToken == null
             || !principal.getName().equals(usernameToken.getName())) {
-            return;
+            return null;
         }
-        
+        return usernameToken;
+    }
+    
+    private CompletableFuture<List<String>> lookupRoles(UsernameToken usernameToken) {
+        String name = usernameToken.getName();
+        String password = usernameToken.getPassword();
+        return getRolesCache().get(getCacheKey(name, password), () -> readRoles(name, password));
+    }
+    
+    private List<String> readRoles(String name, String password) {
         // Read the user from Syncope and get the roles
-        WebClient client = 
-            WebClient.create(address, Collections.singletonList(new JacksonJsonProvider()));
-        
         String authorizationHeader = 
-            "Basic " + Base64Utility.encode(
-                (usernameToken.getName() + ":" + usernameToken.getPassword()).getBytes()
-            );
+            "Basic " + Base64Utility.encode((name + ":" + password).getBytes(StandardCharsets.UTF_8));
         
-        client.header("Authorization", authorizationHeader);
+        WebClient webClient = getClient();
+        webClient.reset();
+        webClient.header("Authorization", authorizationHeader);
         
-        client = client.path("users/self");
-        UserTO user = null;
+        UserTO user = webClient.path("users/self").get(UserTO.class);
+        if (user == null) {
+            Exception exception = new Exception("Authentication failed");
+            throw new Fault(exception);
+        }
+        
+        List<String> roles = new ArrayList<>();
+        for (MembershipTO membership : user.getMemberships()) {
+            roles.add(membership.getRoleName());
+        }
+        return Collections.unmodifiableList(roles);
+    }
+    
+    private String getCacheKey(String name, String password) {
+        // An HMAC with a random key that never leaves this process, so that the cache keys can't be
+        // used to guess the passwords offline
         try {
-            user = client.get(UserTO.class);
-            if (user == null) {
-                Exception exception = new Exception("Authentication failed");
-                throw new Fault(exception);
+            Mac mac = Mac.getInstance(CACHE_KEY_ALGORITHM);
+            mac.init(cacheKeySecret);
+            byte[] hash = mac.doFinal((name + ":" + password).getBytes(StandardCharsets.UTF_8));
+            return name + ":" + Base64Utility.encode(hash);
+        } catch (GeneralSecurityException ex) {
+            throw new Fault(ex);
+        }
+    }
+    
+    private WebClient getClient() {
+        WebClient webClient = client;
+        if (webClient == null) {
+            synchronized (this) {
+                webClient = client;
+                if (webClient == null) {
+                    webClient = 
+                        WebClient.create(address, Collections.singletonList(new JacksonJsonProvider()), true);
+                    HTTPClientPolicy clientPolicy = new HTTPClientPolicy();
+                    clientPolicy.setConnection(ConnectionType.KEEP_ALIVE);
+                    clientPolicy.setReceiveTimeout(receiveTimeout);
+                    HTTPConduit conduit = WebClient.getConfig(webClient).getHttpConduit();
+                    conduit.setClient(clientPolicy);
+                    client = webClient;
+                }
             }
-        } catch (RuntimeException ex) {
-            if (log.isDebugEnabled()) {
-                log.debug(ex.getMessage(), ex);
+        }
+        return webClient;
+    }
+    
+    private RolesCache getRolesCache() {
+        RolesCache cache = rolesCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = rolesCache;
+                if (cache == null) {
+                    executor = Executors.newFixedThreadPool(threads, r -> {
+                        Thread thread = new Thread(r, "syncope-roles");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    cache = new RolesCache(executor, TimeUnit.SECONDS.toMillis(cacheTimeToLive), 
+                                           TimeUnit.SECONDS.toMillis(refreshAhead), cacheMaxSize);
+                    rolesCache = cache;
+                }
             }
-            throw new Fault(ex);
         }
-        
-        // Now get the roles
-        List<MembershipTO> membershipList = user.getMemberships();
-        Subject subject = new Subject();
-        subject.getPrincipals().add(principal);
-        for (MembershipTO membership : membershipList) {
-            String roleName = membership.getRoleName();
-            subject.getPrincipals().add(new SimpleGroup(roleName, usernameToken.getName()));
+        return cache;
+    }
+    
+    /**
+     * Close the shared client and executor, and clear the roles cache.
+     */
+    public synchronized void close() {
+        if (rolesCache != null) {
+            rolesCache.clear();
+            rolesCache = null;
+        }
+        if (executor != null) {
+            executor.shutdown();
+            executor = null;
+        }
+        if (client != null) {
+            client.close();
+            client = null;
         }
-        subject.setReadOnly();
-
-        message.put(SecurityContext.class, new DefaultSecurityContext(principal, subject));
     }
     
     public void setAddress(String newAddress) {
@@ -116,4 +259,72 @@ public class SyncopeRolesInterceptor extends AbstractPhaseInterceptor<Message> {
         return address;
     }
     
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads used to read the roles from Syncope
+     */
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    public long getReceiveTimeout() {
+        return receiveTimeout;
+    }
+
+    public void setReceiveTimeout(long receiveTimeout) {
+        this.receiveTimeout = receiveTimeout;
+    }
+
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Set how long (in seconds) the roles of a user are cached for
+     */
+    public void setCacheTimeToLive(long cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    public long getRefreshAhead() {
+        return refreshAhead;
+    }
+
+    /**
+     * Set how old (in seconds) the cached roles of a user are before they are refreshed in the background
+     */
+    public void setRefreshAhead(long refreshAhead) {
+        this.refreshAhead = refreshAhead;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+    
+    /**
+     * Starts reading the roles as soon as the UsernameToken has been processed, so that the lookup
+     * overlaps with the rest of the interceptor chain.
+     */
+    private class RolesLookupInterceptor extends AbstractPhaseInterceptor<Message> {
+        
+        RolesLookupInterceptor() {
+            super(Phase.POST_PROTOCOL);
+        }
+        
+        public void handleMessage(Message message) throws Fault {
+            UsernameToken usernameToken = getUsernameToken(message);
+            if (usernameToken != null) {
+                message.put(ROLES_LOOKUP, lookupRoles(usernameToken));
+            }
+        }
+        
+    }
+    
 }
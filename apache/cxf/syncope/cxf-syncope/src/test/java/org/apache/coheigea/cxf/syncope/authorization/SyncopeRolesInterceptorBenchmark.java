@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authorization;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.security.auth.Subject;
+
+import org.apache.cxf.common.security.SecurityToken;
+import org.apache.cxf.common.security.UsernameToken;
+import org.apache.cxf.interceptor.security.DefaultSecurityContext;
+import org.apache.cxf.message.Message;
+import org.apache.cxf.message.MessageImpl;
+import org.apache.cxf.phase.PhaseInterceptor;
+import org.apache.cxf.security.SecurityContext;
+
+/**
+ * A simple throughput benchmark of SyncopeRolesInterceptor against a StubSyncopeServer. Each request
+ * runs the POST_PROTOCOL lookup interceptor (in the "async" scenarios), then sleeps for the given
+ * time to simulate the rest of the interceptor chain (such as unmarshalling), and then runs the
+ * PRE_INVOKE interceptor. It compares a blocking lookup, an asynchronous lookup that overlaps with the
+ * rest of the chain, and an asynchronous lookup with the roles cache. Run the main method, optionally
+ * passing the number of threads, the duration of each run in seconds, the stub latency and the chain
+ * time in milliseconds.
+ */
+public class SyncopeRolesInterceptorBenchmark {
+
+    private static final int USERS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 2L;
+        long chainTime = args.length > 3 ? Long.parseLong(args[3]) : 2L;
+
+        StubSyncopeServer server = new StubSyncopeServer(latency);
+        server.start();
+        try {
+            System.out.println("Scenario, Threads, Requests/s, Syncope requests");
+            run("blocking", server, threads, seconds, chainTime, 0L, false);
+            run("async", server, threads, seconds, chainTime, 0L, true);
+            run("async + cache", server, threads, seconds, chainTime, 60L, true);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String scenario, StubSyncopeServer server, int threads, int seconds,
+                            long chainTime, long cacheTimeToLive, boolean async) throws Exception {
+        SyncopeRolesInterceptor interceptor = new SyncopeRolesInterceptor();
+        interceptor.setAddress(server.getAddress());
+        interceptor.setThreads(threads);
+        interceptor.setCacheTimeToLive(cacheTimeToLive);
+        PhaseInterceptor<? extends Message> lookupInterceptor =
+            interceptor.getAdditionalInterceptors().iterator().next();
+
+        // Warm up
+        invoke(interceptor, null, "user0", chainTime);
+        server.resetCounters();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (running.get()) {
+                    String user = "user" + ((offset + count) % USERS);
+                    invoke(interceptor, async ? lookupInterceptor : null, user, chainTime);
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        interceptor.close();
+
+        System.out.println(scenario + ", " + threads + ", " + (total / seconds) + ", " + server.getRequests());
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void invoke(SyncopeRolesInterceptor interceptor,
+                               PhaseInterceptor<? extends Message> lookupInterceptor,
+                               String user, long chainTime) throws Exception {
+        Message message = new MessageImpl();
+        Principal principal = () -> user;
+        message.put(SecurityContext.class, new DefaultSecurityContext(principal, new Subject()));
+        message.put(SecurityToken.class, new UsernameToken(user, "password", null, false, null, null));
+
+        if (lookupInterceptor != null) {
+            ((PhaseInterceptor<Message>)lookupInterceptor).handleMessage(message);
+        }
+        Thread.sleep(chainTime);
+        interceptor.handleMessage(message);
+
+        if (!message.get(SecurityContext.class).isUserInRole("boss")) {
+            throw new IllegalStateException("Unexpected roles for " + user);
+        }
+    }
+
+}
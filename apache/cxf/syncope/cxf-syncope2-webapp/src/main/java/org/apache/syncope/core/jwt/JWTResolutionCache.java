@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.syncope.core.jwt;
+
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
+import org.apache.syncope.common.lib.types.AnyTypeKind;
+import org.apache.syncope.core.persistence.api.entity.Any;
+import org.apache.syncope.core.persistence.api.entity.user.User;
+import org.apache.syncope.core.provisioning.api.event.AnyCreatedUpdatedEvent;
+import org.apache.syncope.core.provisioning.api.event.AnyDeletedEvent;
+import org.apache.syncope.core.spring.security.SyncopeGrantedAuthority;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * A bounded cache of the user key, username and authorities that a JWT resolves to, keyed on the
+ * domain, the subject, the token id (jti) and the expiry of the token. Only these values are cached,
+ * and never the (JPA) User itself, which belongs to the transaction that loaded it. An entry expires
+ * with its token, and at the latest after "maxTimeToLive" seconds (which bounds how long a change to a
+ * Role, which is not notified, can take to be seen). The entries of a user are removed once a change to
+ * the user is committed, and all of the entries are removed once a change to a group is committed, as
+ * memberships can grant roles.
+ *
+ * Each invalidation increments a generation counter. A resolution is only cached if no invalidation
+ * happened while it was being resolved, so that a resolution that started before a change can't put a
+ * stale entry back.
+ */
+public class JWTResolutionCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLong generation = new AtomicLong();
+
+    private final ReentrantLock evictionLock = new ReentrantLock();
+
+    private final AtomicLong hits = new AtomicLong();
+
+    private final AtomicLong misses = new AtomicLong();
+
+    private long maxTimeToLive = 300L;
+
+    private int maxSize = 10000;
+
+    /**
+     * Get the cached resolution of the given claims, or null if it is not cached (or has expired).
+     */
+    public Resolution getIfPresent(final String domain, final JwtClaims jwtClaims) {
+        long now = System.currentTimeMillis();
+        if (!isCacheable(jwtClaims, now)) {
+            return null;
+        }
+
+        Entry entry = entries.get(getKey(domain, jwtClaims));
+        if (entry != null && entry.expiry > now) {
+            hits.incrementAndGet();
+            return entry.resolution;
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * The current generation, which must be read before resolving the claims that are then passed to
+     * put().
+     */
+    public long getGeneration() {
+        return generation.get();
+    }
+
+    /**
+     * Cache the resolution of the given claims, unless the cache was invalidated since the given
+     * generation was read.
+     */
+    public void put(
+            final String domain,
+            final JwtClaims jwtClaims,
+            final long resolvedGeneration,
+            final User user,
+            final Set<SyncopeGrantedAuthority> authorities) {
+
+        long now = System.currentTimeMillis();
+        if (user == null || !isCacheable(jwtClaims, now) || generation.get() != resolvedGeneration) {
+            return;
+        }
+
+        String key = getKey(domain, jwtClaims);
+        Entry entry = new Entry(domain, new Resolution(user.getKey(), user.getUsername(), authorities),
+            getExpiry(jwtClaims, now));
+        entries.put(key, entry);
+        // An invalidation may have run between the check above and the put, and missed this entry
+        if (generation.get() != resolvedGeneration) {
+            entries.remove(key, entry);
+            return;
+        }
+
+        if (entries.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    private boolean isCacheable(final JwtClaims jwtClaims, final long now) {
+        return maxTimeToLive > 0 && jwtClaims.getSubject() != null && getExpiry(jwtClaims, now) > now;
+    }
+
+    private static String getKey(final String domain, final JwtClaims jwtClaims) {
+        return domain + '\n' + jwtClaims.getSubject() + '\n' + jwtClaims.getTokenId() + '\n'
+            + jwtClaims.getExpiryTime();
+    }
+
+    private long getExpiry(final JwtClaims jwtClaims, final long now) {
+        long expiry = now + TimeUnit.SECONDS.toMillis(maxTimeToLive);
+        Long expiryTime = jwtClaims.getExpiryTime();
+        if (expiryTime != null) {
+            expiry = Math.min(expiry, TimeUnit.SECONDS.toMillis(expiryTime));
+        }
+        return expiry;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnyCreatedUpdated(final AnyCreatedUpdatedEvent<Any<?>> event) {
+        Any<?> any = event.getAny();
+        if (any instanceof User) {
+            invalidate(event.getDomain(), any.getKey());
+        } else if (any != null && any.getType() != null && any.getType().getKind() == AnyTypeKind.GROUP) {
+            invalidateAll();
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onAnyDeleted(final AnyDeletedEvent event) {
+        if (event.getAnyTypeKind() == AnyTypeKind.USER) {
+            invalidate(event.getDomain(), event.getAnyKey());
+        } else if (event.getAnyTypeKind() == AnyTypeKind.GROUP) {
+            invalidateAll();
+        }
+    }
+
+    /**
+     * Remove the entries of the user with the given key.
+     */
+    public void invalidate(final String domain, final String userKey) {
+        generation.incrementAndGet();
+        entries.values().removeIf(entry ->
+            entry.domain.equals(domain) && entry.resolution.getUserKey().equals(userKey));
+    }
+
+    public void invalidateAll() {
+        generation.incrementAndGet();
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    /**
+     * Remove the expired entries, and then the entries that expire first until the cache is back down to
+     * 90% of its maximum size, so that the cost of the scan is shared by many inserts.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiry <= now);
+
+        int excess = entries.size() - Math.max(0, maxSize - Math.max(1, maxSize / 10));
+        if (excess <= 0) {
+            return;
+        }
+
+        // Keep the "excess" entries that expire first, with the one that expires last at the head
+        PriorityQueue<Map.Entry<String, Entry>> soonest = new PriorityQueue<>(excess + 1,
+            Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().expiry).reversed());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            soonest.offer(entry);
+            if (soonest.size() > excess) {
+                soonest.poll();
+            }
+        }
+        for (Map.Entry<String, Entry> entry : soonest) {
+            entries.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    public long getMaxTimeToLive() {
+        return maxTimeToLive;
+    }
+
+    /**
+     * Set the maximum time (in seconds) that a resolution is cached for. Set it to 0 to disable the cache.
+     */
+    public void setMaxTimeToLive(final long maxTimeToLive) {
+        this.maxTimeToLive = maxTimeToLive;
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(final int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * The key and username of the user that a JWT resolves to, and its authorities.
+     */
+    public static final class Resolution {
+
+        private final String userKey;
+
+        private final String username;
+
+        private final Set<SyncopeGrantedAuthority> authorities;
+
+        Resolution(
+                final String userKey,
+                final String username,
+                final Set<SyncopeGrantedAuthority> authorities) {
+
+            this.userKey = userKey;
+            this.username = username;
+            this.authorities = Collections.unmodifiableSet(new HashSet<>(authorities));
+        }
+
+        public String getUserKey() {
+            return userKey;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public Set<SyncopeGrantedAuthority> getAuthorities() {
+            return authorities;
+        }
+    }
+
+    private static final class Entry {
+
+        private final String domain;
+
+        private final Resolution resolution;
+
+        private final long expiry;
+
+        Entry(final String domain, final Resolution resolution, final long expiry) {
+            this.domain = domain;
+            this.resolution = resolution;
+            this.expiry = expiry;
+        }
+    }
+
+}
@@ -18,13 +18,18 @@
  */
 package org.apache.syncope.core.jwt;
 
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.KeyStore;
+import java.security.PublicKey;
+import java.security.Signature;
 import java.security.cert.X509Certificate;
 import java.util.Set;
 
 import org.apache.commons.lang3.tuple.Pair;
 import org.apache.cxf.common.classloader.ClassLoaderUtils;
 import org.apache.cxf.rs.security.jose.jwa.SignatureAlgorithm;
+import org.apache.cxf.rs.security.jose.jws.JwsException;
 import org.apache.cxf.rs.security.jose.jws.JwsHeaders;
 import org.apache.cxf.rs.security.jose.jws.JwsSignatureVerifier;
 import org.apache.cxf.rs.security.jose.jws.JwsVerificationSignature;
@@ -32,6 +37,7 @@ import org.apache.cxf.rs.security.jose.jws.PublicKeyJwsSignatureVerifier;
 import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
 import org.apache.syncope.core.persistence.api.dao.UserDAO;
 import org.apache.syncope.core.persistence.api.entity.user.User;
+import org.apache.syncope.core.spring.security.AuthContextUtils;
 import org.apache.syncope.core.spring.security.AuthDataAccessor;
 import org.apache.syncope.core.spring.security.JWTSSOProvider;
 import org.apache.syncope.core.spring.security.SyncopeGrantedAuthority;
@@ -39,7 +45,11 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.transaction.annotation.Transactional;
 
 /**
- * A JWT validation implementation which is used to validate tokens issued by the CXF STS.
+ * A JWT validation implementation which is used to validate tokens issued by the CXF STS. The
+ * verification Signature for the STS certificate is kept per thread, and the user key and authorities
+ * that a token resolves to are cached in the JWTResolutionCache (if one is configured), so that a
+ * token that is presented again only loads the user by its key, rather than searching for it by
+ * username and working out its authorities again.
  */
 public class STSJWTSSOProvider implements JWTSSOProvider {
 
@@ -47,12 +57,19 @@ public class STSJWTSSOProvider implements JWTSSOProvider {
 
     private final JwsSignatureVerifier delegate;
 
+    private final PublicKey publicKey;
+
+    private final ThreadLocal<Signature> signatures;
+
     @Autowired
     private UserDAO userDAO;
 
     @Autowired
     private AuthDataAccessor authDataAccessor;
 
+    @Autowired(required = false)
+    private JWTResolutionCache resolutionCache;
+
     public STSJWTSSOProvider() throws Exception {
         // Load verification cert
         KeyStore keyStore = KeyStore.getInstance("JKS");
@@ -61,6 +78,14 @@ public class STSJWTSSOProvider implements JWTSSOProvider {
         X509Certificate cert = (X509Certificate)keyStore.getCertificate("mykey");
 
         delegate = new PublicKeyJwsSignatureVerifier(cert, SignatureAlgorithm.RS256);
+        publicKey = cert.getPublicKey();
+        signatures = ThreadLocal.withInitial(() -> {
+            try {
+                return Signature.getInstance(SignatureAlgorithm.RS256.getJavaName());
+            } catch (GeneralSecurityException e) {
+                throw new JwsException(JwsException.Error.NO_VERIFIER, e);
+            }
+        });
     }
 
     @Override
@@ -75,18 +100,89 @@ public class STSJWTSSOProvider implements JWTSSOProvider {
 
     @Override
     public boolean verify(final JwsHeaders headers, final String unsignedText, final byte[] signature) {
-        return delegate.verify(headers, unsignedText, signature);
+        if (headers.getSignatureAlgorithm() != getAlgorithm()) {
+            return delegate.verify(headers, unsignedText, signature);
+        }
+
+        try {
+            Signature verifier = initVerifier();
+            verifier.update(unsignedText.getBytes(StandardCharsets.UTF_8));
+            return verifier.verify(signature);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
     }
 
     @Override
     public JwsVerificationSignature createJwsVerificationSignature(final JwsHeaders headers) {
-        return delegate.createJwsVerificationSignature(headers);
+        if (headers.getSignatureAlgorithm() != getAlgorithm()) {
+            return delegate.createJwsVerificationSignature(headers);
+        }
+
+        Signature verifier;
+        try {
+            verifier = initVerifier();
+        } catch (GeneralSecurityException e) {
+            throw new JwsException(JwsException.Error.NO_VERIFIER, e);
+        }
+        return new JwsVerificationSignature() {
+
+            @Override
+            public void update(final byte[] src, final int off, final int len) {
+                try {
+                    verifier.update(src, off, len);
+                } catch (GeneralSecurityException e) {
+                    throw new JwsException(JwsException.Error.INVALID_SIGNATURE, e);
+                }
+            }
+
+            @Override
+            public boolean verify(final byte[] signatureBytes) {
+                try {
+                    return verifier.verify(signatureBytes);
+                } catch (GeneralSecurityException e) {
+                    throw new JwsException(JwsException.Error.INVALID_SIGNATURE, e);
+                }
+            }
+        };
+    }
+
+    /**
+     * Return the Signature of this thread, (re-)initialized for verification, which also discards the
+     * state of any previous verification that was not completed.
+     */
+    private Signature initVerifier() throws GeneralSecurityException {
+        Signature verifier = signatures.get();
+        verifier.initVerify(publicKey);
+        return verifier;
     }
 
     @Transactional(readOnly = true)
     @Override
     public Pair<User, Set<SyncopeGrantedAuthority>> resolve(final JwtClaims jwtClaims) {
+        if (resolutionCache == null) {
+            return doResolve(jwtClaims);
+        }
+
+        // The User is always loaded in the current transaction, only its key and authorities are cached
+        String domain = AuthContextUtils.getDomain();
+        JWTResolutionCache.Resolution cached = resolutionCache.getIfPresent(domain, jwtClaims);
+        if (cached != null) {
+            User user = userDAO.find(cached.getUserKey());
+            if (user != null && user.getUsername().equals(cached.getUsername())) {
+                return Pair.of(user, cached.getAuthorities());
+            }
+        }
+
+        long generation = resolutionCache.getGeneration();
+        Pair<User, Set<SyncopeGrantedAuthority>> resolved = doResolve(jwtClaims);
+        if (resolved != null) {
+            resolutionCache.put(domain, jwtClaims, generation, resolved.getLeft(), resolved.getRight());
+        }
+        return resolved;
+    }
 
+    private Pair<User, Set<SyncopeGrantedAuthority>> doResolve(final JwtClaims jwtClaims) {
         User user = userDAO.findByUsername(jwtClaims.getSubject());
         if (user != null) {
             Set<SyncopeGrantedAuthority> authorities = authDataAccessor.getAuthorities(user.getUsername());
@@ -0,0 +1,205 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.syncope.core.jwt;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.cxf.rs.security.jose.jwt.JwtClaims;
+import org.apache.syncope.core.persistence.api.dao.UserDAO;
+import org.apache.syncope.core.persistence.api.entity.user.User;
+import org.apache.syncope.core.spring.security.AuthDataAccessor;
+import org.apache.syncope.core.spring.security.SyncopeGrantedAuthority;
+
+/**
+ * A simple benchmark of STSJWTSSOProvider.resolve, with and without the JWTResolutionCache. The
+ * UserDAO and the AuthDataAccessor are replaced by stubs that count the queries and sleep for the
+ * given time to simulate the database. Each thread replays a set of tokens (one per user) in turn, as
+ * busy SSO clients do. A cache hit still loads the user by its key, so it saves one query in two. Run
+ * the main method, optionally passing the number of threads, the number of users, the number of times
+ * each token is presented per thread and the query latency in milliseconds.
+ */
+public final class JWTResolutionBenchmark {
+
+    private JWTResolutionBenchmark() {
+    }
+
+    public static void main(final String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int users = args.length > 1 ? Integer.parseInt(args[1]) : 100;
+        int replays = args.length > 2 ? Integer.parseInt(args[2]) : 50;
+        long latency = args.length > 3 ? Long.parseLong(args[3]) : 1L;
+
+        List<JwtClaims> tokens = new ArrayList<>(users);
+        long expiry = TimeUnit.MILLISECONDS.toSeconds(System.currentTimeMillis()) + 3600L;
+        for (int i = 0; i < users; i++) {
+            JwtClaims claims = new JwtClaims();
+            claims.setSubject("user" + i);
+            claims.setTokenId("token" + i);
+            claims.setIssuer(STSJWTSSOProvider.ISSUER);
+            claims.setExpiryTime(expiry);
+            tokens.add(claims);
+        }
+
+        System.out.println("Scenario, Threads, Resolutions, DB queries, p50 (us), p99 (us)");
+        run("uncached", null, tokens, threads, replays, latency);
+        run("cached", new JWTResolutionCache(), tokens, threads, replays, latency);
+    }
+
+    private static void run(
+            final String scenario,
+            final JWTResolutionCache cache,
+            final List<JwtClaims> tokens,
+            final int threads,
+            final int replays,
+            final long latency) throws Exception {
+
+        AtomicLong queries = new AtomicLong();
+        STSJWTSSOProvider provider = new STSJWTSSOProvider();
+        inject(provider, "userDAO", stubUserDAO(queries, latency));
+        inject(provider, "authDataAccessor", new StubAuthDataAccessor(queries, latency));
+        inject(provider, "resolutionCache", cache);
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<long[]>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            results.add(executor.submit(() -> {
+                long[] times = new long[tokens.size() * replays];
+                for (int i = 0; i < times.length; i++) {
+                    JwtClaims claims = tokens.get((offset + i) % tokens.size());
+                    long start = System.nanoTime();
+                    if (provider.resolve(claims) == null) {
+                        throw new IllegalStateException("Unresolved token for " + claims.getSubject());
+                    }
+                    times[i] = System.nanoTime() - start;
+                }
+                return times;
+            }));
+        }
+
+        List<long[]> allTimes = new ArrayList<>(threads);
+        int count = 0;
+        for (Future<long[]> result : results) {
+            long[] times = result.get();
+            allTimes.add(times);
+            count += times.length;
+        }
+        executor.shutdown();
+
+        long[] times = new long[count];
+        int index = 0;
+        for (long[] threadTimes : allTimes) {
+            System.arraycopy(threadTimes, 0, times, index, threadTimes.length);
+            index += threadTimes.length;
+        }
+        Arrays.sort(times);
+
+        System.out.println(scenario + ", " + threads + ", " + count + ", " + queries.get() + ", "
+            + percentile(times, 0.5) + ", " + percentile(times, 0.99));
+    }
+
+    private static long percentile(final long[] sortedTimes, final double percentile) {
+        int index = (int) Math.ceil(percentile * sortedTimes.length) - 1;
+        return TimeUnit.NANOSECONDS.toMicros(sortedTimes[Math.max(index, 0)]);
+    }
+
+    private static void inject(final Object target, final String name, final Object value) throws Exception {
+        Field field = target.getClass().getDeclaredField(name);
+        field.setAccessible(true);
+        field.set(target, value);
+    }
+
+    private static void simulateQuery(final AtomicLong queries, final long latency) {
+        queries.incrementAndGet();
+        try {
+            Thread.sleep(latency);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static UserDAO stubUserDAO(final AtomicLong queries, final long latency) {
+        return (UserDAO) Proxy.newProxyInstance(
+            JWTResolutionBenchmark.class.getClassLoader(),
+            new Class<?>[] { UserDAO.class },
+            (proxy, method, methodArgs) -> {
+                if ("findByUsername".equals(method.getName())) {
+                    simulateQuery(queries, latency);
+                    return stubUser((String) methodArgs[0]);
+                }
+                if ("find".equals(method.getName())) {
+                    // A lookup by the primary key, which a cache hit still makes
+                    simulateQuery(queries, latency);
+                    return stubUser(((String) methodArgs[0]).substring("key-".length()));
+                }
+                throw new UnsupportedOperationException(method.getName());
+            });
+    }
+
+    private static User stubUser(final String username) {
+        return (User) Proxy.newProxyInstance(
+            JWTResolutionBenchmark.class.getClassLoader(),
+            new Class<?>[] { User.class },
+            (proxy, method, methodArgs) -> {
+                switch (method.getName()) {
+                    case "getKey":
+                        return "key-" + username;
+                    case "getUsername":
+                    case "toString":
+                        return username;
+                    case "hashCode":
+                        return username.hashCode();
+                    case "equals":
+                        return proxy == methodArgs[0];
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+
+    private static final class StubAuthDataAccessor extends AuthDataAccessor {
+
+        private final AtomicLong queries;
+
+        private final long latency;
+
+        StubAuthDataAccessor(final AtomicLong queries, final long latency) {
+            this.queries = queries;
+            this.latency = latency;
+        }
+
+        @Override
+        public Set<SyncopeGrantedAuthority> getAuthorities(final String username) {
+            simulateQuery(queries, latency);
+            return Collections.emptySet();
+        }
+    }
+
+}
@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.syncope.authorization;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stub of the Syncope REST API "users/self" endpoint. Every user with the password "password" is a
+ * member of the group "boss". Each request is delayed by the given latency, to simulate a remote
+ * Syncope.
+ */
+public class StubSyncopeServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMillis;
+    private final AtomicLong requests = new AtomicLong();
+
+    public StubSyncopeServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/syncope/rest/users/self", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getAddress() {
+        return "http://localhost:" + server.getAddress().getPort() + "/syncope/rest/";
+    }
+
+    public long getRequests() {
+        return requests.get();
+    }
+
+    public void resetCounters() {
+        requests.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        String username = getUsername(exchange.getRequestHeaders().getFirst("Authorization"));
+        if (username == null) {
+            exchange.sendResponseHeaders(401, -1);
+            exchange.close();
+            return;
+        }
+
+        String response = "{\"@class\":\"org.apache.syncope.common.lib.to.UserTO\",\"username\":\"" + username
+            + "\",\"memberships\":[{\"groupName\":\"boss\"}]}";
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private static String getUsername(String authorizationHeader) {
+        if (authorizationHeader == null || !authorizationHeader.startsWith("Basic ")) {
+            return null;
+        }
+        String credentials = new String(Base64.getDecoder().decode(authorizationHeader.substring(6)),
+                                        StandardCharsets.UTF_8);
+        int index = credentials.indexOf(':');
+        if (index <= 0 || !"password".equals(credentials.substring(index + 1))) {
+            return null;
+        }
+        return credentials.substring(0, index);
+    }
+
+}
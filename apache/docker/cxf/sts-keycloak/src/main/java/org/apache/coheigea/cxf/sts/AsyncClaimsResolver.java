@@ -0,0 +1,78 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+import org.apache.cxf.rt.security.claims.ClaimCollection;
+import org.apache.cxf.sts.claims.ClaimsHandler;
+import org.apache.cxf.sts.claims.ClaimsParameters;
+import org.apache.cxf.sts.claims.ProcessedClaimCollection;
+
+/**
+ * Retrieves the claims of a batch of principals asynchronously, on a dedicated Executor, so that the
+ * claims lookups do not run on the threads that issue the tokens.
+ */
+public class AsyncClaimsResolver {
+
+    private final BatchClaimsHandler claimsHandler;
+    private final Executor executor;
+
+    public AsyncClaimsResolver(ClaimsHandler claimsHandler, Executor executor) {
+        this.claimsHandler = BatchClaimsHandler.adapt(claimsHandler);
+        this.executor = executor;
+    }
+
+    /**
+     * Retrieve the given claims for each of the given ClaimsParameters in a single batch.
+     */
+    public CompletableFuture<List<ProcessedClaimCollection>> resolve(
+            ClaimCollection claims, List<ClaimsParameters> parameters) {
+        return CompletableFuture.supplyAsync(() -> claimsHandler.retrieveClaimValues(claims, parameters), executor);
+    }
+
+    /**
+     * Retrieve the given claims for each of the given ClaimsParameters, split into batches of (at most)
+     * batchSize principals that are resolved concurrently. The results are in the same order as the
+     * parameters.
+     */
+    public CompletableFuture<List<ProcessedClaimCollection>> resolve(
+            ClaimCollection claims, List<ClaimsParameters> parameters, int batchSize) {
+        if (batchSize <= 0) {
+            throw new IllegalArgumentException("The batch size must be positive: " + batchSize);
+        }
+        List<CompletableFuture<List<ProcessedClaimCollection>>> batches = new ArrayList<>();
+        for (int i = 0; i < parameters.size(); i += batchSize) {
+            List<ClaimsParameters> batch = parameters.subList(i, Math.min(i + batchSize, parameters.size()));
+            batches.add(resolve(claims, batch));
+        }
+
+        return CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<ProcessedClaimCollection> results = new ArrayList<>(parameters.size());
+            for (CompletableFuture<List<ProcessedClaimCollection>> batch : batches) {
+                results.addAll(batch.join());
+            }
+            return results;
+        });
+    }
+
+}
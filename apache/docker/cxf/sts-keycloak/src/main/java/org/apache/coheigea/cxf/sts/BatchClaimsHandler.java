@@ -0,0 +1,69 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.cxf.rt.security.claims.ClaimCollection;
+import org.apache.cxf.sts.claims.ClaimsHandler;
+import org.apache.cxf.sts.claims.ClaimsParameters;
+import org.apache.cxf.sts.claims.ProcessedClaimCollection;
+
+/**
+ * A ClaimsHandler that can retrieve the claims of a number of principals in a single call. The default
+ * implementation calls retrieveClaimValues once per principal, so an existing ClaimsHandler can either
+ * implement this interface directly or be wrapped via adapt(ClaimsHandler).
+ */
+public interface BatchClaimsHandler extends ClaimsHandler {
+
+    /**
+     * Retrieve the given claims for each of the given ClaimsParameters (one per principal). The results
+     * are returned in the same order as the parameters.
+     */
+    default List<ProcessedClaimCollection> retrieveClaimValues(
+            ClaimCollection claims, List<ClaimsParameters> parameters) {
+        List<ProcessedClaimCollection> results = new ArrayList<>(parameters.size());
+        for (ClaimsParameters parameter : parameters) {
+            results.add(retrieveClaimValues(claims, parameter));
+        }
+        return results;
+    }
+
+    /**
+     * Return the given ClaimsHandler as a BatchClaimsHandler.
+     */
+    static BatchClaimsHandler adapt(ClaimsHandler handler) {
+        if (handler instanceof BatchClaimsHandler) {
+            return (BatchClaimsHandler)handler;
+        }
+        return new BatchClaimsHandler() {
+            public ProcessedClaimCollection retrieveClaimValues(
+                    ClaimCollection claims, ClaimsParameters parameters) {
+                return handler.retrieveClaimValues(claims, parameters);
+            }
+
+            public List<URI> getSupportedClaimTypes() {
+                return handler.getSupportedClaimTypes();
+            }
+        };
+    }
+
+}
@@ -0,0 +1,181 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * A bounded cache where each entry expires after a fixed time to live. Concurrent lookups of the same
+ * (missing) key are coalesced, so that the value is only loaded once. If loading fails, the exception
+ * is thrown to all of the waiting threads, and nothing is cached.
+ *
+ * When the cache grows beyond its maximum size, the expired entries and then the entries that expire
+ * first are evicted in a single pass, down to 90% of the maximum size, so that the cost of the eviction
+ * scan is shared by many inserts.
+ */
+public class ExpiringCache<K, V> {
+
+    private final Map<K, Entry<V>> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxSize;
+    private final int evictedSize;
+    private final long ttlMillis;
+
+    public ExpiringCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.evictedSize = Math.max(0, maxSize - Math.max(1, maxSize / 10));
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Get the value for the given key, loading it with the given function if it is not cached or has
+     * expired.
+     */
+    public V get(K key, Function<K, V> loader) {
+        long now = System.currentTimeMillis();
+        Entry<V> entry = entries.get(key);
+        if (entry == null || entry.isExpired(now)) {
+            entry = entries.compute(key, (k, existing) ->
+                existing != null && !existing.isExpired(now) ? existing : new Entry<>());
+        }
+
+        if (entry.loading.compareAndSet(false, true)) {
+            try {
+                V value = loader.apply(key);
+                entry.expiry = System.currentTimeMillis() + ttlMillis;
+                entry.value.complete(value);
+            } catch (Throwable t) {
+                // Complete the entry for any failure, otherwise the waiting threads would block forever
+                entries.remove(key, entry);
+                entry.value.completeExceptionally(t);
+                throw t;
+            }
+            evictIfNeeded();
+        }
+
+        try {
+            return entry.value.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException)ex.getCause();
+            } else if (ex.getCause() instanceof Error) {
+                throw (Error)ex.getCause();
+            }
+            throw ex;
+        }
+    }
+
+    /**
+     * Get the value for the given key if it is cached and has not expired, otherwise null.
+     */
+    public V getIfPresent(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || !entry.value.isDone() || entry.value.isCompletedExceptionally()) {
+            return null;
+        }
+        if (entry.isExpired(System.currentTimeMillis())) {
+            entries.remove(key, entry);
+            return null;
+        }
+        return entry.value.join();
+    }
+
+    public void put(K key, V value) {
+        Entry<V> entry = new Entry<>();
+        entry.loading.set(true);
+        entry.expiry = System.currentTimeMillis() + ttlMillis;
+        entry.value.complete(value);
+        entries.put(key, entry);
+        evictIfNeeded();
+    }
+
+    public void remove(K key) {
+        entries.remove(key);
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Evict entries if the cache is over its maximum size. Only one thread evicts at a time, the others
+     * carry on without waiting for it.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove the expired entries, and then the entries that expire first until the cache is back down to
+     * 90% of its maximum size. Entries that are still loading are never evicted.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.isExpired(now));
+
+        int excess = entries.size() - evictedSize;
+        if (excess <= 0) {
+            return;
+        }
+
+        // Keep the "excess" entries that expire first, with the one that expires last at the head
+        PriorityQueue<Map.Entry<K, Entry<V>>> soonest = new PriorityQueue<>(excess + 1,
+            Comparator.comparingLong((Map.Entry<K, Entry<V>> entry) -> entry.getValue().expiry).reversed());
+        for (Map.Entry<K, Entry<V>> entry : entries.entrySet()) {
+            if (entry.getValue().value.isDone()) {
+                soonest.offer(entry);
+                if (soonest.size() > excess) {
+                    soonest.poll();
+                }
+            }
+        }
+        for (Map.Entry<K, Entry<V>> entry : soonest) {
+            entries.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static final class Entry<V> {
+        private final CompletableFuture<V> value = new CompletableFuture<>();
+        private final AtomicBoolean loading = new AtomicBoolean();
+        private volatile long expiry = Long.MAX_VALUE;
+
+        boolean isExpired(long now) {
+            return value.isDone() && expiry < now;
+        }
+    }
+
+}
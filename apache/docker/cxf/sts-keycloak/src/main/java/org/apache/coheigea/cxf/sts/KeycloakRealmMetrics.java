@@ -0,0 +1,149 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Authentication metrics for a Keycloak realm: the number of cache hits (positive and negative) and
+ * misses, and the number and latency of the requests sent to Keycloak. Credentials that Keycloak rejected
+ * are counted separately from the requests that failed (e.g. connection errors or a 5xx). The metrics of
+ * all realms are available via getAll(), and a realm can be exported to JMX as a KeycloakRealmMetricsMBean.
+ */
+public class KeycloakRealmMetrics implements KeycloakRealmMetricsMBean {
+
+    private static final Map<String, KeycloakRealmMetrics> REALMS = new ConcurrentHashMap<>();
+
+    private final String realm;
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder negativeCacheHits = new LongAdder();
+    private final LongAdder cacheMisses = new LongAdder();
+    private final LongAdder upstreamRequests = new LongAdder();
+    private final LongAdder upstreamFailures = new LongAdder();
+    private final LongAdder rejectedCredentials = new LongAdder();
+    private final LongAdder upstreamNanos = new LongAdder();
+    private final LongAccumulator maxUpstreamNanos = new LongAccumulator(Math::max, 0L);
+
+    private KeycloakRealmMetrics(String realm) {
+        this.realm = realm;
+    }
+
+    public static KeycloakRealmMetrics forRealm(String realm) {
+        return REALMS.computeIfAbsent(realm, KeycloakRealmMetrics::new);
+    }
+
+    public static Map<String, KeycloakRealmMetrics> getAll() {
+        return Collections.unmodifiableMap(REALMS);
+    }
+
+    public void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    public void recordNegativeCacheHit() {
+        negativeCacheHits.increment();
+    }
+
+    public void recordCacheMiss() {
+        cacheMisses.increment();
+    }
+
+    /**
+     * Record a request to Keycloak. "failed" is only true if Keycloak could not be reached or answered
+     * with an error, a rejection of the credentials is recorded with recordRejectedCredentials().
+     */
+    public void recordUpstreamRequest(long nanos, boolean failed) {
+        upstreamRequests.increment();
+        upstreamNanos.add(nanos);
+        maxUpstreamNanos.accumulate(nanos);
+        if (failed) {
+            upstreamFailures.increment();
+        }
+    }
+
+    public void recordRejectedCredentials() {
+        rejectedCredentials.increment();
+    }
+
+    public String getRealm() {
+        return realm;
+    }
+
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    public long getNegativeCacheHits() {
+        return negativeCacheHits.sum();
+    }
+
+    public long getCacheMisses() {
+        return cacheMisses.sum();
+    }
+
+    /**
+     * The fraction of authentications (successful or not) that were answered from the cache
+     */
+    public double getHitRatio() {
+        long hits = getCacheHits() + getNegativeCacheHits();
+        long total = hits + getCacheMisses();
+        return total == 0 ? 0.0 : (double)hits / total;
+    }
+
+    public long getUpstreamRequests() {
+        return upstreamRequests.sum();
+    }
+
+    public long getUpstreamFailures() {
+        return upstreamFailures.sum();
+    }
+
+    public long getRejectedCredentials() {
+        return rejectedCredentials.sum();
+    }
+
+    public double getAverageUpstreamLatencyMillis() {
+        long requests = getUpstreamRequests();
+        return requests == 0 ? 0.0 : (double)upstreamNanos.sum() / requests / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    public double getMaxUpstreamLatencyMillis() {
+        return (double)maxUpstreamNanos.get() / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    @Override
+    public String toString() {
+        return "KeycloakRealmMetrics[realm=" + realm
+            + ", hits=" + getCacheHits()
+            + ", negativeHits=" + getNegativeCacheHits()
+            + ", misses=" + getCacheMisses()
+            + ", hitRatio=" + getHitRatio()
+            + ", upstreamRequests=" + getUpstreamRequests()
+            + ", upstreamFailures=" + getUpstreamFailures()
+            + ", rejectedCredentials=" + getRejectedCredentials()
+            + ", avgUpstreamLatencyMs=" + getAverageUpstreamLatencyMillis()
+            + ", maxUpstreamLatencyMs=" + getMaxUpstreamLatencyMillis() + "]";
+    }
+
+}
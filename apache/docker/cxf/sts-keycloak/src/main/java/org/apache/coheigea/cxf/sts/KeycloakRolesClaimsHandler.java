@@ -20,11 +20,20 @@ package org.apache.coheigea.cxf.sts;
 
 import java.net.URI;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.cxf.rt.security.claims.Claim;
 import org.apache.cxf.rt.security.claims.ClaimCollection;
-import org.apache.cxf.sts.claims.ClaimsHandler;
 import org.apache.cxf.sts.claims.ClaimsParameters;
 import org.apache.cxf.sts.claims.ProcessedClaim;
 import org.apache.cxf.sts.claims.ProcessedClaimCollection;
@@ -32,13 +41,20 @@ import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
 import org.keycloak.admin.client.resource.UserResource;
+import org.keycloak.admin.client.resource.UsersResource;
 import org.keycloak.representations.idm.RoleRepresentation;
 import org.keycloak.representations.idm.UserRepresentation;
 
 /**
- * A ClaimsHandler implementation that works with Roles obtained from Keycloak.
+ * A ClaimsHandler implementation that works with Roles obtained from Keycloak. A single admin client
+ * (which refreshes its own access token) is shared by all requests, and the roles of each principal
+ * are cached for "cacheTimeToLive" seconds. Set "cacheTimeToLive" to 0 to disable the cache.
+ *
+ * A batch of principals is resolved natively: duplicate principals are only looked up once, cached
+ * roles are used directly, and the remaining principals are looked up concurrently (at most
+ * "connectionPoolSize" at a time) over the shared admin client.
  */
-public class KeycloakRolesClaimsHandler implements ClaimsHandler {
+public class KeycloakRolesClaimsHandler implements BatchClaimsHandler {
 
     public static final URI ROLE =
             URI.create("http://schemas.xmlsoap.org/ws/2005/05/identity/claims/role");
@@ -47,46 +63,208 @@ public class KeycloakRolesClaimsHandler implements ClaimsHandler {
     private String realm;
     private String adminUser;
     private String adminPassword;
+    private int connectionPoolSize = 10;
+    private long cacheTimeToLive = 60L;
+    private int cacheMaxSize = 10000;
+
+    private volatile Keycloak keycloak;
+    private volatile ExpiringCache<String, List<String>> rolesCache;
+    private volatile ExecutorService batchExecutor;
 
     public ProcessedClaimCollection retrieveClaimValues(
             ClaimCollection claims, ClaimsParameters parameters) {
 
         if (claims != null && claims.size() > 0) {
-            ProcessedClaimCollection claimCollection = new ProcessedClaimCollection();
-            for (Claim requestClaim : claims) {
-                ProcessedClaim claim = new ProcessedClaim();
-                claim.setClaimType(requestClaim.getClaimType());
-                if (ROLE.equals(requestClaim.getClaimType())) {
+            List<String> roles = null;
+            if (isRoleRequested(claims)) {
+                roles = getRoles(parameters.getPrincipal().getName());
+            }
+            return createClaimCollection(claims, roles);
+        }
+        return null;
+    }
+
+    @Override
+    public List<ProcessedClaimCollection> retrieveClaimValues(
+            ClaimCollection claims, List<ClaimsParameters> parameters) {
+
+        List<ProcessedClaimCollection> results = new ArrayList<>(parameters.size());
+        if (claims == null || claims.size() == 0) {
+            for (int i = 0; i < parameters.size(); i++) {
+                results.add(null);
+            }
+            return results;
+        }
+
+        Map<String, List<String>> roles = Collections.emptyMap();
+        if (isRoleRequested(claims)) {
+            Set<String> principals = new LinkedHashSet<>();
+            for (ClaimsParameters parameter : parameters) {
+                principals.add(parameter.getPrincipal().getName());
+            }
+            roles = getRoles(principals);
+        }
+
+        for (ClaimsParameters parameter : parameters) {
+            results.add(createClaimCollection(claims, roles.get(parameter.getPrincipal().getName())));
+        }
+        return results;
+    }
+
+    private static boolean isRoleRequested(ClaimCollection claims) {
+        for (Claim requestClaim : claims) {
+            if (ROLE.equals(requestClaim.getClaimType())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ProcessedClaimCollection createClaimCollection(ClaimCollection claims, List<String> roles) {
+        ProcessedClaimCollection claimCollection = new ProcessedClaimCollection();
+        for (Claim requestClaim : claims) {
+            ProcessedClaim claim = new ProcessedClaim();
+            claim.setClaimType(requestClaim.getClaimType());
+            if (ROLE.equals(requestClaim.getClaimType())) {
+
+                claim.setIssuer("keycloak");
+
+                // Add the effective roles to the claim
+                for (String role : roles) {
+                    claim.addValue(role);
+                }
+            }
+            claimCollection.add(claim);
+        }
+        return claimCollection;
+    }
+
+    private Map<String, List<String>> getRoles(Set<String> principals) {
+        Map<String, List<String>> roles = new HashMap<>();
+        List<String> missing = new ArrayList<>();
+        for (String principal : principals) {
+            List<String> cachedRoles = cacheTimeToLive > 0 ? getRolesCache().getIfPresent(principal) : null;
+            if (cachedRoles != null) {
+                roles.put(principal, cachedRoles);
+            } else {
+                missing.add(principal);
+            }
+        }
+
+        if (missing.size() == 1) {
+            roles.put(missing.get(0), getRoles(missing.get(0)));
+        } else if (!missing.isEmpty()) {
+            ExecutorService executor = getBatchExecutor();
+            Map<String, CompletableFuture<List<String>>> lookups = new HashMap<>();
+            for (String principal : missing) {
+                lookups.put(principal, CompletableFuture.supplyAsync(() -> getRoles(principal), executor));
+            }
+            try {
+                for (Map.Entry<String, CompletableFuture<List<String>>> lookup : lookups.entrySet()) {
+                    roles.put(lookup.getKey(), lookup.getValue().join());
+                }
+            } catch (CompletionException ex) {
+                if (ex.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException)ex.getCause();
+                }
+                throw ex;
+            }
+        }
+        return roles;
+    }
 
-                    Keycloak keyCloak = KeycloakBuilder.builder()
+    private List<String> getRoles(String principal) {
+        if (cacheTimeToLive <= 0) {
+            return retrieveRoles(principal);
+        }
+        return getRolesCache().get(principal, this::retrieveRoles);
+    }
+
+    private List<String> retrieveRoles(String principal) {
+        UsersResource usersResource = getKeycloak().realm(realm).users();
+        List<String> roles = new ArrayList<>();
+
+        // Search for the user using the admin credentials
+        List<UserRepresentation> users = usersResource.search(principal);
+        if (users != null) {
+            for (UserRepresentation user : users) {
+                UserResource userResource = usersResource.get(user.getId());
+                for (RoleRepresentation roleRep : userResource.roles().realmLevel().listEffective()) {
+                    roles.add(roleRep.getName());
+                }
+            }
+        }
+        return Collections.unmodifiableList(roles);
+    }
+
+    private Keycloak getKeycloak() {
+        Keycloak keyCloak = keycloak;
+        if (keyCloak == null) {
+            synchronized (this) {
+                keyCloak = keycloak;
+                if (keyCloak == null) {
+                    keyCloak = KeycloakBuilder.builder()
                         .serverUrl(address)
                         .realm(realm)
                         .username(adminUser)
                         .password(adminPassword)
                         .clientId("admin-cli")
-                        .resteasyClient(new ResteasyClientBuilder().connectionPoolSize(10).build())
+                        .resteasyClient(new ResteasyClientBuilder().connectionPoolSize(connectionPoolSize).build())
                         .build();
+                    keycloak = keyCloak;
+                }
+            }
+        }
+        return keyCloak;
+    }
 
-                    claim.setIssuer("keycloak");
-
-                    // Search for the user using the admin credentials
-                    List<UserRepresentation> users =
-                        keyCloak.realm(realm).users().search(parameters.getPrincipal().getName());
-                    if (users != null) {
-                        for (UserRepresentation user : users) {
-                            UserResource userResource = keyCloak.realm(realm).users().get(user.getId());
-                            // Add the effective roles to the claim
-                            for (RoleRepresentation roleRep : userResource.roles().realmLevel().listEffective()) {
-                                claim.addValue(roleRep.getName());
-                            }
-                        }
-                    }
+    private ExpiringCache<String, List<String>> getRolesCache() {
+        ExpiringCache<String, List<String>> cache = rolesCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = rolesCache;
+                if (cache == null) {
+                    cache = new ExpiringCache<>(cacheMaxSize, TimeUnit.SECONDS.toMillis(cacheTimeToLive));
+                    rolesCache = cache;
                 }
-                claimCollection.add(claim);
             }
-            return claimCollection;
         }
-        return null;
+        return cache;
+    }
+
+    private ExecutorService getBatchExecutor() {
+        ExecutorService executor = batchExecutor;
+        if (executor == null) {
+            synchronized (this) {
+                executor = batchExecutor;
+                if (executor == null) {
+                    executor = Executors.newFixedThreadPool(connectionPoolSize, r -> {
+                        Thread thread = new Thread(r, "keycloak-roles-batch");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                    batchExecutor = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Close the shared admin client and batch executor, and clear the roles cache.
+     */
+    public synchronized void close() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdown();
+            batchExecutor = null;
+        }
+        if (keycloak != null) {
+            keycloak.close();
+            keycloak = null;
+        }
+        if (rolesCache != null) {
+            rolesCache.clear();
+        }
     }
 
     public List<URI> getSupportedClaimTypes() {
@@ -127,4 +305,31 @@ public class KeycloakRolesClaimsHandler implements ClaimsHandler {
         this.adminPassword = adminPassword;
     }
 
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Set how long (in seconds) the roles of a principal are cached for
+     */
+    public void setCacheTimeToLive(long cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
 }
@@ -19,7 +19,15 @@
 
 package org.apache.coheigea.cxf.sts;
 
-import javax.ws.rs.ForbiddenException;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+import javax.ws.rs.BadRequestException;
+import javax.ws.rs.NotAuthorizedException;
 
 import org.apache.wss4j.common.ext.WSSecurityException;
 import org.apache.wss4j.dom.WSConstants;
@@ -27,6 +35,7 @@ import org.apache.wss4j.dom.handler.RequestData;
 import org.apache.wss4j.dom.message.token.UsernameToken;
 import org.apache.wss4j.dom.validate.Credential;
 import org.apache.wss4j.dom.validate.Validator;
+import org.jboss.resteasy.client.jaxrs.ResteasyClient;
 import org.jboss.resteasy.client.jaxrs.ResteasyClientBuilder;
 import org.keycloak.admin.client.Keycloak;
 import org.keycloak.admin.client.KeycloakBuilder;
@@ -34,14 +43,36 @@ import org.keycloak.admin.client.KeycloakBuilder;
 /**
  * This is a custom Validator that authenticates to a Keycloak IDM and checks to see whether the
  * supplied username and password are in the system.
+ *
+ * All requests to Keycloak share a single HTTP client. Successful authentications are cached for
+ * "cacheTimeToLive" seconds, and failed authentications (a 401 from Keycloak, but not other refusals or
+ * connection errors) for "negativeCacheTimeToLive" seconds, so that repeated attempts with the same
+ * wrong password do not count towards a Keycloak lockout. The cache never stores a password, only a
+ * salted PBKDF2 hash of it. Set a time to live to 0 to disable the corresponding cache. Metrics are
+ * recorded per realm, see KeycloakRealmMetrics, and are exported via JMX in cxf-service.xml.
  */
 public class KeycloakUTValidator implements Validator {
 
     private static org.apache.commons.logging.Log log =
             org.apache.commons.logging.LogFactory.getLog(KeycloakUTValidator.class);
 
+    private static final String HASH_ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_LENGTH = 16;
+    private static final int HASH_LENGTH = 256;
+
+    private final SecureRandom random = new SecureRandom();
+
     private String address;
     private String realm;
+    private int connectionPoolSize = 10;
+    private long cacheTimeToLive = 30L;
+    private long negativeCacheTimeToLive = 10L;
+    private int cacheMaxSize = 10000;
+    private int hashIterations = 10000;
+
+    private volatile ResteasyClient resteasyClient;
+    private volatile ExpiringCache<String, CachedCredential> successCache;
+    private volatile ExpiringCache<String, CachedCredential> failureCache;
 
     public Credential validate(Credential credential, RequestData data) throws WSSecurityException {
         if (credential == null || credential.getUsernametoken() == null) {
@@ -68,28 +99,147 @@ public class KeycloakUTValidator implements Validator {
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         }
 
-        // Send it off to Keycloak for validation
+        String username = usernameToken.getName();
+        String password = usernameToken.getPassword();
+        KeycloakRealmMetrics metrics = KeycloakRealmMetrics.forRealm(realm);
+
+        // Check the cached results first
+        CachedCredential cached = cacheTimeToLive > 0 ? getSuccessCache().getIfPresent(username) : null;
+        if (cached != null && cached.matches(password, hashIterations)) {
+            metrics.recordCacheHit();
+            return credential;
+        }
+        cached = negativeCacheTimeToLive > 0 ? getFailureCache().getIfPresent(username) : null;
+        if (cached != null && cached.matches(password, hashIterations)) {
+            metrics.recordNegativeCacheHit();
+            if (log.isDebugEnabled()) {
+                log.debug("Authentication failed - cached failure for user " + username);
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        }
+        metrics.recordCacheMiss();
+
+        // Send it off to Keycloak for validation. Obtaining an access token is enough to authenticate
+        // the user, who might not have the permissions to access the admin API
         Keycloak keyCloak = KeycloakBuilder.builder()
             .serverUrl(address)
             .realm(realm)
-            .username(usernameToken.getName())
-            .password(usernameToken.getPassword())
+            .username(username)
+            .password(password)
             .clientId("admin-cli")
-            .resteasyClient(new ResteasyClientBuilder().connectionPoolSize(10).build())
+            .resteasyClient(getResteasyClient())
             .build();
 
+        long start = System.nanoTime();
+        boolean failed = false;
         try {
-            keyCloak.realm(realm).users().search(usernameToken.getName());
-        } catch (ForbiddenException ex) {
-            // We allow 403 here as we only care about authentication. 403 means authentication succeeds but
-            // the user might not have the permissions to access the admin-cli
+            keyCloak.tokenManager().getAccessToken();
+        } catch (NotAuthorizedException ex) {
+            // The credentials were rejected. Only a 401 means that the password is wrong, so only that
+            // is cached
+            metrics.recordRejectedCredentials();
+            if (negativeCacheTimeToLive > 0) {
+                getFailureCache().put(username, hash(password));
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        } catch (BadRequestException ex) {
+            // The request was refused for some other reason (e.g. the account is not fully set up)
+            metrics.recordRejectedCredentials();
+            if (log.isDebugEnabled()) {
+                log.debug("Authentication failed - Keycloak refused the request: " + ex.getMessage());
+            }
+            throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
         } catch (RuntimeException ex) {
+            failed = true;
+            if (log.isDebugEnabled()) {
+                log.debug("Authentication failed - error sending the request to Keycloak", ex);
+            }
             throw new WSSecurityException(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION);
+        } finally {
+            metrics.recordUpstreamRequest(System.nanoTime() - start, failed);
+        }
+
+        if (cacheTimeToLive > 0) {
+            getSuccessCache().put(username, hash(password));
+        }
+        if (negativeCacheTimeToLive > 0) {
+            getFailureCache().remove(username);
         }
 
         return credential;
     }
 
+    private CachedCredential hash(String password) {
+        byte[] salt = new byte[SALT_LENGTH];
+        random.nextBytes(salt);
+        return new CachedCredential(salt, CachedCredential.hash(password, salt, hashIterations));
+    }
+
+    private ResteasyClient getResteasyClient() {
+        ResteasyClient client = resteasyClient;
+        if (client == null) {
+            synchronized (this) {
+                client = resteasyClient;
+                if (client == null) {
+                    client = new ResteasyClientBuilder().connectionPoolSize(connectionPoolSize).build();
+                    resteasyClient = client;
+                }
+            }
+        }
+        return client;
+    }
+
+    private ExpiringCache<String, CachedCredential> getSuccessCache() {
+        ExpiringCache<String, CachedCredential> cache = successCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = successCache;
+                if (cache == null) {
+                    cache = new ExpiringCache<>(cacheMaxSize, TimeUnit.SECONDS.toMillis(cacheTimeToLive));
+                    successCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    private ExpiringCache<String, CachedCredential> getFailureCache() {
+        ExpiringCache<String, CachedCredential> cache = failureCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = failureCache;
+                if (cache == null) {
+                    cache = new ExpiringCache<>(cacheMaxSize, TimeUnit.SECONDS.toMillis(negativeCacheTimeToLive));
+                    failureCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Close the shared HTTP client and clear the caches.
+     */
+    public synchronized void close() {
+        if (resteasyClient != null) {
+            resteasyClient.close();
+            resteasyClient = null;
+        }
+        if (successCache != null) {
+            successCache.clear();
+        }
+        if (failureCache != null) {
+            failureCache.clear();
+        }
+    }
+
+    /**
+     * The metrics of the realm of this validator, e.g. to export them via JMX
+     */
+    public KeycloakRealmMetrics getMetrics() {
+        return KeycloakRealmMetrics.forRealm(realm);
+    }
+
     public void setAddress(String newAddress) {
         address = newAddress;
     }
@@ -106,4 +256,78 @@ public class KeycloakUTValidator implements Validator {
         this.realm = realm;
     }
 
+    public int getConnectionPoolSize() {
+        return connectionPoolSize;
+    }
+
+    public void setConnectionPoolSize(int connectionPoolSize) {
+        this.connectionPoolSize = connectionPoolSize;
+    }
+
+    public long getCacheTimeToLive() {
+        return cacheTimeToLive;
+    }
+
+    /**
+     * Set how long (in seconds) a successful authentication is cached for
+     */
+    public void setCacheTimeToLive(long cacheTimeToLive) {
+        this.cacheTimeToLive = cacheTimeToLive;
+    }
+
+    public long getNegativeCacheTimeToLive() {
+        return negativeCacheTimeToLive;
+    }
+
+    /**
+     * Set how long (in seconds) a failed authentication is cached for
+     */
+    public void setNegativeCacheTimeToLive(long negativeCacheTimeToLive) {
+        this.negativeCacheTimeToLive = negativeCacheTimeToLive;
+    }
+
+    public int getCacheMaxSize() {
+        return cacheMaxSize;
+    }
+
+    public void setCacheMaxSize(int cacheMaxSize) {
+        this.cacheMaxSize = cacheMaxSize;
+    }
+
+    public int getHashIterations() {
+        return hashIterations;
+    }
+
+    public void setHashIterations(int hashIterations) {
+        this.hashIterations = hashIterations;
+    }
+
+    /**
+     * A salted hash of a password that was (or was not) accepted by Keycloak
+     */
+    private static final class CachedCredential {
+        private final byte[] salt;
+        private final byte[] hash;
+
+        CachedCredential(byte[] salt, byte[] hash) {
+            this.salt = salt;
+            this.hash = hash;
+        }
+
+        boolean matches(String password, int iterations) {
+            return MessageDigest.isEqual(hash, hash(password, salt, iterations));
+        }
+
+        static byte[] hash(String password, byte[] salt, int iterations) {
+            PBEKeySpec keySpec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_LENGTH);
+            try {
+                return SecretKeyFactory.getInstance(HASH_ALGORITHM).generateSecret(keySpec).getEncoded();
+            } catch (GeneralSecurityException ex) {
+                throw new IllegalStateException(ex);
+            } finally {
+                keySpec.clearPassword();
+            }
+        }
+    }
+
 }
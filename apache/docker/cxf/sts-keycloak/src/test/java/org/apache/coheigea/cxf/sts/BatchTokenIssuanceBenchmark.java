@@ -0,0 +1,240 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.net.URI;
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.apache.cxf.rt.security.claims.Claim;
+import org.apache.cxf.rt.security.claims.ClaimCollection;
+import org.apache.cxf.sts.STSConstants;
+import org.apache.cxf.sts.StaticSTSProperties;
+import org.apache.cxf.sts.claims.ClaimsAttributeStatementProvider;
+import org.apache.cxf.sts.claims.ClaimsHandler;
+import org.apache.cxf.sts.claims.ClaimsManager;
+import org.apache.cxf.sts.claims.ClaimsParameters;
+import org.apache.cxf.sts.claims.ProcessedClaimCollection;
+import org.apache.cxf.sts.request.KeyRequirements;
+import org.apache.cxf.sts.request.TokenRequirements;
+import org.apache.cxf.sts.service.EncryptionProperties;
+import org.apache.cxf.sts.token.provider.AttributeStatementProvider;
+import org.apache.cxf.sts.token.provider.SAMLTokenProvider;
+import org.apache.cxf.sts.token.provider.TokenProvider;
+import org.apache.cxf.sts.token.provider.TokenProviderParameters;
+import org.apache.cxf.sts.token.provider.TokenProviderResponse;
+import org.apache.cxf.sts.token.provider.jwt.JWTTokenProvider;
+import org.apache.wss4j.common.WSS4JConstants;
+
+/**
+ * A throughput benchmark for issuing a bulk of SAML and JWT tokens (10000 by default, each for a
+ * different principal) with the roles claim obtained from a StubKeycloakServer. It compares resolving
+ * the claims synchronously while issuing each token with resolving them up front in batches, via
+ * AsyncClaimsResolver on a dedicated executor, and issuing the tokens of each batch as it completes.
+ * The roles cache is disabled, so that every principal is looked up in Keycloak. Run the main method,
+ * optionally passing the number of tokens, the number of issuing threads, the batch size and the stub
+ * latency in milliseconds.
+ */
+public class BatchTokenIssuanceBenchmark {
+
+    public static void main(String[] args) throws Exception {
+        int tokens = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+        int threads = args.length > 1 ? Integer.parseInt(args[1]) : 16;
+        int batchSize = args.length > 2 ? Integer.parseInt(args[2]) : 100;
+        long latency = args.length > 3 ? Long.parseLong(args[3]) : 2L;
+
+        StaticSTSProperties stsProperties = new StaticSTSProperties();
+        stsProperties.setSignaturePropertiesFile("stsKeystore.properties");
+        stsProperties.setSignatureUsername("mystskey");
+        stsProperties.setCallbackHandler(new CommonCallbackHandler());
+        stsProperties.setIssuer("CXF_STS");
+        stsProperties.configureProperties();
+
+        SAMLTokenProvider samlTokenProvider = new SAMLTokenProvider();
+        List<AttributeStatementProvider> statementProviders = new ArrayList<>();
+        statementProviders.add(new ClaimsAttributeStatementProvider());
+        samlTokenProvider.setAttributeStatementProviders(statementProviders);
+
+        JWTTokenProvider jwtTokenProvider = new JWTTokenProvider();
+
+        StubKeycloakServer server = new StubKeycloakServer(latency);
+        server.start();
+        try {
+            System.out.println("Token type, Scenario, Tokens, Threads, Tokens/s, Admin requests");
+            for (int i = 0; i < 2; i++) {
+                // The first iteration is a warm up
+                boolean report = i == 1;
+                run("SAML", WSS4JConstants.WSS_SAML2_TOKEN_TYPE, samlTokenProvider, stsProperties,
+                    server, tokens, threads, 0, report);
+                run("SAML", WSS4JConstants.WSS_SAML2_TOKEN_TYPE, samlTokenProvider, stsProperties,
+                    server, tokens, threads, batchSize, report);
+                run("JWT", JWTTokenProvider.JWT_TOKEN_TYPE, jwtTokenProvider, stsProperties,
+                    server, tokens, threads, 0, report);
+                run("JWT", JWTTokenProvider.JWT_TOKEN_TYPE, jwtTokenProvider, stsProperties,
+                    server, tokens, threads, batchSize, report);
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String name, String tokenType, TokenProvider tokenProvider,
+                            StaticSTSProperties stsProperties, StubKeycloakServer server, int tokens,
+                            int threads, int batchSize, boolean report) throws Exception {
+        KeycloakRolesClaimsHandler handler = new KeycloakRolesClaimsHandler();
+        handler.setAddress(server.getAddress());
+        handler.setRealm("master");
+        handler.setAdminUser("admin");
+        handler.setAdminPassword("password");
+        handler.setCacheTimeToLive(0L);
+
+        ClaimCollection claims = new ClaimCollection();
+        Claim claim = new Claim();
+        claim.setClaimType(KeycloakRolesClaimsHandler.ROLE);
+        claims.add(claim);
+
+        List<ClaimsParameters> principals = new ArrayList<>(tokens);
+        for (int i = 0; i < tokens; i++) {
+            String principal = "user" + i;
+            ClaimsParameters parameters = new ClaimsParameters();
+            Principal userPrincipal = () -> principal;
+            parameters.setPrincipal(userPrincipal);
+            principals.add(parameters);
+        }
+
+        // Log the admin client in before measuring
+        handler.retrieveClaimValues(claims, principals.get(0));
+        server.resetCounters();
+
+        ExecutorService issuingExecutor = Executors.newFixedThreadPool(threads);
+        ExecutorService claimsExecutor = Executors.newFixedThreadPool(threads);
+        long start = System.nanoTime();
+        try {
+            if (batchSize <= 0) {
+                // Resolve the claims synchronously while issuing each token
+                ClaimsManager claimsManager = createClaimsManager(handler);
+                List<Future<TokenProviderResponse>> results = new ArrayList<>(tokens);
+                for (ClaimsParameters parameters : principals) {
+                    results.add(issuingExecutor.submit(() -> issue(tokenProvider, tokenType, stsProperties,
+                        claimsManager, claims, parameters.getPrincipal())));
+                }
+                for (Future<TokenProviderResponse> result : results) {
+                    checkResponse(result.get());
+                }
+            } else {
+                // Resolve the claims in batches on a dedicated executor, and issue the tokens of each
+                // batch once its claims are available
+                AsyncClaimsResolver resolver = new AsyncClaimsResolver(handler, claimsExecutor);
+                List<CompletableFuture<Void>> batches = new ArrayList<>();
+                for (int i = 0; i < tokens; i += batchSize) {
+                    List<ClaimsParameters> batch = principals.subList(i, Math.min(i + batchSize, tokens));
+                    batches.add(resolver.resolve(claims, batch).thenAcceptAsync(resolved -> {
+                        Map<String, ProcessedClaimCollection> resolvedClaims = new HashMap<>();
+                        for (int j = 0; j < batch.size(); j++) {
+                            resolvedClaims.put(batch.get(j).getPrincipal().getName(), resolved.get(j));
+                        }
+                        ClaimsManager claimsManager =
+                            createClaimsManager(new ResolvedClaimsHandler(resolvedClaims));
+                        for (ClaimsParameters parameters : batch) {
+                            checkResponse(issue(tokenProvider, tokenType, stsProperties, claimsManager,
+                                claims, parameters.getPrincipal()));
+                        }
+                    }, issuingExecutor));
+                }
+                CompletableFuture.allOf(batches.toArray(new CompletableFuture<?>[0])).join();
+            }
+        } finally {
+            issuingExecutor.shutdown();
+            claimsExecutor.shutdown();
+            handler.close();
+        }
+        long elapsed = System.nanoTime() - start;
+
+        if (report) {
+            String scenario = batchSize <= 0 ? "per-token claims" : "batch claims (" + batchSize + ")";
+            System.out.println(name + ", " + scenario + ", " + tokens + ", " + threads + ", "
+                + (tokens * 1000000000L / elapsed) + ", " + server.getAdminRequests());
+        }
+    }
+
+    private static ClaimsManager createClaimsManager(ClaimsHandler handler) {
+        ClaimsManager claimsManager = new ClaimsManager();
+        claimsManager.setClaimHandlers(Collections.singletonList(handler));
+        return claimsManager;
+    }
+
+    private static TokenProviderResponse issue(TokenProvider tokenProvider, String tokenType,
+                                               StaticSTSProperties stsProperties, ClaimsManager claimsManager,
+                                               ClaimCollection claims, Principal principal) {
+        TokenRequirements tokenRequirements = new TokenRequirements();
+        tokenRequirements.setTokenType(tokenType);
+        tokenRequirements.setPrimaryClaims(claims);
+
+        KeyRequirements keyRequirements = new KeyRequirements();
+        keyRequirements.setKeyType(STSConstants.BEARER_KEY_KEYTYPE);
+
+        TokenProviderParameters parameters = new TokenProviderParameters();
+        parameters.setTokenRequirements(tokenRequirements);
+        parameters.setKeyRequirements(keyRequirements);
+        parameters.setPrincipal(principal);
+        parameters.setMessageContext(new HashMap<String, Object>());
+        parameters.setStsProperties(stsProperties);
+        parameters.setEncryptionProperties(new EncryptionProperties());
+        parameters.setClaimsManager(claimsManager);
+
+        return tokenProvider.createToken(parameters);
+    }
+
+    private static void checkResponse(TokenProviderResponse response) {
+        if (response == null || response.getToken() == null) {
+            throw new IllegalStateException("No token was issued");
+        }
+    }
+
+    /**
+     * A ClaimsHandler that returns the claims that were already resolved for each principal.
+     */
+    private static final class ResolvedClaimsHandler implements ClaimsHandler {
+
+        private final Map<String, ProcessedClaimCollection> resolvedClaims;
+
+        ResolvedClaimsHandler(Map<String, ProcessedClaimCollection> resolvedClaims) {
+            this.resolvedClaims = resolvedClaims;
+        }
+
+        public ProcessedClaimCollection retrieveClaimValues(
+                ClaimCollection claims, ClaimsParameters parameters) {
+            return resolvedClaims.get(parameters.getPrincipal().getName());
+        }
+
+        public List<URI> getSupportedClaimTypes() {
+            return Collections.singletonList(KeycloakRolesClaimsHandler.ROLE);
+        }
+
+    }
+
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Some unit tests for the ExpiringCache
+ */
+public class ExpiringCacheTest {
+
+    private static final int THREADS = 8;
+
+    @org.junit.Test
+    public void testCachedValue() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 60000L);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertEquals("value1", cache.get("key", k -> "value" + loads.incrementAndGet()));
+        assertEquals("value1", cache.get("key", k -> "value" + loads.incrementAndGet()));
+        assertEquals(1, loads.get());
+        assertEquals("value1", cache.getIfPresent("key"));
+        assertNull(cache.getIfPresent("other-key"));
+    }
+
+    @org.junit.Test
+    public void testExpiry() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 50L);
+        AtomicInteger loads = new AtomicInteger();
+
+        cache.get("key", k -> "value" + loads.incrementAndGet());
+        cache.put("other-key", "other-value");
+        assertEquals("value1", cache.getIfPresent("key"));
+
+        Thread.sleep(100L);
+        assertNull(cache.getIfPresent("other-key"));
+        assertEquals("value2", cache.get("key", k -> "value" + loads.incrementAndGet()));
+        assertEquals(2, loads.get());
+    }
+
+    @org.junit.Test
+    public void testConcurrentLoadsAreCoalesced() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 60000L);
+        AtomicInteger loads = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+        try {
+            List<Future<String>> results = new ArrayList<>();
+            for (int i = 0; i < THREADS; i++) {
+                results.add(executor.submit(() -> cache.get("key", k -> {
+                    loads.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return "value";
+                })));
+            }
+
+            // Hold the first load until the other threads have had the chance to wait for it
+            assertTrue(started.await(10L, TimeUnit.SECONDS));
+            Thread.sleep(100L);
+            release.countDown();
+
+            for (Future<String> result : results) {
+                assertEquals("value", result.get(10L, TimeUnit.SECONDS));
+            }
+            assertEquals(1, loads.get());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @org.junit.Test
+    public void testFailedLoad() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 60000L);
+        IllegalStateException failure = new IllegalStateException("load failed");
+
+        try {
+            cache.get("key", k -> {
+                throw failure;
+            });
+            fail("Failure expected on a failed load");
+        } catch (IllegalStateException ex) {
+            assertSame(failure, ex);
+        }
+
+        // Nothing is cached for a failed load
+        assertNull(cache.getIfPresent("key"));
+        assertEquals(0, cache.size());
+        assertEquals("value", cache.get("key", k -> "value"));
+    }
+
+    @org.junit.Test
+    public void testFailedLoadWithError() throws Exception {
+        ExpiringCache<String, String> cache = new ExpiringCache<>(100, 60000L);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<String> loader = executor.submit(() -> cache.get("key", k -> {
+                started.countDown();
+                await(release);
+                throw new AssertionError("load failed");
+            }));
+            assertTrue(started.await(10L, TimeUnit.SECONDS));
+            Future<String> waiter = executor.submit(() -> cache.get("key", k -> "value"));
+            Thread.sleep(100L);
+            release.countDown();
+
+            // Both the loading thread and a thread that waits on the load see the Error
+            assertErrorThrown(loader);
+            assertErrorThrown(waiter);
+            assertEquals(0, cache.size());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @org.junit.Test
+    public void testSizeBound() throws Exception {
+        ExpiringCache<Integer, String> cache = new ExpiringCache<>(100, 60000L);
+
+        for (int i = 0; i < 1000; i++) {
+            cache.put(i, "value" + i);
+            assertTrue(cache.size() <= 100);
+        }
+        for (int i = 1000; i < 2000; i++) {
+            cache.get(i, k -> "value" + k);
+            assertTrue(cache.size() <= 100);
+        }
+
+        // Evicting down to 90% of the maximum size means that most inserts do not evict at all
+        assertTrue(cache.size() >= 90);
+    }
+
+    private static void assertErrorThrown(Future<String> result) throws Exception {
+        try {
+            result.get(10L, TimeUnit.SECONDS);
+            fail("Failure expected on a failed load");
+        } catch (ExecutionException ex) {
+            assertTrue(ex.getCause() instanceof AssertionError);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10L, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+}
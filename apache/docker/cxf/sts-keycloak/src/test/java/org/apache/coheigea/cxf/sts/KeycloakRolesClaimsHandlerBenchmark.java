@@ -0,0 +1,132 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.security.Principal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.apache.cxf.rt.security.claims.Claim;
+import org.apache.cxf.rt.security.claims.ClaimCollection;
+import org.apache.cxf.sts.claims.ClaimsParameters;
+import org.apache.cxf.sts.claims.ProcessedClaimCollection;
+
+/**
+ * A simple throughput benchmark of KeycloakRolesClaimsHandler against a StubKeycloakServer. It compares
+ * the previous behaviour (a new admin client, and so a new admin login, for every token), a shared admin
+ * client without a cache, and a shared admin client with the roles cache. Run the main method, optionally
+ * passing the number of threads, the duration of each run in seconds and the stub latency in milliseconds.
+ */
+public class KeycloakRolesClaimsHandlerBenchmark {
+
+    private static final int PRINCIPALS = 100;
+
+    public static void main(String[] args) throws Exception {
+        int threads = args.length > 0 ? Integer.parseInt(args[0]) : 16;
+        int seconds = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        long latency = args.length > 2 ? Long.parseLong(args[2]) : 2L;
+
+        StubKeycloakServer server = new StubKeycloakServer(latency);
+        server.start();
+        try {
+            System.out.println("Scenario, Threads, Tokens/s, Token requests, Admin requests");
+            run("per-request client", server, threads, seconds, 0L, true);
+            run("shared client", server, threads, seconds, 0L, false);
+            run("shared client + cache", server, threads, seconds, 60L, false);
+        } finally {
+            server.stop();
+        }
+    }
+
+    private static void run(String scenario, StubKeycloakServer server, int threads, int seconds,
+                            long cacheTimeToLive, boolean closeAfterRequest) throws Exception {
+        KeycloakRolesClaimsHandler handler = new KeycloakRolesClaimsHandler();
+        handler.setAddress(server.getAddress());
+        handler.setRealm("master");
+        handler.setAdminUser("admin");
+        handler.setAdminPassword("password");
+        handler.setCacheTimeToLive(cacheTimeToLive);
+
+        ClaimCollection claims = new ClaimCollection();
+        Claim claim = new Claim();
+        claim.setClaimType(KeycloakRolesClaimsHandler.ROLE);
+        claims.add(claim);
+
+        // Warm up
+        issue(handler, claims, "user0");
+        server.resetCounters();
+
+        AtomicBoolean running = new AtomicBoolean(true);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        List<Future<Long>> results = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+            results.add(executor.submit(() -> {
+                long count = 0;
+                while (running.get()) {
+                    String principal = "user" + ((offset + count) % PRINCIPALS);
+                    if (closeAfterRequest) {
+                        // A new client per request, as the handler used to create
+                        KeycloakRolesClaimsHandler requestHandler = new KeycloakRolesClaimsHandler();
+                        requestHandler.setAddress(handler.getAddress());
+                        requestHandler.setRealm(handler.getRealm());
+                        requestHandler.setAdminUser(handler.getAdminUser());
+                        requestHandler.setAdminPassword(handler.getAdminPassword());
+                        requestHandler.setCacheTimeToLive(0L);
+                        issue(requestHandler, claims, principal);
+                        requestHandler.close();
+                    } else {
+                        issue(handler, claims, principal);
+                    }
+                    count++;
+                }
+                return count;
+            }));
+        }
+
+        TimeUnit.SECONDS.sleep(seconds);
+        running.set(false);
+        long total = 0;
+        for (Future<Long> result : results) {
+            total += result.get();
+        }
+        executor.shutdown();
+        handler.close();
+
+        System.out.println(scenario + ", " + threads + ", " + (total / seconds) + ", "
+            + server.getTokenRequests() + ", " + server.getAdminRequests());
+    }
+
+    private static void issue(KeycloakRolesClaimsHandler handler, ClaimCollection claims, String principal) {
+        ClaimsParameters parameters = new ClaimsParameters();
+        Principal userPrincipal = () -> principal;
+        parameters.setPrincipal(userPrincipal);
+
+        ProcessedClaimCollection result = handler.retrieveClaimValues(claims, parameters);
+        if (result == null || result.get(0).getValues().size() != 2) {
+            throw new IllegalStateException("Unexpected roles for " + principal + ": " + result);
+        }
+    }
+
+}
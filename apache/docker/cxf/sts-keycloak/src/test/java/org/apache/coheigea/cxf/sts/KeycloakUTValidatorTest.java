@@ -0,0 +1,176 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.apache.wss4j.common.ext.WSSecurityException;
+import org.apache.wss4j.dom.WSConstants;
+import org.apache.wss4j.dom.handler.RequestData;
+import org.apache.wss4j.dom.message.token.UsernameToken;
+import org.apache.wss4j.dom.validate.Credential;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.w3c.dom.Document;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+/**
+ * Some tests for the success and failure caches of the KeycloakUTValidator, against a StubKeycloakServer.
+ * Each test uses its own realm, so that it starts with fresh KeycloakRealmMetrics.
+ */
+public class KeycloakUTValidatorTest {
+
+    private static final AtomicInteger REALMS = new AtomicInteger();
+
+    private static StubKeycloakServer server;
+
+    @BeforeClass
+    public static void startServer() throws Exception {
+        server = new StubKeycloakServer(0L);
+        server.start();
+    }
+
+    @AfterClass
+    public static void stopServer() throws Exception {
+        server.stop();
+    }
+
+    @org.junit.Test
+    public void testSuccessCache() throws Exception {
+        KeycloakUTValidator validator = createValidator();
+        try {
+            server.resetCounters();
+            validator.validate(createCredential("user1", "password"), new RequestData());
+            validator.validate(createCredential("user1", "password"), new RequestData());
+            assertEquals(1, server.getTokenRequests());
+
+            // A different password is not a cache hit
+            validator.validate(createCredential("user1", "other-password"), new RequestData());
+            assertEquals(2, server.getTokenRequests());
+
+            KeycloakRealmMetrics metrics = validator.getMetrics();
+            assertEquals(1, metrics.getCacheHits());
+            assertEquals(2, metrics.getCacheMisses());
+            assertEquals(2, metrics.getUpstreamRequests());
+            assertEquals(0, metrics.getUpstreamFailures());
+            assertEquals(0, metrics.getRejectedCredentials());
+        } finally {
+            validator.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testFailureCache() throws Exception {
+        KeycloakUTValidator validator = createValidator();
+        try {
+            server.resetCounters();
+            assertRejected(validator, "user1", "badpassword");
+            assertRejected(validator, "user1", "badpassword");
+            assertEquals(1, server.getTokenRequests());
+
+            KeycloakRealmMetrics metrics = validator.getMetrics();
+            assertEquals(1, metrics.getNegativeCacheHits());
+            assertEquals(1, metrics.getRejectedCredentials());
+            assertEquals(0, metrics.getUpstreamFailures());
+
+            // The correct password is still sent to Keycloak, and replaces the cached failure
+            validator.validate(createCredential("user1", "password"), new RequestData());
+            validator.validate(createCredential("user1", "password"), new RequestData());
+            assertEquals(2, server.getTokenRequests());
+            assertEquals(1, metrics.getCacheHits());
+        } finally {
+            validator.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testBadRequestIsNotCached() throws Exception {
+        KeycloakUTValidator validator = createValidator();
+        try {
+            server.resetCounters();
+            assertRejected(validator, "disabled", "password");
+            assertRejected(validator, "disabled", "password");
+            assertEquals(2, server.getTokenRequests());
+
+            KeycloakRealmMetrics metrics = validator.getMetrics();
+            assertEquals(0, metrics.getNegativeCacheHits());
+            assertEquals(2, metrics.getRejectedCredentials());
+            assertEquals(0, metrics.getUpstreamFailures());
+        } finally {
+            validator.close();
+        }
+    }
+
+    @org.junit.Test
+    public void testUpstreamErrorIsNotCached() throws Exception {
+        KeycloakUTValidator validator = createValidator();
+        try {
+            server.resetCounters();
+            assertRejected(validator, "error", "password");
+            assertRejected(validator, "error", "password");
+            assertEquals(2, server.getTokenRequests());
+
+            KeycloakRealmMetrics metrics = validator.getMetrics();
+            assertEquals(0, metrics.getNegativeCacheHits());
+            assertEquals(0, metrics.getRejectedCredentials());
+            assertEquals(2, metrics.getUpstreamRequests());
+            assertEquals(2, metrics.getUpstreamFailures());
+        } finally {
+            validator.close();
+        }
+    }
+
+    private static KeycloakUTValidator createValidator() {
+        KeycloakUTValidator validator = new KeycloakUTValidator();
+        validator.setAddress(server.getAddress());
+        validator.setRealm("test-realm-" + REALMS.incrementAndGet());
+        validator.setCacheTimeToLive(60L);
+        validator.setNegativeCacheTimeToLive(60L);
+        return validator;
+    }
+
+    private static void assertRejected(KeycloakUTValidator validator, String username, String password)
+        throws Exception {
+        try {
+            validator.validate(createCredential(username, password), new RequestData());
+            fail("Failure expected on a rejected authentication");
+        } catch (WSSecurityException ex) {
+            assertEquals(WSSecurityException.ErrorCode.FAILED_AUTHENTICATION, ex.getErrorCode());
+        }
+    }
+
+    private static Credential createCredential(String username, String password) throws Exception {
+        DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+        factory.setNamespaceAware(true);
+        Document doc = factory.newDocumentBuilder().newDocument();
+
+        UsernameToken usernameToken = new UsernameToken(false, doc, WSConstants.PASSWORD_TEXT);
+        usernameToken.setName(username);
+        usernameToken.setPassword(password);
+
+        Credential credential = new Credential();
+        credential.setUsernametoken(usernameToken);
+        return credential;
+    }
+
+}
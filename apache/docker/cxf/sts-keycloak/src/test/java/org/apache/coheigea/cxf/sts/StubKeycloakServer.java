@@ -0,0 +1,168 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * A stub of the Keycloak endpoints used by the STS: the token endpoint, the user search and the
+ * effective realm roles of a user. Every user "userN" has the roles "role1" and "role2". Each request
+ * is delayed by the given latency, to simulate a remote Keycloak.
+ *
+ * The token endpoint accepts any password apart from "badpassword", which is rejected with a 401. The
+ * user "disabled" gets a 400 (as for an account that is not fully set up), and the user "error" gets
+ * a 500.
+ */
+public class StubKeycloakServer {
+
+    private final HttpServer server;
+    private final ExecutorService executor = Executors.newCachedThreadPool();
+    private final long latencyMillis;
+    private final AtomicLong tokenRequests = new AtomicLong();
+    private final AtomicLong adminRequests = new AtomicLong();
+
+    public StubKeycloakServer(long latencyMillis) throws IOException {
+        this.latencyMillis = latencyMillis;
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/auth/", this::handle);
+        server.setExecutor(executor);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public void stop() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getAddress() {
+        return "http://localhost:" + server.getAddress().getPort() + "/auth";
+    }
+
+    public long getTokenRequests() {
+        return tokenRequests.get();
+    }
+
+    public long getAdminRequests() {
+        return adminRequests.get();
+    }
+
+    public void resetCounters() {
+        tokenRequests.set(0);
+        adminRequests.set(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        ByteArrayOutputStream bodyBytes = new ByteArrayOutputStream();
+        try (InputStream requestBody = exchange.getRequestBody()) {
+            byte[] buffer = new byte[1024];
+            int read;
+            while ((read = requestBody.read(buffer)) != -1) {
+                bodyBytes.write(buffer, 0, read);
+            }
+        }
+        String body = new String(bodyBytes.toByteArray(), StandardCharsets.UTF_8);
+        try {
+            Thread.sleep(latencyMillis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+
+        String path = exchange.getRequestURI().getPath();
+        String query = exchange.getRequestURI().getQuery();
+        int status = 200;
+        String response;
+        if (path.endsWith("/protocol/openid-connect/token")) {
+            tokenRequests.incrementAndGet();
+            String username = getParameter(body, "username");
+            if ("error".equals(username)) {
+                status = 500;
+                response = "{\"error\":\"unknown_error\"}";
+            } else if ("disabled".equals(username)) {
+                status = 400;
+                response = "{\"error\":\"invalid_grant\","
+                    + "\"error_description\":\"Account is not fully set up\"}";
+            } else if ("badpassword".equals(getParameter(body, "password"))) {
+                status = 401;
+                response = "{\"error\":\"invalid_grant\","
+                    + "\"error_description\":\"Invalid user credentials\"}";
+            } else {
+                response = "{\"access_token\":\"stub-access-token\",\"expires_in\":300,"
+                    + "\"refresh_expires_in\":1800,\"refresh_token\":\"stub-refresh-token\","
+                    + "\"token_type\":\"bearer\"}";
+            }
+        } else if (path.endsWith("/role-mappings/realm/composite")) {
+            adminRequests.incrementAndGet();
+            response = "[{\"id\":\"1\",\"name\":\"role1\"},{\"id\":\"2\",\"name\":\"role2\"}]";
+        } else if (path.endsWith("/users")) {
+            adminRequests.incrementAndGet();
+            String username = getUsername(query);
+            response = "[{\"id\":\"" + username + "-id\",\"username\":\"" + username + "\"}]";
+        } else {
+            exchange.sendResponseHeaders(404, -1);
+            exchange.close();
+            return;
+        }
+
+        byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream responseBody = exchange.getResponseBody()) {
+            responseBody.write(bytes);
+        }
+    }
+
+    private static String getParameter(String form, String name) throws IOException {
+        for (String param : form.split("&")) {
+            int index = param.indexOf('=');
+            if (index > 0 && name.equals(param.substring(0, index))) {
+                return URLDecoder.decode(param.substring(index + 1), "UTF-8");
+            }
+        }
+        return null;
+    }
+
+    private static String getUsername(String query) {
+        if (query != null) {
+            for (String param : query.split("&")) {
+                int index = param.indexOf('=');
+                if (index > 0 && ("search".equals(param.substring(0, index))
+                    || "username".equals(param.substring(0, index)))) {
+                    return param.substring(index + 1);
+                }
+            }
+        }
+        return "unknown";
+    }
+
+}
@@ -0,0 +1,64 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.Map;
+
+import javax.security.auth.callback.Callback;
+import javax.security.auth.callback.CallbackHandler;
+import javax.security.auth.callback.UnsupportedCallbackException;
+
+import org.apache.wss4j.common.ext.WSPasswordCallback;
+
+/**
+ * A CallbackHandler that only knows the admin users (and not the service accounts that request tokens),
+ * so that a filter configured with it only lets the admin users through to the admin endpoints.
+ */
+public class AdminCallbackHandler implements CallbackHandler {
+
+    private Map<String, String> users = Collections.emptyMap();
+
+    public void handle(Callback[] callbacks) throws IOException,
+            UnsupportedCallbackException {
+        for (int i = 0; i < callbacks.length; i++) {
+            if (callbacks[i] instanceof WSPasswordCallback) {
+                WSPasswordCallback pc = (WSPasswordCallback) callbacks[i];
+                String password = users.get(pc.getIdentifier());
+                if (password != null) {
+                    pc.setPassword(password);
+                    break;
+                }
+            }
+        }
+    }
+
+    public Map<String, String> getUsers() {
+        return users;
+    }
+
+    /**
+     * Set the admin users, as a map of username to password
+     */
+    public void setUsers(Map<String, String> users) {
+        this.users = users;
+    }
+
+}
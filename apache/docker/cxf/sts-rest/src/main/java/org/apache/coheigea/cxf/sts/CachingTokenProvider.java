@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.w3c.dom.Element;
+
+import org.apache.cxf.rt.security.claims.Claim;
+import org.apache.cxf.rt.security.claims.ClaimCollection;
+import org.apache.cxf.staxutils.StaxUtils;
+import org.apache.cxf.sts.STSConstants;
+import org.apache.cxf.sts.request.KeyRequirements;
+import org.apache.cxf.sts.request.Lifetime;
+import org.apache.cxf.sts.request.Renewing;
+import org.apache.cxf.sts.request.TokenRequirements;
+import org.apache.cxf.sts.token.provider.TokenProvider;
+import org.apache.cxf.sts.token.provider.TokenProviderParameters;
+import org.apache.cxf.sts.token.provider.TokenProviderResponse;
+import org.apache.cxf.ws.security.sts.provider.STSException;
+import org.apache.wss4j.common.util.DOM2Writer;
+
+/**
+ * A TokenProvider that caches the tokens issued by another TokenProvider, keyed on the principal, the
+ * token type, the audience (AppliesTo), the realm, the requested claims, the requested lifetime and
+ * renewal semantics, and the requested signature and encryption settings. Only Bearer tokens that are
+ * not issued OnBehalfOf or ActAs another token, and that do not have any custom content or client
+ * entropy, are cached. A cached token is served until
+ * "expiryMargin" seconds before it expires. The signed token is cached in its serialized form, so that
+ * it is not signed (or marshalled) again: a JWT is returned as is, and a SAML token is parsed into a
+ * new DOM Element for each response.
+ */
+public class CachingTokenProvider implements TokenProvider {
+
+    private TokenProvider tokenProvider;
+    private IssuedTokenCache cache;
+    private long expiryMargin = 60L;
+
+    public boolean canHandleToken(String tokenType) {
+        return tokenProvider.canHandleToken(tokenType);
+    }
+
+    public boolean canHandleToken(String tokenType, String realm) {
+        return tokenProvider.canHandleToken(tokenType, realm);
+    }
+
+    public TokenProviderResponse createToken(TokenProviderParameters tokenParameters) {
+        String key = getCacheKey(tokenParameters);
+        if (key == null) {
+            return tokenProvider.createToken(tokenParameters);
+        }
+
+        IssuedTokenCache.Entry entry = cache.get(key);
+        if (entry != null) {
+            return createResponse(entry);
+        }
+
+        TokenProviderResponse response = tokenProvider.createToken(tokenParameters);
+        cacheResponse(key, response);
+        return response;
+    }
+
+    private String getCacheKey(TokenProviderParameters tokenParameters) {
+        TokenRequirements tokenRequirements = tokenParameters.getTokenRequirements();
+        KeyRequirements keyRequirements = tokenParameters.getKeyRequirements();
+        if (tokenParameters.getPrincipal() == null || tokenRequirements == null
+            || tokenRequirements.getOnBehalfOf() != null || tokenRequirements.getActAs() != null
+            || keyRequirements == null || !STSConstants.BEARER_KEY_KEYTYPE.equals(keyRequirements.getKeyType())) {
+            return null;
+        }
+        // Don't try to work out how custom content or client entropy shapes the token
+        if (tokenRequirements.getCustomContent() != null && !tokenRequirements.getCustomContent().isEmpty()
+            || keyRequirements.getEntropy() != null) {
+            return null;
+        }
+
+        StringBuilder key = new StringBuilder();
+        key.append(tokenParameters.getPrincipal().getName()).append('\n');
+        key.append(tokenRequirements.getTokenType()).append('\n');
+        key.append(tokenParameters.getAppliesToAddress()).append('\n');
+        key.append(tokenParameters.getRealm()).append('\n');
+        appendClaims(key, tokenRequirements.getPrimaryClaims());
+        key.append('\n');
+        appendClaims(key, tokenRequirements.getSecondaryClaims());
+        key.append('\n');
+
+        // The requested lifetime and renewal semantics are part of the token
+        Lifetime lifetime = tokenRequirements.getLifetime();
+        if (lifetime != null) {
+            key.append(lifetime.getCreated()).append('|').append(lifetime.getExpires());
+        }
+        key.append('\n');
+        Renewing renewing = tokenRequirements.getRenewing();
+        if (renewing != null) {
+            key.append(renewing.isAllowRenewing()).append('|').append(renewing.isAllowRenewingAfterExpiry());
+        }
+        key.append('\n');
+
+        // As are the requested signature and encryption settings
+        key.append(keyRequirements.getKeySize()).append('|')
+            .append(keyRequirements.getSignatureAlgorithm()).append('|')
+            .append(keyRequirements.getC14nAlgorithm()).append('|')
+            .append(keyRequirements.getSignWith()).append('|')
+            .append(keyRequirements.getEncryptionAlgorithm()).append('|')
+            .append(keyRequirements.getKeywrapAlgorithm()).append('|')
+            .append(keyRequirements.getEncryptWith());
+        return key.toString();
+    }
+
+    private static void appendClaims(StringBuilder key, ClaimCollection claims) {
+        if (claims != null) {
+            key.append(claims.getDialect());
+            for (Claim claim : claims) {
+                key.append('|').append(claim.getClaimType()).append(claim.isOptional() ? "?" : "")
+                    .append('=').append(claim.getValues());
+            }
+        }
+    }
+
+    private void cacheResponse(String key, TokenProviderResponse response) {
+        if (response == null || response.getExpires() == null || response.getEntropy() != null) {
+            return;
+        }
+        long cacheExpiry = response.getExpires().toEpochMilli() - TimeUnit.SECONDS.toMillis(expiryMargin);
+        if (cacheExpiry <= System.currentTimeMillis()) {
+            return;
+        }
+
+        Object token = response.getToken();
+        if (token instanceof String) {
+            cache.put(key, new IssuedTokenCache.Entry((String)token, false, response.getTokenId(),
+                                                      response.getCreated(), response.getExpires(), cacheExpiry));
+        } else if (token instanceof Element) {
+            String serializedToken = DOM2Writer.nodeToString((Element)token);
+            cache.put(key, new IssuedTokenCache.Entry(serializedToken, true, response.getTokenId(),
+                                                      response.getCreated(), response.getExpires(), cacheExpiry));
+        }
+    }
+
+    /**
+     * Create a new response (with a new token Element for a SAML token) for a cached token. The token
+     * references are left for the TokenIssueOperation to create from the token id.
+     */
+    private static TokenProviderResponse createResponse(IssuedTokenCache.Entry entry) {
+        TokenProviderResponse response = new TokenProviderResponse();
+        response.setTokenId(entry.getTokenId());
+        response.setCreated(entry.getCreated());
+        response.setExpires(entry.getExpires());
+
+        if (entry.isXml()) {
+            try {
+                response.setToken(StaxUtils.read(new StringReader(entry.getToken())).getDocumentElement());
+            } catch (XMLStreamException ex) {
+                throw new STSException("Can't parse a cached token", ex, STSException.REQUEST_FAILED);
+            }
+        } else {
+            response.setToken(entry.getToken());
+        }
+        return response;
+    }
+
+    public TokenProvider getTokenProvider() {
+        return tokenProvider;
+    }
+
+    public void setTokenProvider(TokenProvider tokenProvider) {
+        this.tokenProvider = tokenProvider;
+    }
+
+    public IssuedTokenCache getCache() {
+        return cache;
+    }
+
+    public void setCache(IssuedTokenCache cache) {
+        this.cache = cache;
+    }
+
+    public long getExpiryMargin() {
+        return expiryMargin;
+    }
+
+    /**
+     * Set how long (in seconds) before its expiry a token is no longer served from the cache
+     */
+    public void setExpiryMargin(long expiryMargin) {
+        this.expiryMargin = expiryMargin;
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, least-recently-used cache of issued (serialized) tokens. Each entry expires at its own
+ * time, and the cache is bounded both by the number of entries ("maxEntries") and by the total size
+ * of the serialized tokens in characters ("maxSize"). The hit, miss, eviction and expiration counts
+ * are recorded for the admin endpoint.
+ */
+public class IssuedTokenCache {
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private int maxEntries = 10000;
+    private long maxSize = 16L * 1024L * 1024L;
+    private long size;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong expirations = new AtomicLong();
+
+    /**
+     * Get the cached entry for the given key, or null if it is not cached or has expired.
+     */
+    public Entry get(String key) {
+        long now = System.currentTimeMillis();
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry != null && entry.cacheExpiry <= now) {
+                remove(key, entry);
+                expirations.incrementAndGet();
+                entry = null;
+            }
+            if (entry == null) {
+                misses.incrementAndGet();
+            } else {
+                hits.incrementAndGet();
+            }
+            return entry;
+        }
+    }
+
+    /**
+     * Cache the given entry, evicting the least recently used entries if the cache is full. An entry
+     * that is larger than "maxSize" by itself is not cached.
+     */
+    public synchronized void put(String key, Entry entry) {
+        if (entry.getSize() > maxSize) {
+            return;
+        }
+        Entry existing = entries.remove(key);
+        if (existing != null) {
+            size -= existing.getSize();
+        }
+        entries.put(key, entry);
+        size += entry.getSize();
+
+        if (entries.size() > maxEntries || size > maxSize) {
+            evict();
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        size = 0;
+    }
+
+    /**
+     * Return the current size and the hit, miss, eviction and expiration counts of the cache.
+     */
+    public Map<String, Object> getStatistics() {
+        Map<String, Object> statistics = new LinkedHashMap<>();
+        synchronized (this) {
+            statistics.put("entries", entries.size());
+            statistics.put("size", size);
+        }
+        statistics.put("maxEntries", maxEntries);
+        statistics.put("maxSize", maxSize);
+        statistics.put("hits", hits.get());
+        statistics.put("misses", misses.get());
+        statistics.put("evictions", evictions.get());
+        statistics.put("expirations", expirations.get());
+        return statistics;
+    }
+
+    private void evict() {
+        // Remove the expired entries first, and then the least recently used
+        long now = System.currentTimeMillis();
+        Iterator<Entry> iterator = entries.values().iterator();
+        while (iterator.hasNext()) {
+            Entry entry = iterator.next();
+            if (entry.cacheExpiry <= now) {
+                iterator.remove();
+                size -= entry.getSize();
+                expirations.incrementAndGet();
+            }
+        }
+
+        iterator = entries.values().iterator();
+        while ((entries.size() > maxEntries || size > maxSize) && iterator.hasNext()) {
+            Entry entry = iterator.next();
+            iterator.remove();
+            size -= entry.getSize();
+            evictions.incrementAndGet();
+        }
+    }
+
+    private void remove(String key, Entry entry) {
+        entries.remove(key);
+        size -= entry.getSize();
+    }
+
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Set the maximum total size (in characters) of the cached tokens
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * A cached token, which is held in serialized form, together with its id, its creation and expiry
+     * times, and the time at which it must no longer be served from the cache.
+     */
+    public static final class Entry {
+        private final String token;
+        private final boolean xml;
+        private final String tokenId;
+        private final Instant created;
+        private final Instant expires;
+        private final long cacheExpiry;
+
+        public Entry(String token, boolean xml, String tokenId, Instant created, Instant expires,
+                     long cacheExpiry) {
+            this.token = token;
+            this.xml = xml;
+            this.tokenId = tokenId;
+            this.created = created;
+            this.expires = expires;
+            this.cacheExpiry = cacheExpiry;
+        }
+
+        public String getToken() {
+            return token;
+        }
+
+        public boolean isXml() {
+            return xml;
+        }
+
+        public String getTokenId() {
+            return tokenId;
+        }
+
+        public Instant getCreated() {
+            return created;
+        }
+
+        public Instant getExpires() {
+            return expires;
+        }
+
+        public long getCacheExpiry() {
+            return cacheExpiry;
+        }
+
+        long getSize() {
+            return token.length() + (tokenId != null ? tokenId.length() : 0);
+        }
+    }
+
+}
@@ -0,0 +1,238 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.cxf.sts;
+
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import org.apache.cxf.sts.STSConstants;
+import org.apache.cxf.sts.request.KeyRequirements;
+import org.apache.cxf.sts.request.Lifetime;
+import org.apache.cxf.sts.request.ReceivedToken;
+import org.apache.cxf.sts.request.TokenRequirements;
+import org.apache.cxf.sts.token.provider.TokenProvider;
+import org.apache.cxf.sts.token.provider.TokenProviderParameters;
+import org.apache.cxf.sts.token.provider.TokenProviderResponse;
+import org.apache.wss4j.common.principal.CustomTokenPrincipal;
+import org.apache.wss4j.common.util.DOM2Writer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Some tests for the CachingTokenProvider: which requests are served from the cache, and which bypass it.
+ */
+public class CachingTokenProviderTest {
+
+    private static final String JWT_TOKEN_TYPE = "urn:ietf:params:oauth:token-type:jwt";
+
+    @org.junit.Test
+    public void testCacheHit() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider();
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        TokenProviderResponse response1 = cachingProvider.createToken(createParameters("alice", "service1"));
+        TokenProviderResponse response2 = cachingProvider.createToken(createParameters("alice", "service1"));
+
+        assertEquals(1, tokenProvider.getCount());
+        assertEquals(response1.getToken(), response2.getToken());
+        assertEquals(1L, cachingProvider.getCache().getStatistics().get("hits"));
+    }
+
+    @org.junit.Test
+    public void testXmlCacheHit() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider(true);
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        TokenProviderResponse response1 = cachingProvider.createToken(createParameters("alice", "service1"));
+        TokenProviderResponse response2 = cachingProvider.createToken(createParameters("alice", "service1"));
+        TokenProviderResponse response3 = cachingProvider.createToken(createParameters("alice", "service1"));
+        assertEquals(1, tokenProvider.getCount());
+        assertEquals(response1.getTokenId(), response2.getTokenId());
+        assertEquals(response1.getExpires(), response2.getExpires());
+
+        // Each hit gets its own token Element, so that changing one response does not change the others
+        Element token2 = (Element)response2.getToken();
+        Element token3 = (Element)response3.getToken();
+        assertNotSame(token2, token3);
+        assertEquals(DOM2Writer.nodeToString((Element)response1.getToken()), DOM2Writer.nodeToString(token2));
+        token2.setAttributeNS(null, "Modified", "true");
+        assertEquals("", token3.getAttributeNS(null, "Modified"));
+    }
+
+    @org.junit.Test
+    public void testCacheMiss() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider();
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        TokenProviderResponse response1 = cachingProvider.createToken(createParameters("alice", "service1"));
+        TokenProviderResponse response2 = cachingProvider.createToken(createParameters("bob", "service1"));
+        TokenProviderResponse response3 = cachingProvider.createToken(createParameters("alice", "service2"));
+        assertEquals(3, tokenProvider.getCount());
+        assertNotEquals(response1.getToken(), response2.getToken());
+        assertNotEquals(response1.getToken(), response3.getToken());
+
+        // A different requested lifetime is a different token
+        TokenProviderParameters parameters = createParameters("alice", "service1");
+        Lifetime lifetime = new Lifetime();
+        lifetime.setCreated(Instant.now().toString());
+        lifetime.setExpires(Instant.now().plusSeconds(600L).toString());
+        parameters.getTokenRequirements().setLifetime(lifetime);
+        cachingProvider.createToken(parameters);
+        assertEquals(4, tokenProvider.getCount());
+
+        // As is a different signature algorithm
+        parameters = createParameters("alice", "service1");
+        parameters.getKeyRequirements().setSignatureAlgorithm(
+            "http://www.w3.org/2001/04/xmldsig-more#rsa-sha512");
+        cachingProvider.createToken(parameters);
+        assertEquals(5, tokenProvider.getCount());
+    }
+
+    @org.junit.Test
+    public void testOnBehalfOfBypassesCache() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider();
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        for (int i = 0; i < 2; i++) {
+            TokenProviderParameters parameters = createParameters("alice", "service1");
+            parameters.getTokenRequirements().setOnBehalfOf(createReceivedToken());
+            cachingProvider.createToken(parameters);
+        }
+        assertEquals(2, tokenProvider.getCount());
+    }
+
+    @org.junit.Test
+    public void testActAsBypassesCache() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider();
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        for (int i = 0; i < 2; i++) {
+            TokenProviderParameters parameters = createParameters("alice", "service1");
+            parameters.getTokenRequirements().setActAs(createReceivedToken());
+            cachingProvider.createToken(parameters);
+        }
+        assertEquals(2, tokenProvider.getCount());
+    }
+
+    @org.junit.Test
+    public void testNonBearerBypassesCache() throws Exception {
+        CountingTokenProvider tokenProvider = new CountingTokenProvider();
+        CachingTokenProvider cachingProvider = createCachingProvider(tokenProvider);
+
+        for (int i = 0; i < 2; i++) {
+            TokenProviderParameters parameters = createParameters("alice", "service1");
+            parameters.getKeyRequirements().setKeyType(STSConstants.PUBLIC_KEY_KEYTYPE);
+            cachingProvider.createToken(parameters);
+        }
+        assertEquals(2, tokenProvider.getCount());
+        assertEquals(0, cachingProvider.getCache().getStatistics().get("entries"));
+    }
+
+    private static CachingTokenProvider createCachingProvider(TokenProvider tokenProvider) {
+        CachingTokenProvider cachingProvider = new CachingTokenProvider();
+        cachingProvider.setTokenProvider(tokenProvider);
+        cachingProvider.setCache(new IssuedTokenCache());
+        return cachingProvider;
+    }
+
+    private static TokenProviderParameters createParameters(String principal, String appliesTo) {
+        TokenRequirements tokenRequirements = new TokenRequirements();
+        tokenRequirements.setTokenType(JWT_TOKEN_TYPE);
+
+        KeyRequirements keyRequirements = new KeyRequirements();
+        keyRequirements.setKeyType(STSConstants.BEARER_KEY_KEYTYPE);
+
+        TokenProviderParameters parameters = new TokenProviderParameters();
+        parameters.setPrincipal(new CustomTokenPrincipal(principal));
+        parameters.setTokenRequirements(tokenRequirements);
+        parameters.setKeyRequirements(keyRequirements);
+        parameters.setAppliesToAddress(appliesTo);
+        return parameters;
+    }
+
+    private static ReceivedToken createReceivedToken() throws Exception {
+        return new ReceivedToken(createXmlToken("received-token"));
+    }
+
+    private static Element createXmlToken(String tokenId) {
+        try {
+            DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+            factory.setNamespaceAware(true);
+            Document doc = factory.newDocumentBuilder().newDocument();
+            Element token = doc.createElementNS("urn:test", "Token");
+            token.setAttributeNS(null, "ID", tokenId);
+            doc.appendChild(token);
+            return token;
+        } catch (ParserConfigurationException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * A TokenProvider that issues a new (dummy) JWT, or XML token, for each call, which expires in an hour.
+     */
+    private static class CountingTokenProvider implements TokenProvider {
+
+        private final AtomicInteger count = new AtomicInteger();
+        private final boolean xml;
+
+        CountingTokenProvider() {
+            this(false);
+        }
+
+        CountingTokenProvider(boolean xml) {
+            this.xml = xml;
+        }
+
+        public boolean canHandleToken(String tokenType) {
+            return JWT_TOKEN_TYPE.equals(tokenType);
+        }
+
+        public boolean canHandleToken(String tokenType, String realm) {
+            return canHandleToken(tokenType);
+        }
+
+        public TokenProviderResponse createToken(TokenProviderParameters tokenParameters) {
+            int tokenNumber = count.incrementAndGet();
+            TokenProviderResponse response = new TokenProviderResponse();
+            response.setTokenId("token-" + tokenNumber);
+            if (xml) {
+                response.setToken(createXmlToken("token-" + tokenNumber));
+            } else {
+                response.setToken("header.token-" + tokenNumber + ".signature");
+            }
+            response.setCreated(Instant.now());
+            response.setExpires(Instant.now().plusSeconds(3600L));
+            return response;
+        }
+
+        int getCount() {
+            return count.get();
+        }
+    }
+
+}
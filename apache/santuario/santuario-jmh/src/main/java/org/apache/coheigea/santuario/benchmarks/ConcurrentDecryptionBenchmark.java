@@ -0,0 +1,129 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.santuario.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.security.Key;
+import java.security.KeyStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.w3c.dom.Document;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+
+/**
+ * Some benchmarking tests for XML Decryption with multiple threads, with and without a cache of the
+ * unwrapped session keys. All messages share the same EncryptedKey, so that with the cache enabled only
+ * the first message requires an RSA-OAEP unwrap. Run the main method to compare the throughput for 1
+ * to 32 threads.
+ */
+public class ConcurrentDecryptionBenchmark {
+
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32};
+
+    @State(Scope.Benchmark)
+    public static class DecryptionState {
+
+        @Param({"false", "true"})
+        boolean cache;
+
+        Key key;
+        byte[] encryptedDocument;
+        SessionKeyCache sessionKeyCache;
+
+        @Setup(Level.Trial)
+        public void setup() throws Exception {
+            KeyStore keyStore = KeyStore.getInstance("jks");
+            keyStore.load(
+                this.getClass().getClassLoader().getResource("clientstore.jks").openStream(),
+                "cspass".toCharArray()
+            );
+            key = keyStore.getKey("myclientkey", "ckpass".toCharArray());
+
+            try (InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream("encrypted.xml")) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                byte[] buffer = new byte[4096];
+                for (int read = sourceDocument.read(buffer); read != -1; read = sourceDocument.read(buffer)) {
+                    bytes.write(buffer, 0, read);
+                }
+                encryptedDocument = bytes.toByteArray();
+            }
+
+            if (cache) {
+                sessionKeyCache = new SessionKeyCache(1000, TimeUnit.MINUTES.toMillis(5));
+            }
+        }
+    }
+
+    @Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+    public Document testDecryption(DecryptionState state) throws Exception {
+        Document document = DocumentBuilderPool.parse(state.encryptedDocument);
+
+        EncryptionUtils.decryptUsingDOM(
+            document, "http://www.w3.org/2001/04/xmlenc#aes256-cbc", state.key, state.sessionKeyCache
+        );
+        return document;
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                .include(ConcurrentDecryptionBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            results.addAll(new Runner(options).run());
+        }
+
+        // Print the throughput against the number of threads, with and without the cache
+        System.out.println();
+        System.out.println("Benchmark, Cache, Threads, Score, Error, Units");
+        for (RunResult result : results) {
+            System.out.println(result.getParams().getBenchmark() + ", "
+                + result.getParams().getParam("cache") + ", "
+                + result.getParams().getThreads() + ", "
+                + result.getPrimaryResult().getScore() + ", "
+                + result.getPrimaryResult().getScoreError() + ", "
+                + result.getPrimaryResult().getScoreUnit());
+        }
+    }
+
+}
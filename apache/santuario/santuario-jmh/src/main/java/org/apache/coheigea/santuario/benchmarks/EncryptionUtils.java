@@ -21,6 +21,8 @@ package org.apache.coheigea.santuario.benchmarks;
 import java.security.Key;
 import java.security.PublicKey;
 
+import javax.xml.namespace.QName;
+
 import org.apache.xml.security.Init;
 import org.apache.xml.security.encryption.EncryptedData;
 import org.apache.xml.security.encryption.EncryptedKey;
@@ -117,5 +119,52 @@ public final class EncryptionUtils {
         }
     }
     
+    /**
+     * Decrypt the document using the DOM API of Apache Santuario - XML Security for Java. The session
+     * key is unwrapped from the EncryptedKey in the KeyInfo of each EncryptedData, unless it is found
+     * in the given cache (which may be null).
+     */
+    public static void decryptUsingDOM(
+        Document document,
+        String algorithm,
+        Key privateKey,
+        SessionKeyCache sessionKeyCache
+    ) throws Exception {
+        NodeList nodeList = document.getElementsByTagNameNS(
+                XMLSecurityConstants.TAG_xenc_EncryptedData.getNamespaceURI(),
+                XMLSecurityConstants.TAG_xenc_EncryptedData.getLocalPart()
+            );
+        
+        for (int i = 0; i < nodeList.getLength(); i++) {
+            Element ee = (Element)nodeList.item(i);
+            Element encryptedKey = getFirstElement(ee, XMLSecurityConstants.TAG_xenc_EncryptedKey);
+            Element cipherValue = getFirstElement(encryptedKey, XMLSecurityConstants.TAG_xenc_CipherValue);
+            String wrappedKey = cipherValue.getTextContent();
+            
+            Key sessionKey = sessionKeyCache != null ? sessionKeyCache.get(wrappedKey) : null;
+            if (sessionKey == null) {
+                XMLCipher keyCipher = XMLCipher.getInstance();
+                keyCipher.init(XMLCipher.UNWRAP_MODE, privateKey);
+                EncryptedKey ek = keyCipher.loadEncryptedKey(document, encryptedKey);
+                sessionKey = keyCipher.decryptKey(ek, algorithm);
+                if (sessionKeyCache != null) {
+                    sessionKeyCache.put(wrappedKey, sessionKey);
+                }
+            }
+            
+            XMLCipher cipher = XMLCipher.getInstance(algorithm);
+            cipher.init(XMLCipher.DECRYPT_MODE, sessionKey);
+            cipher.doFinal(document, ee);
+        }
+    }
+    
+    private static Element getFirstElement(Element parent, QName name) {
+        NodeList children = parent.getElementsByTagNameNS(name.getNamespaceURI(), name.getLocalPart());
+        if (children.getLength() == 0) {
+            throw new IllegalArgumentException("No " + name + " found in " + parent.getLocalName());
+        }
+        return (Element)children.item(0);
+    }
+    
 
 }
@@ -25,8 +25,6 @@ import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 import java.util.concurrent.TimeUnit;
 
-import javax.xml.parsers.DocumentBuilderFactory;
-
 import org.openjdk.jmh.annotations.Benchmark;
 import org.openjdk.jmh.annotations.BenchmarkMode;
 import org.openjdk.jmh.annotations.Fork;
@@ -76,11 +74,10 @@ public class JSR105SignatureBenchmark {
         InputStream sourceDocument =
                 this.getClass().getClassLoader().getResourceAsStream("plaintext.xml");
         
-        // Note this is very inefficient to to this every time - but I don't care, I just want to 
-        // compare consistent performance across different Santuario versions
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        Document document = dbf.newDocumentBuilder().parse(sourceDocument);
+        // The DocumentBuilder is pooled, so that parsing does not dominate the comparison across
+        // different Santuario versions
+        Document document = DocumentBuilderPool.parse(sourceDocument);
+        sourceDocument.close();
 
         // Sign using DOM
         SignatureUtils.signUsingJSR105(
@@ -99,11 +96,10 @@ public class JSR105SignatureBenchmark {
         InputStream sourceDocument =
                 this.getClass().getClassLoader().getResourceAsStream("signed.xml");
 
-        // Note this is very inefficient to to this every time - but I don't care, I just want to 
-        // compare consistent performance across different Santuario versions
-        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
-        dbf.setNamespaceAware(true);
-        Document document = dbf.newDocumentBuilder().parse(sourceDocument);
+        // The DocumentBuilder is pooled, so that parsing does not dominate the comparison across
+        // different Santuario versions
+        Document document = DocumentBuilderPool.parse(sourceDocument);
+        sourceDocument.close();
 
         // Verify using JSR-105
         SignatureUtils.verifyUsingJSR105(document, state.cert);
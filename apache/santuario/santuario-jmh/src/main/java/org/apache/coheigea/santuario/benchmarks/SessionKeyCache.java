@@ -0,0 +1,147 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.santuario.benchmarks;
+
+import java.nio.charset.StandardCharsets;
+import java.security.Key;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded cache of unwrapped session keys, keyed on a SHA-256 digest of the CipherValue of the
+ * EncryptedKey that wrapped them. Messages that share an EncryptedKey can then skip the (RSA) key
+ * unwrap. Entries expire after the given time to live. A cache must only be used with a single
+ * private key, as the digest does not cover the key that was used to unwrap the session key.
+ *
+ * When the cache grows beyond its maximum size, the expired entries and then the entries that expire
+ * first are evicted in a single pass, down to 90% of the maximum size, so that the cost of the eviction
+ * scan is shared by many inserts.
+ */
+public class SessionKeyCache {
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final ReentrantLock evictionLock = new ReentrantLock();
+    private final int maxSize;
+    private final int evictedSize;
+    private final long ttlMillis;
+
+    public SessionKeyCache(int maxSize, long ttlMillis) {
+        this.maxSize = maxSize;
+        this.evictedSize = Math.max(0, maxSize - Math.max(1, maxSize / 10));
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * Get the session key that was unwrapped from the given CipherValue, or null if it is not cached
+     * (or has expired).
+     */
+    public Key get(String cipherValue) {
+        String digest = digest(cipherValue);
+        Entry entry = entries.get(digest);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiry < System.currentTimeMillis()) {
+            entries.remove(digest, entry);
+            return null;
+        }
+        return entry.key;
+    }
+
+    public void put(String cipherValue, Key key) {
+        entries.put(digest(cipherValue), new Entry(key, System.currentTimeMillis() + ttlMillis));
+        evictIfNeeded();
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    /**
+     * Evict entries if the cache is over its maximum size. Only one thread evicts at a time, the others
+     * carry on without waiting for it.
+     */
+    private void evictIfNeeded() {
+        if (entries.size() > maxSize && evictionLock.tryLock()) {
+            try {
+                evict();
+            } finally {
+                evictionLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove the expired entries, and then the entries that expire first until the cache is back down to
+     * 90% of its maximum size.
+     */
+    private void evict() {
+        long now = System.currentTimeMillis();
+        entries.values().removeIf(entry -> entry.expiry < now);
+
+        int excess = entries.size() - evictedSize;
+        if (excess <= 0) {
+            return;
+        }
+
+        // Keep the "excess" entries that expire first, with the one that expires last at the head
+        PriorityQueue<Map.Entry<String, Entry>> soonest = new PriorityQueue<>(excess + 1,
+            Comparator.comparingLong((Map.Entry<String, Entry> entry) -> entry.getValue().expiry).reversed());
+        for (Map.Entry<String, Entry> entry : entries.entrySet()) {
+            soonest.offer(entry);
+            if (soonest.size() > excess) {
+                soonest.poll();
+            }
+        }
+        for (Map.Entry<String, Entry> entry : soonest) {
+            entries.remove(entry.getKey(), entry.getValue());
+        }
+    }
+
+    private static String digest(String cipherValue) {
+        try {
+            MessageDigest messageDigest = MessageDigest.getInstance("SHA-256");
+            byte[] digest = messageDigest.digest(cipherValue.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException ex) {
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    private static final class Entry {
+        private final Key key;
+        private final long expiry;
+
+        Entry(Key key, long expiry) {
+            this.key = key;
+            this.expiry = expiry;
+        }
+    }
+
+}
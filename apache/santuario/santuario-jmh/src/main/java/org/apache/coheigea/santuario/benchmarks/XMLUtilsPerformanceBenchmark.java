@@ -20,6 +20,8 @@ package org.apache.coheigea.santuario.benchmarks;
 
 
 import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 
 import javax.xml.XMLConstants;
@@ -34,16 +36,23 @@ import org.openjdk.jmh.annotations.Mode;
 import org.openjdk.jmh.annotations.OutputTimeUnit;
 import org.openjdk.jmh.annotations.Threads;
 import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
 import org.xml.sax.InputSource;
 
 @BenchmarkMode(Mode.Throughput)
 @OutputTimeUnit(TimeUnit.MILLISECONDS)
 
 /**
- * Some benchmarking tests for different ways of referencing keys in XML Signatures.
+ * Some benchmarking tests for different ways of parsing a Document. Run the main method to compare
+ * the throughput for 1 to 64 threads.
  */
 public class XMLUtilsPerformanceBenchmark {
 
+    private static final int[] THREADS = {1, 2, 4, 8, 16, 32, 64};
+
 	@Benchmark
     @Fork(1)
     @Warmup(iterations = 5)
@@ -83,5 +92,36 @@ public class XMLUtilsPerformanceBenchmark {
         InputSource inputSource = new InputSource(new StringReader("<xml>123</xml>"));
         documentBuilder.parse(inputSource);
 	}
-    
+
+	@Benchmark
+    @Fork(1)
+    @Warmup(iterations = 5)
+	@Threads(10)
+	// A DocumentBuilder per thread, reset after each parse
+    public void testDocumentBuilderPool() throws Exception {
+        DocumentBuilderPool.parse("<xml>123</xml>");
+    }
+
+    public static void main(String[] args) throws Exception {
+        List<RunResult> results = new ArrayList<>();
+        for (int threads : THREADS) {
+            Options options = new OptionsBuilder()
+                .include(XMLUtilsPerformanceBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            results.addAll(new Runner(options).run());
+        }
+
+        // Print the throughput against the number of threads for each benchmark
+        System.out.println();
+        System.out.println("Benchmark, Threads, Score, Error, Units");
+        for (RunResult result : results) {
+            System.out.println(result.getParams().getBenchmark() + ", "
+                + result.getParams().getThreads() + ", "
+                + result.getPrimaryResult().getScore() + ", "
+                + result.getPrimaryResult().getScoreError() + ", "
+                + result.getPrimaryResult().getScoreUnit());
+        }
+    }
+
 }
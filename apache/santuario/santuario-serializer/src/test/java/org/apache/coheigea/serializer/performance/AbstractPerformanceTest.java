@@ -20,9 +20,7 @@ package org.apache.coheigea.serializer.performance;
 
 import java.io.BufferedOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
-import java.io.FileWriter;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.StandardCharsets;
@@ -93,37 +91,19 @@ public abstract class AbstractPerformanceTest {
     }
 
     protected File generateLargeXMLFile(int factor) throws Exception {
-        File path = getTmpFilePath();
-        path.mkdirs();
-        File target = new File(path, "tmp.xml");
-        FileWriter fileWriter = new FileWriter(target, false);
-        fileWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
-                "<test xmlns=\"http://www.example.com\">");
-        fileWriter.close();
-        FileOutputStream fileOutputStream = new FileOutputStream(target, true);
-        for (int i = 0; i < factor; i++) {
-            int read = 0;
-            byte[] buffer = new byte[4096];
-            InputStream inputStream = this.getClass().getClassLoader().getResourceAsStream(
-                    "plaintext.xml");
-            while ((read = inputStream.read(buffer)) != -1) {
-                fileOutputStream.write(buffer, 0, read);
-            }
-            inputStream.close();
-        }
-        fileWriter = new FileWriter(target, true);
-        fileWriter.write("</test>");
-        fileWriter.close();
-
-        fileOutputStream.close();
-
-        return target;
+        getTmpFilePath().mkdirs();
+        return XMLCorpus.getFile(factor);
     }
 
     protected int countXMLStartTags(File file) throws Exception {
+        int count = XMLCorpus.getStartTagCount(file);
+        if (count >= 0) {
+            return count;
+        }
+
         int i = 0;
-        FileInputStream fileInputStream = new FileInputStream(file);
-        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(fileInputStream);
+        InputStream inputStream = XMLCorpus.openMapped(file);
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
         while (xmlStreamReader.hasNext()) {
             xmlStreamReader.next();
             if (XMLStreamConstants.START_ELEMENT == xmlStreamReader.getEventType()) {
@@ -131,7 +111,7 @@ public abstract class AbstractPerformanceTest {
             }
         }
         xmlStreamReader.close();
-        fileInputStream.close();
+        inputStream.close();
         return i;
     }
 
@@ -166,7 +146,7 @@ public abstract class AbstractPerformanceTest {
         OutputStream outputStream = new FileOutputStream(signedFile);
         XMLStreamWriter xmlStreamWriter = outboundEncryptionXMLSec.processOutMessage(outputStream, StandardCharsets.UTF_8.name());
 
-        InputStream inputStream = new FileInputStream(file);
+        InputStream inputStream = XMLCorpus.openMapped(file);
         XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
 
         XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
@@ -179,7 +159,7 @@ public abstract class AbstractPerformanceTest {
 
     protected void doStreamingDecryptionInbound(File file, int tagCount) throws Exception {
 
-        InputStream inputStream = new FileInputStream(file);
+        InputStream inputStream = XMLCorpus.openMapped(file);
         XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(inputStream);
         XMLStreamReader securityStreamReader = inboundDecryptionXMLSec.processInMessage(xmlStreamReader);
 
@@ -193,7 +173,7 @@ public abstract class AbstractPerformanceTest {
 
     protected void doDOMEncryptionOutbound(File file, int tagCount) throws Exception {
 
-        Document document = XMLUtils.read(new FileInputStream(file), false);
+        Document document = XMLUtils.read(XMLCorpus.openMapped(file), false);
 
         XMLCipher cipher = getXMLCipher();
         cipher.init(XMLCipher.ENCRYPT_MODE, encryptionSymKey);
@@ -204,7 +184,7 @@ public abstract class AbstractPerformanceTest {
 
     protected void doDOMDecryptionInbound(File file, int tagCount) throws Exception {
 
-        Document document = XMLUtils.read(new FileInputStream(file), false);
+        Document document = XMLUtils.read(XMLCorpus.openMapped(file), false);
 
         XMLCipher cipher = getXMLCipher();
         cipher.init(XMLCipher.DECRYPT_MODE, encryptionSymKey);
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.serializer.performance;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * A JMH version of PerformanceTimingTest and PerformanceMemoryTest, comparing streaming and DOM
+ * encryption and decryption for increasingly large XML files. The main method enables the GC profiler
+ * (for bytes/op) and the HeapPeakProfiler, and writes the results as JSON to
+ * target/encryption-benchmark.json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class EncryptionBenchmark {
+
+    @State(Scope.Thread)
+    public static class EncryptionState extends AbstractPerformanceTest {
+
+        // The number of times plaintext.xml is repeated in the generated file
+        @Param({"1000", "10000", "20000", "40000"})
+        int xmlResizeFactor;
+
+        File file;
+        File encryptedFile;
+        int startTagCount;
+
+        @Override
+        protected File getTmpFilePath() {
+            return new File("target/encryptionBenchmark");
+        }
+
+        @Setup(Level.Trial)
+        public void createFiles() throws Exception {
+            genKey();
+            setUp();
+
+            file = generateLargeXMLFile(xmlResizeFactor);
+            startTagCount = countXMLStartTags(file);
+            System.out.println("Number of XML start elements: " + startTagCount);
+
+            // The decryption benchmarks (both streaming and DOM) use the streaming encrypted file
+            encryptedFile = doStreamingEncryptionOutbound(file, startTagCount);
+        }
+    }
+
+    @Benchmark
+    public File streamingEncryption(EncryptionState state) throws Exception {
+        return state.doStreamingEncryptionOutbound(state.file, state.startTagCount);
+    }
+
+    @Benchmark
+    public void domEncryption(EncryptionState state) throws Exception {
+        state.doDOMEncryptionOutbound(state.file, state.startTagCount);
+    }
+
+    @Benchmark
+    public void streamingDecryption(EncryptionState state) throws Exception {
+        state.doStreamingDecryptionInbound(state.encryptedFile, state.startTagCount);
+    }
+
+    @Benchmark
+    public void domDecryption(EncryptionState state) throws Exception {
+        state.doDOMDecryptionInbound(state.encryptedFile, state.startTagCount);
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(EncryptionBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .addProfiler(HeapPeakProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/encryption-benchmark.json")
+            .build();
+        new Runner(options).run();
+    }
+
+}
@@ -0,0 +1,117 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.serializer.performance;
+
+import java.io.FileWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.openjdk.jmh.infra.BenchmarkParams;
+import org.openjdk.jmh.infra.IterationParams;
+import org.openjdk.jmh.profile.InternalProfiler;
+import org.openjdk.jmh.results.AggregationPolicy;
+import org.openjdk.jmh.results.IterationResult;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.ScalarResult;
+
+/**
+ * A JMH profiler that reports the peak heap usage and (on Linux) the peak resident set size of the
+ * benchmark JVM for each iteration, in place of sampling the used memory from a separate thread.
+ *
+ * The peak heap usage is the sum of the peak usage of each heap memory pool, as reported by the
+ * MemoryPoolMXBeans, and so is an upper bound of the actual peak. The peak RSS is read from VmHWM in
+ * /proc/self/status, which is reset before each iteration where the kernel allows it.
+ *
+ * Enable it with "-prof org.apache.coheigea.serializer.performance.HeapPeakProfiler".
+ */
+public class HeapPeakProfiler implements InternalProfiler {
+
+    private static final Path PROC_STATUS = Paths.get("/proc/self/status");
+    private static final String PROC_CLEAR_REFS = "/proc/self/clear_refs";
+
+    @Override
+    public String getDescription() {
+        return "Peak heap usage and resident set size per iteration";
+    }
+
+    @Override
+    public void beforeIteration(BenchmarkParams benchmarkParams, IterationParams iterationParams) {
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                pool.resetPeakUsage();
+            }
+        }
+
+        // Writing "5" resets the peak RSS (VmHWM) of the process, see proc(5)
+        try (FileWriter writer = new FileWriter(PROC_CLEAR_REFS)) {
+            writer.write("5");
+        } catch (Exception ex) {
+            // Not on Linux, or not allowed - the peak RSS is then the peak since the JVM started
+        }
+    }
+
+    @Override
+    public Collection<? extends Result> afterIteration(BenchmarkParams benchmarkParams,
+                                                       IterationParams iterationParams,
+                                                       IterationResult result) {
+        List<Result> results = new ArrayList<>();
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        results.add(new ScalarResult("\u00b7heap.peak", peakHeap / 1024.0 / 1024.0, "MB", AggregationPolicy.MAX));
+
+        long peakRSS = getPeakRSS();
+        if (peakRSS > 0) {
+            results.add(new ScalarResult("\u00b7rss.peak", peakRSS / 1024.0, "MB", AggregationPolicy.MAX));
+        }
+
+        return results;
+    }
+
+    // Returns the peak RSS in KB, or -1 if it is not available
+    private static long getPeakRSS() {
+        if (!Files.isReadable(PROC_STATUS)) {
+            return -1L;
+        }
+        try {
+            for (String line : Files.readAllLines(PROC_STATUS, StandardCharsets.UTF_8)) {
+                if (line.startsWith("VmHWM:")) {
+                    String value = line.substring("VmHWM:".length()).trim();
+                    return Long.parseLong(value.substring(0, value.indexOf(' ')));
+                }
+            }
+        } catch (Exception ex) {
+            // Fall through
+        }
+        return -1L;
+    }
+
+}
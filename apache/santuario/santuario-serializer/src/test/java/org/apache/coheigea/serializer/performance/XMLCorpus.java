@@ -0,0 +1,208 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.serializer.performance;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * A corpus of large XML files for the performance tests, consisting of plaintext.xml repeated a given
+ * number of times inside a "test" root element. Each size is built once with a memory-mapped
+ * FileChannel and cached under target/corpus, so it can be reused across runs (and test classes).
+ *
+ * The number of XML start tags of each file is known from the number of start tags in plaintext.xml,
+ * and is stored in a sidecar ".tags" file next to it, so that the files don't have to be re-parsed.
+ * A file is built under a temporary name and renamed once it is complete, and the ".tags" file is only
+ * written after that, so an interrupted build never leaves a file that looks complete.
+ */
+public final class XMLCorpus {
+
+    private static final byte[] HEADER =
+        ("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n"
+            + "<test xmlns=\"http://www.example.com\">").getBytes(StandardCharsets.UTF_8);
+    private static final byte[] FOOTER = "</test>".getBytes(StandardCharsets.UTF_8);
+    private static final String TAGS_SUFFIX = ".tags";
+
+    private static File corpusDir = new File("target/corpus");
+    private static byte[] plaintext;
+    private static int plaintextStartTags;
+
+    private XMLCorpus() {
+    }
+
+    /**
+     * Get the corpus file where plaintext.xml is repeated "factor" times, building it if it does not
+     * exist yet.
+     */
+    public static synchronized File getFile(int factor) throws IOException, XMLStreamException {
+        loadPlaintext();
+
+        File file = new File(corpusDir, "plaintext-" + factor + ".xml");
+        long size = HEADER.length + (long)factor * plaintext.length + FOOTER.length;
+        File tagsFile = getTagsFile(file);
+        if (file.length() == size && tagsFile.exists()) {
+            return file;
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("The corpus file is too large to be memory-mapped: " + size);
+        }
+
+        // The corpus file is only valid while its sidecar file exists
+        Files.deleteIfExists(tagsFile.toPath());
+        corpusDir.mkdirs();
+        File tempFile = File.createTempFile(file.getName(), ".tmp", corpusDir);
+        try {
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(tempFile, "rw");
+                FileChannel channel = randomAccessFile.getChannel()) {
+                randomAccessFile.setLength(size);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.put(HEADER);
+                for (int i = 0; i < factor; i++) {
+                    buffer.put(plaintext);
+                }
+                buffer.put(FOOTER);
+                buffer.force();
+            }
+            Files.move(tempFile.toPath(), file.toPath(),
+                       StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } finally {
+            Files.deleteIfExists(tempFile.toPath());
+        }
+
+        // The start tags of plaintext.xml, plus the root element
+        int startTagCount = factor * plaintextStartTags + 1;
+        Files.write(tagsFile.toPath(), Integer.toString(startTagCount).getBytes(StandardCharsets.UTF_8),
+                    StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING);
+
+        return file;
+    }
+
+    /**
+     * Get the number of XML start tags of the given file from its sidecar file, or -1 if it is not
+     * a corpus file.
+     */
+    public static int getStartTagCount(File file) throws IOException {
+        File tagsFile = getTagsFile(file);
+        if (!tagsFile.exists()) {
+            return -1;
+        }
+        return Integer.parseInt(new String(Files.readAllBytes(tagsFile.toPath()), StandardCharsets.UTF_8).trim());
+    }
+
+    /**
+     * Open a memory-mapped InputStream for the given file.
+     */
+    public static InputStream openMapped(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("The file is too large to be memory-mapped: " + file);
+            }
+            // The mapping stays valid after the channel is closed
+            return new ByteBufferInputStream(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    private static File getTagsFile(File file) {
+        return new File(file.getPath() + TAGS_SUFFIX);
+    }
+
+    private static void loadPlaintext() throws IOException, XMLStreamException {
+        if (plaintext != null) {
+            return;
+        }
+        try (InputStream inputStream = XMLCorpus.class.getClassLoader().getResourceAsStream("plaintext.xml")) {
+            byte[] buffer = new byte[4096];
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                baos.write(buffer, 0, read);
+            }
+            plaintext = baos.toByteArray();
+        }
+
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        XMLStreamReader xmlStreamReader =
+            xmlInputFactory.createXMLStreamReader(new ByteArrayInputStream(plaintext));
+        int count = 0;
+        while (xmlStreamReader.hasNext()) {
+            if (XMLStreamConstants.START_ELEMENT == xmlStreamReader.next()) {
+                count++;
+            }
+        }
+        xmlStreamReader.close();
+        plaintextStartTags = count;
+    }
+
+    private static final class ByteBufferInputStream extends InputStream {
+
+        private final ByteBuffer buffer;
+
+        ByteBufferInputStream(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        @Override
+        public int read() {
+            return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!buffer.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, buffer.remaining());
+            buffer.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public long skip(long n) {
+            int count = (int)Math.max(0, Math.min(n, buffer.remaining()));
+            buffer.position(buffer.position() + count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return buffer.remaining();
+        }
+    }
+
+}
@@ -25,76 +25,63 @@ import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.XMLStreamWriter;
 import javax.xml.stream.events.XMLEvent;
 
+/**
+ * Copies the events of an XMLStreamReader to an XMLStreamWriter. Text is written straight from the
+ * character buffer of the reader where the reader supports it, and otherwise through a single growable
+ * buffer that is reused for every text event, so that no char[] is allocated per event.
+ *
+ * An instance is not thread-safe. The static methods use one instance per thread, so that the buffer
+ * is also reused across documents.
+ */
 public final class XmlReaderToWriter {
-    private XmlReaderToWriter() {
-    }
+
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+    // Larger text events are copied in chunks of this size
+    private static final int MAX_BUFFER_SIZE = 64 * 1024;
+
+    private static final ThreadLocal<XmlReaderToWriter> POOL =
+        ThreadLocal.withInitial(XmlReaderToWriter::new);
+
+    private char[] buffer = new char[INITIAL_BUFFER_SIZE];
+    private boolean bulkText = true;
 
     public static void writeAll(XMLStreamReader xmlr, XMLStreamWriter writer)
             throws XMLStreamException {
+        POOL.get().copy(xmlr, writer);
+    }
+
+    public static void write(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+        POOL.get().copyEvent(xmlr, writer);
+    }
+
+    public void copy(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+        bulkText = true;
         // Some implementations, Woodstox for example, already position their reader ON the first event, which is.
         // typically a START_DOCUMENT event.
         // If already positioned on an event, that is indicated by the event type.
         // Make sure we don't miss the initial event.
         if (xmlr.getEventType() > 0) {
-            write(xmlr, writer);
+            copyEvent(xmlr, writer);
         }
         while (xmlr.hasNext()) {
             xmlr.next();
-            write(xmlr, writer);
+            copyEvent(xmlr, writer);
         }
         //write(xmlr, writer); // write the last element
         writer.flush();
     }
 
-    public static void write(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+    public void copyEvent(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
         switch (xmlr.getEventType()) {
             case XMLEvent.START_ELEMENT:
-                final String localName = xmlr.getLocalName();
-                final String namespaceURI = xmlr.getNamespaceURI();
-                if (namespaceURI != null && namespaceURI.length() > 0) {
-                    final String prefix = xmlr.getPrefix();
-                    if (prefix != null) {
-                        writer.writeStartElement(prefix, localName, namespaceURI);
-                    } else {
-                        writer.writeStartElement(namespaceURI, localName);
-                    }
-                } else {
-                    writer.writeStartElement(localName);
-                }
-
-                for (int i = 0, len = xmlr.getNamespaceCount(); i < len; i++) {
-                    String prefix = xmlr.getNamespacePrefix(i);
-                    if (prefix == null) {
-                        writer.writeDefaultNamespace(xmlr.getNamespaceURI(i));
-                    } else {
-                        writer.writeNamespace(prefix, xmlr.getNamespaceURI(i));
-                    }
-                }
-
-                for (int i = 0, len = xmlr.getAttributeCount(); i < len; i++) {
-                    final String attUri = xmlr.getAttributeNamespace(i);
-
-                    if (attUri != null && attUri.length() > 0) {
-                        final String prefix = xmlr.getAttributePrefix(i);
-                        if (prefix != null) {
-                            writer.writeAttribute(prefix, attUri, xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
-                        } else {
-                            writer.writeAttribute(attUri, xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
-                        }
-                    } else {
-                        writer.writeAttribute(xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
-                    }
-
-                }
+                writeStartElement(xmlr, writer);
                 break;
             case XMLEvent.END_ELEMENT:
                 writer.writeEndElement();
                 break;
             case XMLEvent.SPACE:
             case XMLEvent.CHARACTERS:
-                char[] text = new char[xmlr.getTextLength()];
-                xmlr.getTextCharacters(0, text, 0, xmlr.getTextLength());
-                writer.writeCharacters(text, 0, text.length);
+                writeCharacters(xmlr, writer);
                 break;
             case XMLEvent.PROCESSING_INSTRUCTION:
                 writer.writeProcessingInstruction(xmlr.getPITarget(), xmlr.getPIData());
@@ -115,7 +102,7 @@ public final class XmlReaderToWriter {
                 if (encoding != null && version != null) {
                     writer.writeStartDocument(encoding, version);
                 } else if (version != null) {
-                    writer.writeStartDocument(xmlr.getVersion());
+                    writer.writeStartDocument(version);
                 }
                 break;
             case XMLEvent.END_DOCUMENT:
@@ -126,4 +113,75 @@ public final class XmlReaderToWriter {
                 break;
         }
     }
+
+    private static void writeStartElement(XMLStreamReader xmlr, XMLStreamWriter writer)
+            throws XMLStreamException {
+        final String localName = xmlr.getLocalName();
+        final String namespaceURI = xmlr.getNamespaceURI();
+        if (isEmpty(namespaceURI)) {
+            writer.writeStartElement(localName);
+        } else {
+            final String prefix = xmlr.getPrefix();
+            if (prefix != null) {
+                writer.writeStartElement(prefix, localName, namespaceURI);
+            } else {
+                writer.writeStartElement(namespaceURI, localName);
+            }
+        }
+
+        for (int i = 0, len = xmlr.getNamespaceCount(); i < len; i++) {
+            final String prefix = xmlr.getNamespacePrefix(i);
+            if (isEmpty(prefix)) {
+                writer.writeDefaultNamespace(xmlr.getNamespaceURI(i));
+            } else {
+                writer.writeNamespace(prefix, xmlr.getNamespaceURI(i));
+            }
+        }
+
+        for (int i = 0, len = xmlr.getAttributeCount(); i < len; i++) {
+            final String attUri = xmlr.getAttributeNamespace(i);
+            if (isEmpty(attUri)) {
+                writer.writeAttribute(xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+            } else {
+                final String prefix = xmlr.getAttributePrefix(i);
+                if (prefix != null) {
+                    writer.writeAttribute(prefix, attUri, xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                } else {
+                    writer.writeAttribute(attUri, xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                }
+            }
+        }
+    }
+
+    private void writeCharacters(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+        if (bulkText) {
+            // The array is only valid until the next event, which is fine as it is written straight away
+            try {
+                writer.writeCharacters(xmlr.getTextCharacters(), xmlr.getTextStart(), xmlr.getTextLength());
+                return;
+            } catch (UnsupportedOperationException ex) {
+                bulkText = false;
+            }
+        }
+
+        final int length = xmlr.getTextLength();
+        if (length > buffer.length && buffer.length < MAX_BUFFER_SIZE) {
+            buffer = new char[Math.min(Math.max(length, buffer.length * 2), MAX_BUFFER_SIZE)];
+        }
+        int offset = 0;
+        while (offset < length) {
+            int copied = xmlr.getTextCharacters(offset, buffer, 0, Math.min(buffer.length, length - offset));
+            if (copied <= 0) {
+                // The reader did not make any progress, so fall back to writing the rest as a String
+                writer.writeCharacters(xmlr.getText().substring(offset));
+                break;
+            }
+            writer.writeCharacters(buffer, 0, copied);
+            offset += copied;
+        }
+    }
+
+    private static boolean isEmpty(String value) {
+        return value == null || value.isEmpty();
+    }
 }
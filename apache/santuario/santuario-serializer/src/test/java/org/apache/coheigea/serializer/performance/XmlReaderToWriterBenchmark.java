@@ -0,0 +1,227 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.coheigea.serializer.performance;
+
+import java.io.File;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLOutputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.events.XMLEvent;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares XmlReaderToWriter against the previous implementation, which allocated a new char[] for
+ * every text event, by copying multi-megabyte XML files to a writer that discards its output. The main
+ * method enables the GC profiler, so that the bytes allocated per operation can be compared, and writes
+ * the results as JSON to target/xmlreadertowriter-benchmark.json.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+public class XmlReaderToWriterBenchmark {
+
+    private static final XMLInputFactory INPUT_FACTORY = XMLInputFactory.newInstance();
+    private static final XMLOutputFactory OUTPUT_FACTORY = XMLOutputFactory.newInstance();
+
+    @State(Scope.Thread)
+    public static class CorpusState {
+
+        // The number of times plaintext.xml is repeated in the generated file
+        @Param({"2000", "10000"})
+        int xmlResizeFactor;
+
+        File file;
+
+        @Setup(Level.Trial)
+        public void createFile() throws Exception {
+            file = XMLCorpus.getFile(xmlResizeFactor);
+            System.out.println("Size of XML file: " + file.length());
+        }
+    }
+
+    @Benchmark
+    public void pooledCopy(CorpusState state) throws Exception {
+        try (InputStream inputStream = XMLCorpus.openMapped(state.file)) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(new NullOutputStream(), "UTF-8");
+            XmlReaderToWriter.writeAll(reader, writer);
+            writer.close();
+            reader.close();
+        }
+    }
+
+    @Benchmark
+    public void legacyCopy(CorpusState state) throws Exception {
+        try (InputStream inputStream = XMLCorpus.openMapped(state.file)) {
+            XMLStreamReader reader = INPUT_FACTORY.createXMLStreamReader(inputStream);
+            XMLStreamWriter writer = OUTPUT_FACTORY.createXMLStreamWriter(new NullOutputStream(), "UTF-8");
+            LegacyXmlReaderToWriter.writeAll(reader, writer);
+            writer.close();
+            reader.close();
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        Options options = new OptionsBuilder()
+            .include(XmlReaderToWriterBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .resultFormat(ResultFormatType.JSON)
+            .result("target/xmlreadertowriter-benchmark.json")
+            .build();
+        new Runner(options).run();
+    }
+
+    private static final class NullOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) {
+            // discard
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            // discard
+        }
+    }
+
+    /**
+     * The previous version of XmlReaderToWriter, kept as the baseline.
+     */
+    private static final class LegacyXmlReaderToWriter {
+
+        static void writeAll(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+            if (xmlr.getEventType() > 0) {
+                write(xmlr, writer);
+            }
+            while (xmlr.hasNext()) {
+                xmlr.next();
+                write(xmlr, writer);
+            }
+            writer.flush();
+        }
+
+        static void write(XMLStreamReader xmlr, XMLStreamWriter writer) throws XMLStreamException {
+            switch (xmlr.getEventType()) {
+                case XMLEvent.START_ELEMENT:
+                    final String localName = xmlr.getLocalName();
+                    final String namespaceURI = xmlr.getNamespaceURI();
+                    if (namespaceURI != null && namespaceURI.length() > 0) {
+                        final String prefix = xmlr.getPrefix();
+                        if (prefix != null) {
+                            writer.writeStartElement(prefix, localName, namespaceURI);
+                        } else {
+                            writer.writeStartElement(namespaceURI, localName);
+                        }
+                    } else {
+                        writer.writeStartElement(localName);
+                    }
+
+                    for (int i = 0, len = xmlr.getNamespaceCount(); i < len; i++) {
+                        String prefix = xmlr.getNamespacePrefix(i);
+                        if (prefix == null) {
+                            writer.writeDefaultNamespace(xmlr.getNamespaceURI(i));
+                        } else {
+                            writer.writeNamespace(prefix, xmlr.getNamespaceURI(i));
+                        }
+                    }
+
+                    for (int i = 0, len = xmlr.getAttributeCount(); i < len; i++) {
+                        final String attUri = xmlr.getAttributeNamespace(i);
+
+                        if (attUri != null && attUri.length() > 0) {
+                            final String prefix = xmlr.getAttributePrefix(i);
+                            if (prefix != null) {
+                                writer.writeAttribute(prefix, attUri, xmlr.getAttributeLocalName(i),
+                                                      xmlr.getAttributeValue(i));
+                            } else {
+                                writer.writeAttribute(attUri, xmlr.getAttributeLocalName(i),
+                                                      xmlr.getAttributeValue(i));
+                            }
+                        } else {
+                            writer.writeAttribute(xmlr.getAttributeLocalName(i), xmlr.getAttributeValue(i));
+                        }
+                    }
+                    break;
+                case XMLEvent.END_ELEMENT:
+                    writer.writeEndElement();
+                    break;
+                case XMLEvent.SPACE:
+                case XMLEvent.CHARACTERS:
+                    char[] text = new char[xmlr.getTextLength()];
+                    xmlr.getTextCharacters(0, text, 0, xmlr.getTextLength());
+                    writer.writeCharacters(text, 0, text.length);
+                    break;
+                case XMLEvent.PROCESSING_INSTRUCTION:
+                    writer.writeProcessingInstruction(xmlr.getPITarget(), xmlr.getPIData());
+                    break;
+                case XMLEvent.CDATA:
+                    writer.writeCData(xmlr.getText());
+                    break;
+                case XMLEvent.COMMENT:
+                    writer.writeComment(xmlr.getText());
+                    break;
+                case XMLEvent.ENTITY_REFERENCE:
+                    writer.writeEntityRef(xmlr.getLocalName());
+                    break;
+                case XMLEvent.START_DOCUMENT:
+                    String encoding = xmlr.getCharacterEncodingScheme();
+                    String version = xmlr.getVersion();
+
+                    if (encoding != null && version != null) {
+                        writer.writeStartDocument(encoding, version);
+                    } else if (version != null) {
+                        writer.writeStartDocument(xmlr.getVersion());
+                    }
+                    break;
+                case XMLEvent.END_DOCUMENT:
+                    writer.writeEndDocument();
+                    break;
+                case XMLEvent.DTD:
+                    writer.writeDTD(xmlr.getText());
+                    break;
+            }
+        }
+    }
+
+}